@@ -0,0 +1,204 @@
+package org.CAP5400.Codec;
+
+import org.CAP5400.Exceptions.UnsupportedImageFormatException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class represents the header of a PNM (PGM/PPM) image file. The header consists of a magic number (P2, P3, P5 or
+ * P6), the width, the height, and the maximum value of a sample, separated by whitespace. Comments start with a
+ * {@code #} and run until the end of the line. A single whitespace character separates the header from the raster.
+ * @Author Reubin George
+ */
+public class PnmHeader {
+    private final int format, rows, columns, maxValue;
+    private final long rasterOffset;
+
+    /**
+     * Constructor for the PnmHeader class.
+     * @param format The PNM format number (2, 3, 5 or 6)
+     * @param rows The number of rows (height) of the image
+     * @param columns The number of columns (width) of the image
+     * @param maxValue The maximum value of a sample
+     * @param rasterOffset The offset (in bytes) of the first byte of the raster in the file
+     */
+    public PnmHeader(int format, int rows, int columns, int maxValue, long rasterOffset) {
+        this.format = format;
+        this.rows = rows;
+        this.columns = columns;
+        this.maxValue = maxValue;
+        this.rasterOffset = rasterOffset;
+    }
+
+    /**
+     * This method reads the header of a PNM file from the beginning of a stream. The stream is left positioned on the
+     * first byte of the raster.
+     * @param inputStream The stream to read from. It should be buffered since the header is read byte by byte.
+     * @param fileName The name of the file (used for error messages)
+     * @return The header of the PNM file
+     * @throws IOException If the stream cannot be read
+     * @throws UnsupportedImageFormatException If the header is malformed or uses an unsupported format
+     */
+    public static PnmHeader read(InputStream inputStream, String fileName)
+            throws IOException, UnsupportedImageFormatException {
+        var scanner = new HeaderScanner(inputStream, fileName);
+        if(scanner.read() != 'P') {
+            throw new UnsupportedImageFormatException(fileName, "missing PNM magic number");
+        }
+        var format = scanner.read() - '0';
+        if(format != 2 && format != 3 && format != 5 && format != 6) {
+            throw new UnsupportedImageFormatException(fileName, "unsupported PNM format `P" + (char)(format + '0') + "`");
+        }
+        var columns = scanner.nextValue();
+        var rows = scanner.nextValue();
+        var maxValue = scanner.nextValue();
+        if(columns <= 0 || rows <= 0) {
+            throw new UnsupportedImageFormatException(fileName, "invalid dimensions " + columns + "x" + rows);
+        }
+        if(maxValue <= 0 || maxValue > 65535) {
+            throw new UnsupportedImageFormatException(fileName, "invalid maximum value " + maxValue);
+        }
+        return new PnmHeader(format, rows, columns, maxValue, scanner.position);
+    }
+
+    /**
+     * This class reads the header of a PNM file byte by byte while keeping track of the number of bytes consumed.
+     */
+    private static class HeaderScanner {
+        private final InputStream inputStream;
+        private final String fileName;
+        private long position = 0;
+
+        private HeaderScanner(InputStream inputStream, String fileName) {
+            this.inputStream = inputStream;
+            this.fileName = fileName;
+        }
+
+        /**
+         * This method reads the next byte of the header.
+         * @return The next byte of the header or -1 if the end of the stream is reached
+         * @throws IOException If the stream cannot be read
+         */
+        private int read() throws IOException {
+            position++;
+            return inputStream.read();
+        }
+
+        /**
+         * This method reads a single decimal value of the header. Leading whitespace and comments are skipped, and
+         * exactly one whitespace character following the value is consumed.
+         * @return The decimal value
+         * @throws IOException If the stream cannot be read
+         * @throws UnsupportedImageFormatException If the value is missing or malformed
+         */
+        private int nextValue() throws IOException, UnsupportedImageFormatException {
+            var character = read();
+            while(character == '#' || Character.isWhitespace(character)) {
+                if(character == '#') {
+                    while(character != '\n' && character != '\r' && character != -1) {
+                        character = read();
+                    }
+                }
+                character = read();
+            }
+            if(character < '0' || character > '9') {
+                throw new UnsupportedImageFormatException(fileName, "malformed PNM header");
+            }
+            long value = 0;
+            while(character >= '0' && character <= '9') {
+                value = value * 10 + (character - '0');
+                if(value > Integer.MAX_VALUE) {
+                    throw new UnsupportedImageFormatException(fileName, "header value is too large");
+                }
+                character = read();
+            }
+            if(character != -1 && !Character.isWhitespace(character)) {
+                throw new UnsupportedImageFormatException(fileName, "malformed PNM header");
+            }
+            return (int) value;
+        }
+    }
+
+    /**
+     * This method is used to get the PNM format number (2, 3, 5 or 6).
+     * @return The PNM format number
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * This method is used to get the number of rows (height) of the image.
+     * @return The number of rows of the image
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * This method is used to get the number of columns (width) of the image.
+     * @return The number of columns of the image
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * This method is used to get the maximum value of a sample.
+     * @return The maximum value of a sample
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * This method is used to get the offset (in bytes) of the first byte of the raster in the file.
+     * @return The offset of the raster in the file
+     */
+    public long getRasterOffset() {
+        return rasterOffset;
+    }
+
+    /**
+     * This method is used to get the number of channels stored in the file (1 for PGM and 3 for PPM).
+     * @return The number of channels stored in the file
+     */
+    public int getChannels() {
+        return (format == 3 || format == 6) ? 3 : 1;
+    }
+
+    /**
+     * This method is used to check if the raster is stored in binary (P5/P6) rather than ASCII (P2/P3).
+     * @return True if the raster is stored in binary, false otherwise
+     */
+    public boolean isBinary() {
+        return format == 5 || format == 6;
+    }
+
+    /**
+     * This method is used to get the number of bytes used by a single sample of a binary raster.
+     * @return 1 if the maximum value is at most 255, 2 otherwise
+     */
+    public int getBytesPerSample() {
+        return maxValue <= 255 ? 1 : 2;
+    }
+
+    /**
+     * This method is used to get the size (in bytes) of a binary raster.
+     * @return The size of a binary raster
+     */
+    public long getRasterSize() {
+        return (long) rows * columns * getChannels() * getBytesPerSample();
+    }
+
+    @Override
+    public String toString() {
+        return "PnmHeader{" +
+                "format= P" + format +
+                ", rows= " + rows +
+                ", columns= " + columns +
+                ", maxValue= " + maxValue +
+                '}';
+    }
+}
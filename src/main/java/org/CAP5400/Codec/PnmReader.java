@@ -0,0 +1,289 @@
+package org.CAP5400.Codec;
+
+import org.CAP5400.Exceptions.UnsupportedImageFormatException;
+import org.CAP5400.Image.BytePixelBuffer;
+import org.CAP5400.Image.PixelBuffer;
+import org.CAP5400.Image.ShortPixelBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is a pure Java reader for PNM (PGM/PPM) image files. It supports ASCII (P2/P3) and binary (P5/P6) rasters
+ * with 8-bit and 16-bit samples, and it does not require the OpenCV native library. Binary rasters are read with bulk
+ * NIO reads straight into the pixel buffer of the image.
+ * <br><br>
+ * <p><b>NOTE: </b> Color samples are stored in BGR order, matching the channel order used by OpenCV and the rest of
+ * the toolbox. Rasters with a maximum value below 255 are rescaled to 0 - 255, while rasters with a maximum value above
+ * 255 keep their original 16-bit values.</p>
+ * @see PnmHeader
+ * @see PnmWriter
+ * @Author Reubin George
+ */
+public class PnmReader implements AutoCloseable {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int GRAY_SHIFT = 14; // fixed point weights of the ITU-R BT.601 luma transform
+    private static final int GRAY_WEIGHT_RED = 4899, GRAY_WEIGHT_GREEN = 9617, GRAY_WEIGHT_BLUE = 1868;
+    private final FileChannel fileChannel;
+    private final PnmHeader header;
+    private final String fileName;
+
+    /**
+     * Constructor that opens a PNM file and reads its header.
+     * @param path The path of the PNM file
+     * @throws IOException If the file cannot be read
+     * @throws UnsupportedImageFormatException If the header is malformed or uses an unsupported format
+     */
+    public PnmReader(Path path) throws IOException, UnsupportedImageFormatException {
+        this.fileName = path.toString();
+        this.fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.header = PnmHeader.read(new BufferedInputStream(Channels.newInputStream(fileChannel)), fileName);
+        }
+        catch (IOException | UnsupportedImageFormatException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * This method is used to get the header of the PNM file.
+     * @return The header of the PNM file
+     */
+    public PnmHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * This method returns the maximum value of a sample after decoding.
+     * @return 255 for rasters with a maximum value of at most 255, the maximum value of the raster otherwise
+     */
+    public int getDecodedMaxValue() {
+        return Math.max(header.getMaxValue(), BytePixelBuffer.MAX_VALUE);
+    }
+
+    /**
+     * This method decodes the raster into a pixel buffer. The samples are stored interleaved, row by row and pixel by
+     * pixel. Grayscale rasters are replicated when 3 channels are requested, and color rasters are converted to
+     * grayscale (ITU-R BT.601 luma) when 1 channel is requested.
+     * @param pixels The pixel buffer to decode into. It must hold rows x columns x channels samples.
+     * @param channels The number of channels to decode (1 or 3)
+     * @throws IOException If the raster cannot be read
+     * @throws UnsupportedImageFormatException If the raster is malformed or truncated
+     */
+    public void read(PixelBuffer pixels, int channels) throws IOException, UnsupportedImageFormatException {
+        if(channels != 1 && channels != 3) {
+            throw new IllegalArgumentException("Invalid number of channels: " + channels);
+        }
+        var numPixels = header.getRows() * header.getColumns();
+        if(pixels.size() != numPixels * channels) {
+            throw new IllegalArgumentException("Invalid pixel buffer size: " + pixels.size() +
+                    ". The image has " + numPixels * channels + " samples.");
+        }
+        var fileChannels = header.getChannels();
+        if(fileChannels == channels && header.isBinary() && header.getMaxValue() == BytePixelBuffer.MAX_VALUE &&
+                pixels instanceof BytePixelBuffer bytePixels) {
+            readBinaryBytes(bytePixels.array());
+            if(channels == 3) { swapRedAndBlue(pixels); }
+            return;
+        }
+        if(fileChannels == channels && header.isBinary() && header.getBytesPerSample() == 2 &&
+                pixels instanceof ShortPixelBuffer shortPixels) {
+            readBinaryShorts(shortPixels.array());
+            if(channels == 3) { swapRedAndBlue(pixels); }
+            return;
+        }
+
+        var scale = getScaleTable();
+        var samples = openSampleStream();
+        var pixel = new int[fileChannels];
+        for(int i = 0; i < numPixels; i++) {
+            for(int k = 0; k < fileChannels; k++) {
+                var value = samples.next();
+                pixel[k] = scale == null ? value : scale[Math.min(value, scale.length - 1)];
+            }
+            var index = i * channels;
+            if(fileChannels == channels) {
+                for(int k = 0; k < channels; k++) {
+                    pixels.set(index + k, pixel[channels - 1 - k]); // RGB on disk, BGR in memory
+                }
+            }
+            else if(channels == 3) {
+                pixels.set(index, pixel[0]);
+                pixels.set(index + 1, pixel[0]);
+                pixels.set(index + 2, pixel[0]);
+            }
+            else {
+                var gray = pixel[0] * GRAY_WEIGHT_RED + pixel[1] * GRAY_WEIGHT_GREEN + pixel[2] * GRAY_WEIGHT_BLUE;
+                pixels.set(index, (int) (((long) gray + (1 << (GRAY_SHIFT - 1))) >> GRAY_SHIFT));
+            }
+        }
+    }
+
+    /**
+     * This method reads an 8-bit binary raster straight into an array with bulk reads.
+     * @param target The array to read into
+     * @throws IOException If the raster cannot be read
+     * @throws UnsupportedImageFormatException If the raster is truncated
+     */
+    private void readBinaryBytes(byte [] target) throws IOException, UnsupportedImageFormatException {
+        var buffer = ByteBuffer.wrap(target);
+        var position = header.getRasterOffset();
+        while(buffer.hasRemaining()) {
+            var bytesRead = fileChannel.read(buffer, position);
+            if(bytesRead < 0) {
+                throw new UnsupportedImageFormatException(fileName, "the raster is truncated");
+            }
+            position += bytesRead;
+        }
+    }
+
+    /**
+     * This method reads a 16-bit (big-endian) binary raster into an array with bulk reads.
+     * @param target The array to read into
+     * @throws IOException If the raster cannot be read
+     * @throws UnsupportedImageFormatException If the raster is truncated
+     */
+    private void readBinaryShorts(short [] target) throws IOException, UnsupportedImageFormatException {
+        var buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        var position = header.getRasterOffset();
+        var filled = 0;
+        while(filled < target.length) {
+            buffer.clear();
+            buffer.limit(Math.min(CHUNK_SIZE, (target.length - filled) * 2));
+            while(buffer.hasRemaining()) {
+                var bytesRead = fileChannel.read(buffer, position);
+                if(bytesRead < 0) {
+                    throw new UnsupportedImageFormatException(fileName, "the raster is truncated");
+                }
+                position += bytesRead;
+            }
+            buffer.flip();
+            var length = buffer.remaining() / 2;
+            buffer.asShortBuffer().get(target, filled, length);
+            filled += length;
+        }
+    }
+
+    /**
+     * This method swaps the first and the last channel of every pixel (RGB to BGR).
+     * @param pixels The interleaved 3 channel pixel buffer
+     */
+    private static void swapRedAndBlue(PixelBuffer pixels) {
+        for(int i = 0; i < pixels.size(); i += 3) {
+            var red = pixels.get(i);
+            pixels.set(i, pixels.get(i + 2));
+            pixels.set(i + 2, red);
+        }
+    }
+
+    /**
+     * This method returns the table used to rescale samples to 0 - 255 when the maximum value of the raster is below
+     * 255.
+     * @return The rescaling table or null if no rescaling is needed
+     */
+    private int [] getScaleTable() {
+        var maxValue = header.getMaxValue();
+        if(maxValue >= BytePixelBuffer.MAX_VALUE) {
+            return null;
+        }
+        var table = new int[maxValue + 1];
+        for(int i = 0; i <= maxValue; i++) {
+            table[i] = (i * BytePixelBuffer.MAX_VALUE + maxValue / 2) / maxValue;
+        }
+        return table;
+    }
+
+    /**
+     * This method opens a stream over the samples of the raster.
+     * @return A stream over the samples of the raster
+     * @throws IOException If the raster cannot be read
+     */
+    private SampleStream openSampleStream() throws IOException {
+        fileChannel.position(header.getRasterOffset());
+        var inputStream = new BufferedInputStream(Channels.newInputStream(fileChannel), CHUNK_SIZE);
+        return new SampleStream(inputStream, header.isBinary(), header.getBytesPerSample(), fileName);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    /**
+     * This class streams the samples of a raster one by one. Binary samples are read as 8-bit or 16-bit (big-endian)
+     * values, while ASCII samples are read as whitespace separated decimal values.
+     */
+    private static class SampleStream {
+        private final InputStream inputStream;
+        private final boolean binary;
+        private final int bytesPerSample;
+        private final String fileName;
+
+        private SampleStream(InputStream inputStream, boolean binary, int bytesPerSample, String fileName) {
+            this.inputStream = inputStream;
+            this.binary = binary;
+            this.bytesPerSample = bytesPerSample;
+            this.fileName = fileName;
+        }
+
+        /**
+         * This method reads the next sample of the raster.
+         * @return The next sample of the raster
+         * @throws IOException If the raster cannot be read
+         * @throws UnsupportedImageFormatException If the raster is malformed or truncated
+         */
+        private int next() throws IOException, UnsupportedImageFormatException {
+            if(binary) {
+                var value = readByte();
+                if(bytesPerSample == 2) {
+                    value = (value << 8) | readByte();
+                }
+                return value;
+            }
+
+            var character = inputStream.read();
+            while(character == '#' || Character.isWhitespace(character)) {
+                if(character == '#') {
+                    while(character != '\n' && character != '\r' && character != -1) {
+                        character = inputStream.read();
+                    }
+                }
+                character = inputStream.read();
+            }
+            if(character < '0' || character > '9') {
+                throw new UnsupportedImageFormatException(fileName, character == -1 ?
+                        "the raster is truncated" : "malformed ASCII raster");
+            }
+            var value = 0;
+            while(character >= '0' && character <= '9') {
+                value = value * 10 + (character - '0');
+                if(value > ShortPixelBuffer.MAX_VALUE) {
+                    throw new UnsupportedImageFormatException(fileName, "sample value is too large");
+                }
+                character = inputStream.read();
+            }
+            return value;
+        }
+
+        /**
+         * This method reads the next byte of a binary raster.
+         * @return The next byte of the raster
+         * @throws IOException If the raster cannot be read
+         * @throws UnsupportedImageFormatException If the raster is truncated
+         */
+        private int readByte() throws IOException, UnsupportedImageFormatException {
+            var value = inputStream.read();
+            if(value < 0) {
+                throw new UnsupportedImageFormatException(fileName, "the raster is truncated");
+            }
+            return value;
+        }
+    }
+}
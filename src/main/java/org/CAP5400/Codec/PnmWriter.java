@@ -0,0 +1,204 @@
+package org.CAP5400.Codec;
+
+import org.CAP5400.Image.BytePixelBuffer;
+import org.CAP5400.Image.Image;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a pure Java writer for PNM (PGM/PPM) image files. Grayscale images are written as PGM (P5/P2) and
+ * color images as PPM (P6/P3). Images with a maximum value above 255 are written with 16-bit (big-endian) samples. The
+ * writer does not require the OpenCV native library.
+ * <br><br>
+ * <p><b>NOTE: </b> The channels of a color image are expected in BGR order and are written to the file in RGB order,
+ * as required by the PNM specification.</p>
+ * <p>The image is written to a temporary file in the same directory, which then replaces the target file. An image
+ * memory-mapped from the target file can therefore be saved to its own file.</p>
+ * @see PnmReader
+ * @Author Reubin George
+ */
+public class PnmWriter {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MAX_ASCII_LINE_LENGTH = 70;
+    private static final AtomicLong TEMPORARY_FILE_COUNT = new AtomicLong();
+
+    /**
+     * This method writes an image to a binary (P5/P6) PNM file.
+     * @param path The path of the PNM file
+     * @param image The image to be written
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path path, Image image) throws IOException {
+        write(path, image, true);
+    }
+
+    /**
+     * This method writes an image to a PNM file.
+     * @param path The path of the PNM file
+     * @param image The image to be written
+     * @param binary True to write a binary (P5/P6) raster, false to write an ASCII (P2/P3) raster
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path path, Image image, boolean binary) throws IOException {
+        var channels = image.getNumChannels();
+        if(channels != 1 && channels != 3) {
+            throw new IllegalArgumentException("Only 1 or 3 channel images can be written. The image has " +
+                    channels + " channels.");
+        }
+        var format = (channels == 3 ? 3 : 2) + (binary ? 3 : 0);
+        var header = "P" + format + "\n" + image.getColumns() + " " + image.getRows() + "\n" +
+                image.getMaxValue() + "\n";
+
+        var temporaryPath = createTemporaryFile(path);
+        try {
+            if(binary) {
+                writeBinary(temporaryPath, image, header);
+            }
+            else {
+                writeAscii(temporaryPath, image, header);
+            }
+            replace(temporaryPath, path);
+        }
+        finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * This method creates an empty temporary file next to the target file. The file is created with the default
+     * permissions of a new file, so the saved image is accessible like a file written in place.
+     * @param path The path of the PNM file
+     * @return The path of the temporary file
+     * @throws IOException If the file cannot be created
+     */
+    private static Path createTemporaryFile(Path path) throws IOException {
+        var absolutePath = path.toAbsolutePath();
+        while(true) {
+            var temporaryPath = absolutePath.resolveSibling("." + absolutePath.getFileName() + "." +
+                    ProcessHandle.current().pid() + "." + TEMPORARY_FILE_COUNT.incrementAndGet() + ".tmp");
+            try {
+                Files.newByteChannel(temporaryPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return temporaryPath;
+            }
+            catch (FileAlreadyExistsException e) {
+                // left behind by another process, try the next name
+            }
+        }
+    }
+
+    /**
+     * This method replaces the target file with the written temporary file. The old file is unlinked rather than
+     * overwritten, so images still mapped from it keep their pixels.
+     * @param temporaryPath The path of the written temporary file
+     * @param path The path of the PNM file
+     * @throws IOException If the file cannot be replaced
+     */
+    private static void replace(Path temporaryPath, Path path) throws IOException {
+        try {
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * This method writes the header and a binary raster with bulk NIO writes.
+     * @param path The path of the PNM file
+     * @param image The image to be written
+     * @param header The header of the PNM file
+     * @throws IOException If the file cannot be written
+     */
+    private static void writeBinary(Path path, Image image, String header) throws IOException {
+        var rows = image.getRows();
+        var columns = image.getColumns();
+        var channels = image.getNumChannels();
+        var bytesPerSample = image.getMaxValue() <= BytePixelBuffer.MAX_VALUE ? 1 : 2;
+        var pixels = image.getReadOnlyBuffer();
+
+        try (var fileChannel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(fileChannel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+
+            if(channels == 1 && bytesPerSample == 1 && pixels instanceof BytePixelBuffer bytePixels &&
+                    image.getIndex(0, 0, 0) == 0 && image.getIndex(1, 0, 0) == columns) {
+                writeFully(fileChannel, ByteBuffer.wrap(bytePixels.array(), 0, rows * columns));
+                return;
+            }
+
+            var rowSize = columns * channels * bytesPerSample;
+            var buffer = ByteBuffer.allocate(Math.max(CHUNK_SIZE, rowSize));
+            for(int i = 0; i < rows; i++) {
+                if(buffer.remaining() < rowSize) {
+                    buffer.flip();
+                    writeFully(fileChannel, buffer);
+                    buffer.clear();
+                }
+                for(int j = 0; j < columns; j++) {
+                    for(int k = channels - 1; k >= 0; k--) { // BGR in memory, RGB on disk
+                        var value = pixels.get(image.getIndex(i, j, k));
+                        if(bytesPerSample == 1) { buffer.put((byte) value); }
+                        else { buffer.putShort((short) value); }
+                    }
+                }
+            }
+            buffer.flip();
+            writeFully(fileChannel, buffer);
+        }
+    }
+
+    /**
+     * This method writes the header and an ASCII raster.
+     * @param path The path of the PNM file
+     * @param image The image to be written
+     * @param header The header of the PNM file
+     * @throws IOException If the file cannot be written
+     */
+    private static void writeAscii(Path path, Image image, String header) throws IOException {
+        var pixels = image.getReadOnlyBuffer();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            writer.write(header);
+            var lineLength = 0;
+            for(int i = 0; i < image.getRows(); i++) {
+                for(int j = 0; j < image.getColumns(); j++) {
+                    for(int k = image.getNumChannels() - 1; k >= 0; k--) {
+                        var value = Integer.toString(pixels.get(image.getIndex(i, j, k)));
+                        if(lineLength > 0 && lineLength + value.length() + 1 > MAX_ASCII_LINE_LENGTH) {
+                            writer.newLine();
+                            lineLength = 0;
+                        }
+                        if(lineLength > 0) {
+                            writer.write(' ');
+                            lineLength++;
+                        }
+                        writer.write(value);
+                        lineLength += value.length();
+                    }
+                }
+            }
+            writer.newLine();
+        }
+    }
+
+    /**
+     * This method writes the remaining contents of a buffer to a file channel.
+     * @param fileChannel The file channel to write to
+     * @param buffer The buffer to be written
+     * @throws IOException If the file cannot be written
+     */
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+}
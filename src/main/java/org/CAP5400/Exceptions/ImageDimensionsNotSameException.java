@@ -18,4 +18,18 @@ public class ImageDimensionsNotSameException extends Exception{
                 ") while the destination image has dimensions (" +
                 dstImage.getRows() + ", " + dstImage.getColumns() + ", " + dstImage.getNumChannels() + ")");
     }
+
+    /**
+     * Constructor for ImageNotSameException
+     * @param dstImage destination image
+     * @param srcRows number of rows of the source
+     * @param srcColumns number of columns of the source
+     * @param srcChannels number of channels of the source
+     */
+    public ImageDimensionsNotSameException(Image dstImage, int srcRows, int srcColumns, int srcChannels){
+        super("The source image has dimensions ("
+                + srcRows + ", " + srcColumns + ", " + srcChannels +
+                ") while the destination image has dimensions (" +
+                dstImage.getRows() + ", " + dstImage.getColumns() + ", " + dstImage.getNumChannels() + ")");
+    }
 }
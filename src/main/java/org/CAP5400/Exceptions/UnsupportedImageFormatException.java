@@ -0,0 +1,16 @@
+package org.CAP5400.Exceptions;
+
+/**
+ * This exception is thrown when the contents of an image file are malformed or use a format that is not supported.
+ * @Author Reubin George
+ */
+public class UnsupportedImageFormatException extends Exception{
+    /**
+     * Constructor for the UnsupportedImageFormatException class.
+     * @param fileName The name of the image file.
+     * @param reason The reason why the format is not supported.
+     */
+    public UnsupportedImageFormatException(String fileName, String reason) {
+        super("The image `" + fileName + "` cannot be read: " + reason);
+    }
+}
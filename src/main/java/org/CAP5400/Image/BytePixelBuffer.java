@@ -0,0 +1,71 @@
+package org.CAP5400.Image;
+
+/**
+ * This class is a {@link PixelBuffer} backed by a single {@code byte[]}. It is used for 8-bit images, which is the
+ * depth of every PGM/PPM file with a maximum value of 255. Samples are stored unsigned.
+ * @see PixelBuffer
+ * @Author Reubin George
+ */
+public class BytePixelBuffer implements PixelBuffer {
+    public static final int MAX_VALUE = 0xFF;
+    private final byte[] data;
+
+    /**
+     * Constructor that allocates a zero filled buffer.
+     * @param size The total number of samples
+     */
+    public BytePixelBuffer(int size) {
+        this(new byte[size]);
+    }
+
+    /**
+     * Constructor that wraps an existing array. The array is not copied.
+     * @param data The array to be wrapped
+     */
+    public BytePixelBuffer(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int get(int index) {
+        return data[index] & MAX_VALUE;
+    }
+
+    @Override
+    public void set(int index, int value) {
+        data[index] = (byte) value;
+    }
+
+    @Override
+    public int size() {
+        return data.length;
+    }
+
+    @Override
+    public int getMaxSampleValue() {
+        return MAX_VALUE;
+    }
+
+    @Override
+    public PixelBuffer copy() {
+        return new BytePixelBuffer(data.clone());
+    }
+
+    @Override
+    public void copyFrom(PixelBuffer source, int sourceIndex, int targetIndex, int length) {
+        if(source instanceof BytePixelBuffer other) {
+            System.arraycopy(other.data, sourceIndex, data, targetIndex, length);
+        }
+        else {
+            PixelBuffer.super.copyFrom(source, sourceIndex, targetIndex, length);
+        }
+    }
+
+    /**
+     * This method returns the backing array of the buffer. Changes to the array are reflected in the buffer.
+     * @return The backing array of the buffer
+     */
+    public byte[] array() {
+        return data;
+    }
+}
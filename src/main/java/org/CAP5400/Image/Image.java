@@ -4,38 +4,65 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import org.CAP5400.Codec.PnmHeader;
+import org.CAP5400.Codec.PnmReader;
+import org.CAP5400.Codec.PnmWriter;
 import org.CAP5400.Exceptions.*;
 import org.CAP5400.Misc.Misc;
+import org.CAP5400.Misc.TileExecutor;
+import org.CAP5400.Misc.TileExecutor.RowBandTask;
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfByte;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
-import java.io.InputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
- * This class represents an image object. The image object is a 3D array of pixels. The first dimension represents the
- * rows, the second dimension represents the columns, and the third dimension represents the channels. The image object
- * can be created from a file or from scratch. The image object can be saved to a file.
+ * This class represents an image object. The pixels of the image are stored in a single contiguous, interleaved
+ * {@link PixelBuffer} (row by row, pixel by pixel, channel by channel). A pixel is addressed by its row, column, and
+ * channel, which are translated into a linear index using the row stride and the channel offsets of the image. 8-bit
+ * images are stored in a {@code byte[]} while deeper images are stored in a {@code short[]}. The image object can be
+ * created from a file or from scratch. The image object can be saved to a file.
  * <br><br>
  * <p><b>NOTE: </b> This class uses the OpenCV library to read and write images and deploys the observer design pattern.
- * Every time a pixel value is changed, the observers are notified.</p>
+ * Every time a pixel value is changed, the observers are notified. Many writes can be grouped between
+ * {@link #beginUpdate()} and {@link #endUpdate()}, in which case the observers are notified only once with the dirty
+ * rectangle of the whole batch.</p>
+ * <p>A {@link #snapshot()} shares the pixel buffer of the image it was taken from. The buffer is copied the first time
+ * either image is written to, so snapshots are cheap for images that are mostly read, see {@link ImageCache}. A
+ * {@link #view(int, int, int, int)} shares a window of the pixel buffer without marking the image it was taken from as
+ * shared; its samples are addressed with the row stride of that image until the window is copied. Instead, the image
+ * copies the windows of its views before it is written to, so only the windows are copied and not the whole image.</p>
  * @Author: Reubin George
  */
 public class Image implements AutoCloseable{
 
     private String fileName;
-    private final int rows, columns, channels;
-    private int[][][] pixels;
+    private final int rows, columns, channels, maxValue;
+    private int offset, rowStride; // the first sample and the distance between rows in the pixel buffer
+    private final int [] channelOffsets;
+    private PixelBuffer pixels;
+    private volatile boolean sharesPixels; // the buffer is shared with a snapshot and must be copied before a write
+    private List<WeakReference<Image>> liveViews; // views reading the buffer of this image, detached before a write
+    private List<WeakReference<Image>> ownerViews; // the live views of the image whose buffer this view reads
     private final boolean isColor;
     public static final int MAX_RGB = 255;
+    public static final long MAPPING_THRESHOLD = 64L * 1024 * 1024; // files at least this large are memory-mapped
     private List<Consumer<Image>> observers = new ArrayList<>(); //Deploy observer design pattern
+    private List<BiConsumer<Image, ImageChange>> changeObservers = new ArrayList<>();
+    private int updateDepth = 0; // number of open beginUpdate() calls
+    private ImageChange pendingChange; // changes accumulated while an update is open
 
     /**
      * Overloaded constructor that creates an empty image object based on the rows, columns, and channels
@@ -44,13 +71,32 @@ public class Image implements AutoCloseable{
      * @param channels The number of channels in the image
      */
     public Image(@Positive int rows, @Positive int columns, @Positive int channels) {
+        this(rows, columns, channels, MAX_RGB);
+    }
+
+    /**
+     * Overloaded constructor that creates an empty image object based on the rows, columns, channels, and the maximum
+     * value of a pixel. Images with a maximum value above 255 are stored with 16 bits per sample.
+     * @param rows The number of rows in the image
+     * @param columns The number of columns in the image
+     * @param channels The number of channels in the image
+     * @param maxValue The maximum value of a pixel (1 to 65535)
+     */
+    public Image(@Positive int rows, @Positive int columns, @Positive int channels, @Positive int maxValue) {
         if(rows <= 0 || columns <= 0 || channels <= 0) {
             throw new IllegalArgumentException("Invalid image dimensions: " + rows + "x" + columns + "x" + channels);
         }
+        if((long) rows * columns * channels > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image dimensions: " + rows + "x" + columns + "x" + channels +
+                    " exceed the maximum number of samples (" + Integer.MAX_VALUE + ")");
+        }
         this.rows = rows;
         this.columns = columns;
         this.channels = channels;
-        this.pixels = new int[rows][columns][channels];
+        this.maxValue = maxValue;
+        this.rowStride = columns * channels;
+        this.channelOffsets = getDefaultChannelOffsets(channels);
+        this.pixels = PixelBuffer.allocate(rows * columns * channels, maxValue);
         this.isColor = channels == 3;
 
     }
@@ -74,36 +120,28 @@ public class Image implements AutoCloseable{
         this.columns = image.columns;
         this.channels = image.channels;
         this.fileName = image.fileName;
-        this.pixels = new int[rows][columns][channels];
+        this.maxValue = image.maxValue;
+        this.rowStride = columns * channels;
+        this.channelOffsets = image.channelOffsets.clone();
+        this.pixels = image.copyPixels();
         this.isColor = image.isColor;
-
-        for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < columns; j++) {
-                for(int k = 0; k < channels; k++) {
-                    this.pixels[i][j][k] = image.pixels[i][j][k];
-                }
-            }
-        }
-
-
     }
 
     /**
      * Overloaded constructor that creates an image object based on the file name. This constructor opens the image file
-     * while checking for the correct extension and verifying that the file exists.
+     * while checking for the correct extension and verifying that the file exists. The file is decoded by the pure Java
+     * {@link PnmReader}, so the OpenCV native library is not needed. PGM files are always opened as grayscale images
+     * and PPM files as color (BGR) images.
      * @param fileName The name of the image file. The file must have a .pgm or .ppm extension.
      * @throws Exception If the file does not exist or the extension is incorrect.
      */
     public Image(@NotNull @NotBlank @NotEmpty String fileName) throws Exception {
         this.fileName = fileName;
         var extension = Misc.getFileExtension(fileName);
-        var flag = -1;
 
         if (extension.equals("pgm")) {
-            flag = Imgcodecs.IMREAD_GRAYSCALE;
             this.isColor = false;
         } else if (extension.equals("ppm")) {
-            flag = Imgcodecs.IMREAD_COLOR;
             this.isColor = true;
         } else {
             throw new ImageIncorrectExtensionException(extension);
@@ -113,35 +151,277 @@ public class Image implements AutoCloseable{
             throw new ImageNotFoundException(this.fileName);
         }
 
-        // Load image from resources
-        try (InputStream inputStream = Files.newInputStream(Paths.get(fileName))) {
-            if (inputStream == null) {
-                throw new ImageNotFoundException(fileName);
+        try (var reader = new PnmReader(Paths.get(fileName))) {
+            var header = reader.getHeader();
+            this.rows = header.getRows();
+            this.columns = header.getColumns();
+            this.channels = isColor ? 3 : 1;
+            if((long) rows * columns * channels > Integer.MAX_VALUE) {
+                throw new UnsupportedImageFormatException(fileName,
+                        "the image exceeds the maximum number of samples (" + Integer.MAX_VALUE + ")");
             }
+            this.maxValue = reader.getDecodedMaxValue();
+            this.rowStride = columns * channels;
+            this.channelOffsets = getDefaultChannelOffsets(channels);
+            this.pixels = PixelBuffer.allocate(rows * columns * channels, maxValue);
+            reader.read(pixels, channels);
+        }
+
+    }
+
+    /**
+     * Private constructor that wraps an existing pixel buffer.
+     * @param fileName The name of the image file
+     * @param rows The number of rows in the image
+     * @param columns The number of columns in the image
+     * @param channels The number of channels in the image
+     * @param maxValue The maximum value of a pixel
+     * @param channelOffsets The offset of every channel within a pixel
+     * @param pixels The pixel buffer to be wrapped
+     * @param offset The index of the first sample in the pixel buffer
+     * @param rowStride The number of samples between the first samples of two consecutive rows
+     */
+    private Image(String fileName, int rows, int columns, int channels, int maxValue, int [] channelOffsets,
+                  PixelBuffer pixels, int offset, int rowStride) {
+        this.fileName = fileName;
+        this.rows = rows;
+        this.columns = columns;
+        this.channels = channels;
+        this.maxValue = maxValue;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.channelOffsets = channelOffsets;
+        this.pixels = pixels;
+        this.isColor = channels == 3;
+    }
+
+    /**
+     * This method creates an image object whose pixels are memory-mapped directly from the raster of a binary PGM (P5)
+     * or PPM (P6) file. The pixels live off-heap and are only paged in when they are accessed, which allows images
+     * larger than the JVM heap to be processed. The channels of a PPM file are presented in BGR order, just like an
+     * image that has been decoded from a file.
+     * <p><b>NOTE: </b> The file is mapped read-only. Changes made to the image are never written back to the file; use
+     * {@link #save(String)} to store them.</p>
+     * @param fileName The name of the image file. The file must have a .pgm or .ppm extension.
+     * @return The memory-mapped image object
+     * @throws Exception If the file does not exist, the extension is incorrect, or the file cannot be mapped
+     */
+    public static Image map(@NotNull @NotBlank @NotEmpty String fileName) throws Exception {
+        var extension = Misc.getFileExtension(fileName);
+        if(!extension.equals("pgm") && !extension.equals("ppm")) {
+            throw new ImageIncorrectExtensionException(extension);
+        }
+        if(!Misc.doesFileExist(fileName)){
+            throw new ImageNotFoundException(fileName);
+        }
 
-            // Read image from InputStream
-            var imageBytes = inputStream.readAllBytes();
-            var image = Imgcodecs.imdecode(new MatOfByte(imageBytes), flag);
+        try (var fileChannel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            var header = PnmHeader.read(new BufferedInputStream(Channels.newInputStream(fileChannel)), fileName);
+            var expectedChannels = extension.equals("ppm") ? 3 : 1;
+            if(!header.isBinary() || header.getChannels() != expectedChannels) {
+                throw new UnsupportedImageFormatException(fileName,
+                        "only binary " + (expectedChannels == 3 ? "P6" : "P5") + " rasters can be memory-mapped");
+            }
+            if(header.getMaxValue() < MAX_RGB) {
+                throw new UnsupportedImageFormatException(fileName,
+                        "rasters with a maximum value below " + MAX_RGB + " cannot be memory-mapped");
+            }
+            if(fileChannel.size() < header.getRasterOffset() + header.getRasterSize()) {
+                throw new UnsupportedImageFormatException(fileName, "the raster is truncated");
+            }
+            var numSamples = (long) header.getRows() * header.getColumns() * header.getChannels();
+            if(numSamples > Integer.MAX_VALUE) {
+                throw new UnsupportedImageFormatException(fileName,
+                        "the image exceeds the maximum number of samples (" + Integer.MAX_VALUE + ")");
+            }
+            var pixels = new MappedPixelBuffer(fileChannel, header.getRasterOffset(), (int) numSamples,
+                    header.getBytesPerSample());
+            var channelOffsets = expectedChannels == 3 ? new int[]{2, 1, 0} : new int[]{0}; // RGB on disk, BGR view
+            return new Image(fileName, header.getRows(), header.getColumns(), expectedChannels,
+                    header.getMaxValue(), channelOffsets, pixels, 0, header.getColumns() * expectedChannels);
+        }
+    }
 
-            if (image.empty()) {
-                throw new ImageNotFoundException(fileName);
+    /**
+     * This method opens an image file. Binary files that are at least {@link #MAPPING_THRESHOLD} bytes large are
+     * memory-mapped (see {@link #map(String)}), while all other files are decoded on the heap.
+     * @param fileName The name of the image file. The file must have a .pgm or .ppm extension.
+     * @return The image object
+     * @throws Exception If the file does not exist or the extension is incorrect.
+     */
+    public static Image open(@NotNull @NotBlank @NotEmpty String fileName) throws Exception {
+        if(Misc.doesFileExist(fileName) && Files.size(Paths.get(fileName)) >= MAPPING_THRESHOLD) {
+            try {
+                return map(fileName);
             }
+            catch (UnsupportedImageFormatException e) {
+                // fall back to decoding the file on the heap
+            }
+        }
+        return new Image(fileName);
+    }
 
-            this.rows = image.rows();
-            this.columns = image.cols();
-            this.channels = image.channels();
-            pixels = new int[rows][columns][channels];
+    /**
+     * This method creates a copy-on-write snapshot of the image. The snapshot shares the pixel buffer of this image
+     * until either of them is written to, at which point the written image receives its own copy of the buffer. The
+     * observers are not copied.
+     * @return The snapshot of the image
+     */
+    public Image snapshot() {
+        return snapshot(fileName);
+    }
 
-            // Convert Mat to pixel array
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < columns; j++) {
-                    for (int k = 0; k < channels; k++) {
-                        pixels[i][j][k] = (int)image.get(i, j)[k]; // convert byte (-127 to 128) to int (0-255)
-                    }
+    /**
+     * This method creates a copy-on-write snapshot of the image with another file name, see {@link #snapshot()}.
+     * @param fileName The file name of the snapshot
+     * @return The snapshot of the image
+     */
+    Image snapshot(String fileName) {
+        synchronized (this) {
+            sharesPixels = true;
+            var snapshot = new Image(fileName, rows, columns, channels, maxValue, channelOffsets.clone(), pixels,
+                    offset, rowStride);
+            snapshot.sharesPixels = true;
+            if(ownerViews != null) {
+                // this image is a view, so the snapshot reads the buffer of the image the view was taken from too
+                snapshot.ownerViews = register(ownerViews, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * This method creates a copy-on-write view of a window of the image. The view reads the samples of the window
+     * directly from the pixel buffer of this image, without copying them. The first write to the view copies the
+     * window to a private buffer, so this image is never changed through the view. Likewise, the window is copied to
+     * the view before this image is written to, so the view keeps the samples it was taken with.
+     * @param row The first row of the window
+     * @param column The first column of the window
+     * @param totalRows The number of rows of the window
+     * @param totalColumns The number of columns of the window
+     * @return The view of the window
+     */
+    public Image view(int row, int column, int totalRows, int totalColumns) {
+        if(totalRows <= 0 || totalColumns <= 0) {
+            throw new IllegalArgumentException("Invalid image dimensions: " + totalRows + "x" + totalColumns + "x" +
+                    channels);
+        }
+        if(row < 0 || column < 0 || row + totalRows > rows || column + totalColumns > columns) {
+            throw new IllegalArgumentException("The window of " + totalRows + "x" + totalColumns + " pixels at (" +
+                    row + ", " + column + ") does not fit in the image.");
+        }
+        synchronized (this) {
+            var view = new Image(null, totalRows, totalColumns, channels, maxValue, channelOffsets.clone(), pixels,
+                    offset + row * rowStride + column * channels, rowStride);
+            view.sharesPixels = true;
+            if(!sharesPixels) {
+                if(liveViews == null) {
+                    liveViews = new ArrayList<>();
                 }
+                view.ownerViews = register(liveViews, view);
+            }
+            else if(ownerViews != null) {
+                view.ownerViews = register(ownerViews, view);
             }
+            return view;
         }
+    }
 
+    /**
+     * This method adds a view to the live views of the image whose buffer it reads. The views that were garbage
+     * collected are removed on the way.
+     * @param views The live views of the image whose buffer the view reads
+     * @param view The view
+     * @return The live views, to be stored in the view
+     */
+    private static List<WeakReference<Image>> register(List<WeakReference<Image>> views, Image view) {
+        synchronized (views) {
+            views.removeIf(reference -> reference.get() == null);
+            views.add(new WeakReference<>(view));
+        }
+        return views;
+    }
+
+    /**
+     * This method copies the windows of the live views of this image to their own buffers, before the buffer of this
+     * image is written to.
+     */
+    private void detachViews() {
+        var views = liveViews;
+        if(views == null) {
+            return;
+        }
+        List<WeakReference<Image>> detachedViews;
+        synchronized (views) {
+            detachedViews = new ArrayList<>(views);
+            views.clear();
+        }
+        liveViews = null;
+        for(var reference : detachedViews) {
+            var view = reference.get();
+            if(view != null) {
+                view.ensureWritable(true);
+            }
+        }
+    }
+
+    /**
+     * This method copies the pixel buffer if it is shared with a snapshot or view, so the image can be written to
+     * without changing the other images.
+     */
+    private void ensureWritable() {
+        ensureWritable(true);
+    }
+
+    /**
+     * This method gives the image its own pixel buffer if it shares one, see {@link #ensureWritable()}.
+     * @param preserve False if every sample is about to be overwritten, in which case the samples are not copied
+     */
+    private void ensureWritable(boolean preserve) {
+        if(sharesPixels) {
+            synchronized (this) {
+                if(sharesPixels) {
+                    pixels = preserve ? copyPixels() : PixelBuffer.allocate(rows * columns * channels,
+                            pixels.getMaxSampleValue());
+                    offset = 0;
+                    rowStride = columns * channels;
+                    // the views of the old buffer are not changed by the writes to the new one
+                    liveViews = null;
+                    ownerViews = null;
+                    sharesPixels = false;
+                }
+            }
+        }
+        else if(liveViews != null) {
+            synchronized (this) {
+                detachViews();
+            }
+        }
+    }
+
+    /**
+     * This method copies the samples of the image to a new buffer, in which the rows are stored back to back.
+     * @return The copy of the samples
+     */
+    private PixelBuffer copyPixels() {
+        if(isCompact()) {
+            return pixels.copy();
+        }
+        var rowLength = columns * channels;
+        var copy = PixelBuffer.allocate(rows * rowLength, pixels.getMaxSampleValue());
+        for(int i = 0; i < rows; i++) {
+            copy.copyFrom(pixels, getRowStart(i), i * rowLength, rowLength);
+        }
+        return copy;
+    }
+
+    /**
+     * This method returns the index of the first sample of a row in the pixel buffer.
+     * @param row The row
+     * @return The index of the first sample of the row
+     */
+    private int getRowStart(int row) {
+        return offset + row * rowStride;
     }
 
     /**
@@ -156,7 +436,7 @@ public class Image implements AutoCloseable{
         if(!isInBounds(row, column, channel)) {
             throw new ImageOutOfBoundsException(row, column, channel, rows, columns, channels);
         }
-        return pixels[row][column][channel];
+        return pixels.get(getIndex(row, column, channel));
     }
 
     /**
@@ -174,13 +454,14 @@ public class Image implements AutoCloseable{
             throw new Exception("This method is used for grayscale images only.");
         }
 
-        return pixels[row][column][0];
+        return pixels.get(getIndex(row, column, 0));
     }
 
     /**
      * This method sets the pixel value at the specified row, column, and channel.
      * <p><b>NOTE: </b> The observer is notified when this method is called. If more than 50 pixels are changed, it
-     * might be better to use the deep copy method.</p>
+     * might be better to use the deep copy method or to group the writes between {@link #beginUpdate()} and
+     * {@link #endUpdate()}.</p>
      * @param row The row of the pixel
      * @param column The column of the pixel
      * @param channel The channel of the pixel
@@ -192,15 +473,17 @@ public class Image implements AutoCloseable{
         if(!isInBounds(row, column, channel)) {
             throw new ImageOutOfBoundsException(row, column, channel, rows, columns, channels);
         }
-        pixels[row][column][channel] = limitValue(value);
-        notifyObserver();
+        ensureWritable();
+        pixels.set(getIndex(row, column, channel), limitValue(value));
+        notifyObserver(ImageChange.ofPixel(row, column, channel));
 
     }
 
     /**
      * This method sets the pixel value at the specified row and column. This method is used for grayscale images.
      * <p><b>NOTE: </b> The observer is notified when this method is called. If more than 50 pixels are changed, it
-     * might be better to use the deep copy method.</p>
+     * might be better to use the deep copy method or to group the writes between {@link #beginUpdate()} and
+     * {@link #endUpdate()}.</p>
      * @param row The row of the pixel
      * @param column The column of the pixel
      * @param value The value to be set
@@ -213,8 +496,9 @@ public class Image implements AutoCloseable{
         if(isColor) {
             throw new Exception("This method is used for grayscale images only.");
         }
-        pixels[row][column][0] = limitValue(value);
-        notifyObserver();
+        ensureWritable();
+        pixels.set(getIndex(row, column, 0), limitValue(value));
+        notifyObserver(ImageChange.ofPixel(row, column, 0));
     }
 
     /**
@@ -235,7 +519,7 @@ public class Image implements AutoCloseable{
      * @return True if the specified row and column is in bounds for the image, false otherwise
      */
     public boolean isInBounds(int row, int column) {
-        return (row >= 0 && row <= rows) && (column >= 0 && column <= columns);
+        return (row >= 0 && row < rows) && (column >= 0 && column < columns);
     }
 
     /**
@@ -249,11 +533,10 @@ public class Image implements AutoCloseable{
                     ". The image has " + channels + " channels.");
         }
         var channelPixels = new int[rows * columns];
-        for(int i = 0; i < (rows * columns); i++){ channelPixels[i] = 0; }
-
         for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < columns; j++) {
-                channelPixels[i * columns + j] = pixels[i][j][channel];
+            var index = getIndex(i, 0, channel);
+            for(int j = 0; j < columns; j++, index += channels) {
+                channelPixels[i * columns + j] = pixels.get(index);
             }
         }
         return channelPixels;
@@ -276,67 +559,446 @@ public class Image implements AutoCloseable{
                     ". The image has " + rows * columns + " pixels.");
         }
 
+        ensureWritable();
         for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < columns; j++) {
-                pixels[i][j][channel] = limitValue(channelData[i * columns + j]);
+            var index = getIndex(i, 0, channel);
+            for(int j = 0; j < columns; j++, index += channels) {
+                pixels.set(index, limitValue(channelData[i * columns + j]));
+            }
+        }
+        notifyObserver(ImageChange.ofChannel(this, channel));
+    }
+
+    /**
+     * This method maps a window of a source image through per-channel lookup tables and stores the result in a window
+     * of this image, i.e. {@code this[row + i][column + j][k] = tables[k][source[sourceRow + i][sourceColumn + j][k]]}.
+     * The windows are traversed in a single pass directly over the pixel buffers, in parallel bands of rows. The source
+     * image can be this image, in which case the window is transformed in place.
+     * <p><b>NOTE: </b> The observer is notified once, with the target window as the dirty rectangle.</p>
+     * @param tables The lookup tables, one per channel. Each table must have an entry for every possible sample value
+     *               of the source image. Entries are capped at the maximum value of this image.
+     * @param row The first row of the target window
+     * @param column The first column of the target window
+     * @param totalRows The number of rows of the windows
+     * @param totalColumns The number of columns of the windows
+     * @param source The image to read the samples from
+     * @param sourceRow The first row of the source window
+     * @param sourceColumn The first column of the source window
+     */
+    public void applyLookupTable(@NotNull int [][] tables, int row, int column, int totalRows, int totalColumns,
+                                 @NotNull Image source, int sourceRow, int sourceColumn) {
+        if(source.channels != this.channels || tables.length != this.channels) {
+            throw new IllegalArgumentException("Expected " + channels + " lookup tables and a source image with " +
+                    channels + " channels.");
+        }
+        if(totalRows < 0 || totalColumns < 0 || row < 0 || column < 0 || sourceRow < 0 || sourceColumn < 0 ||
+                row + totalRows > rows || column + totalColumns > columns ||
+                sourceRow + totalRows > source.rows || sourceColumn + totalColumns > source.columns) {
+            throw new IllegalArgumentException("The window of " + totalRows + "x" + totalColumns +
+                    " pixels does not fit in the source or target image.");
+        }
+
+        ensureWritable(!(source != this && row == 0 && column == 0 && totalRows == rows && totalColumns == columns));
+        var cappedTables = new int[channels][];
+        for(int k = 0; k < channels; k++) {
+            if(tables[k].length <= source.maxValue) {
+                throw new IllegalArgumentException("The lookup table of channel " + k + " has " + tables[k].length +
+                        " entries, but the source image has samples up to " + source.maxValue);
+            }
+            cappedTables[k] = new int[tables[k].length];
+            for(int v = 0; v < tables[k].length; v++) {
+                cappedTables[k][v] = limitValue(tables[k][v]);
+            }
+        }
+
+        RowBandTask band = (startRow, endRow) -> {
+            if(this.pixels instanceof BytePixelBuffer target && source.pixels instanceof BytePixelBuffer sourceBuffer) {
+                var targetData = target.array();
+                var sourceData = sourceBuffer.array();
+                for(int i = startRow; i < endRow; i++) {
+                    for(int k = 0; k < channels; k++) {
+                        var table = cappedTables[k];
+                        var targetIndex = getIndex(row + i, column, k);
+                        var sourceIndex = source.getIndex(sourceRow + i, sourceColumn, k);
+                        for(int j = 0; j < totalColumns; j++, targetIndex += channels, sourceIndex += channels) {
+                            targetData[targetIndex] = (byte) table[sourceData[sourceIndex] & BytePixelBuffer.MAX_VALUE];
+                        }
+                    }
+                }
+            }
+            else {
+                for(int i = startRow; i < endRow; i++) {
+                    for(int k = 0; k < channels; k++) {
+                        var table = cappedTables[k];
+                        var targetIndex = getIndex(row + i, column, k);
+                        var sourceIndex = source.getIndex(sourceRow + i, sourceColumn, k);
+                        for(int j = 0; j < totalColumns; j++, targetIndex += channels, sourceIndex += channels) {
+                            pixels.set(targetIndex, table[source.pixels.get(sourceIndex)]);
+                        }
+                    }
+                }
+            }
+        };
+        forEachRowBand(totalRows, (long) totalColumns * channels, band);
+        notifyObserver(new ImageChange(row, column, row + totalRows, column + totalColumns, (1L << channels) - 1));
+    }
+
+    /**
+     * This method copies some channels of a window of a source image into a window of this image, i.e.
+     * {@code this[row + i][column + j][k] = source[sourceRow + i][sourceColumn + j][k]} for every channel k in the
+     * channel mask. Rows whose samples are stored in the same order in both images are copied in bulk.
+     * <p><b>NOTE: </b> The observer is notified once, with the target window and the copied channels.</p>
+     * @param source The image to copy the samples from. It must have the same number of channels as this image.
+     * @param sourceRow The first row of the source window
+     * @param sourceColumn The first column of the source window
+     * @param row The first row of the target window
+     * @param column The first column of the target window
+     * @param totalRows The number of rows of the windows
+     * @param totalColumns The number of columns of the windows
+     * @param channelMask Bit mask of the channels to be copied (bit k is set if channel k is copied)
+     */
+    public void copyWindow(@NotNull Image source, int sourceRow, int sourceColumn, int row, int column, int totalRows,
+                           int totalColumns, long channelMask) {
+        if(source.channels != this.channels) {
+            throw new IllegalArgumentException("Expected a source image with " + channels + " channels.");
+        }
+        if(totalRows < 0 || totalColumns < 0 || row < 0 || column < 0 || sourceRow < 0 || sourceColumn < 0 ||
+                row + totalRows > rows || column + totalColumns > columns ||
+                sourceRow + totalRows > source.rows || sourceColumn + totalColumns > source.columns) {
+            throw new IllegalArgumentException("The window of " + totalRows + "x" + totalColumns +
+                    " pixels does not fit in the source or target image.");
+        }
+        var allChannels = (1L << channels) - 1;
+        channelMask &= allChannels;
+        if(totalRows == 0 || totalColumns == 0 || channelMask == 0) {
+            return;
+        }
+        ensureWritable(!(source != this && row == 0 && column == 0 && totalRows == rows && totalColumns == columns &&
+                channelMask == allChannels));
+
+        var copyRows = channelMask == allChannels && source.maxValue <= maxValue &&
+                Arrays.equals(source.channelOffsets, channelOffsets);
+        for(int i = 0; i < totalRows; i++) {
+            if(copyRows) {
+                pixels.copyFrom(source.pixels, source.getIndex(sourceRow + i, sourceColumn, 0) - channelOffsets[0],
+                        getIndex(row + i, column, 0) - channelOffsets[0], totalColumns * channels);
+                continue;
+            }
+            for(int k = 0; k < channels; k++) {
+                if((channelMask & (1L << k)) == 0) {
+                    continue;
+                }
+                var targetIndex = getIndex(row + i, column, k);
+                var sourceIndex = source.getIndex(sourceRow + i, sourceColumn, k);
+                for(int j = 0; j < totalColumns; j++, targetIndex += channels, sourceIndex += channels) {
+                    pixels.set(targetIndex, limitValue(source.pixels.get(sourceIndex)));
+                }
+            }
+        }
+        notifyObserver(new ImageChange(row, column, row + totalRows, column + totalColumns, channelMask));
+    }
+
+    /**
+     * This method sets every sample of the image to 0. If the pixel buffer is shared with a snapshot or view, the image
+     * receives a new zero filled buffer, so the shared samples are not copied first.
+     * <p><b>NOTE: </b> The observer is notified when this method is called.</p>
+     */
+    public void clear() {
+        var shared = sharesPixels;
+        ensureWritable(false);
+        if(!shared) {
+            var rowLength = columns * channels;
+            for(int i = 0; i < rows; i++) {
+                var rowStart = getRowStart(i);
+                for(int j = 0; j < rowLength; j++) {
+                    pixels.set(rowStart + j, 0);
+                }
             }
         }
-        notifyObserver();
+        notifyObserver(ImageChange.ofImage(this));
     }
 
     /**
-     * This method sets a cap of the pixel value at 0 and 255.
+     * This method copies some channels of a window of a source image with a different maximum value into a window of
+     * this image. Every sample is rescaled from the range of the source image to the range of this image, with
+     * {@link #rescale(int, int, int)}. A sample of this image that already rescales to the source sample is kept, so
+     * the samples of a deeper image that were not changed in a shallower copy keep their precision when the copy is
+     * written back.
+     * <p><b>NOTE: </b> The observer is notified once, with the target window and the copied channels.</p>
+     * @param source The image to copy the samples from. It must have the same number of channels as this image.
+     * @param sourceRow The first row of the source window
+     * @param sourceColumn The first column of the source window
+     * @param row The first row of the target window
+     * @param column The first column of the target window
+     * @param totalRows The number of rows of the windows
+     * @param totalColumns The number of columns of the windows
+     * @param channelMask Bit mask of the channels to be copied (bit k is set if channel k is copied)
+     */
+    public void rescaleWindow(@NotNull Image source, int sourceRow, int sourceColumn, int row, int column,
+                              int totalRows, int totalColumns, long channelMask) {
+        if(source.channels != this.channels) {
+            throw new IllegalArgumentException("Expected a source image with " + channels + " channels.");
+        }
+        if(totalRows < 0 || totalColumns < 0 || row < 0 || column < 0 || sourceRow < 0 || sourceColumn < 0 ||
+                row + totalRows > rows || column + totalColumns > columns ||
+                sourceRow + totalRows > source.rows || sourceColumn + totalColumns > source.columns) {
+            throw new IllegalArgumentException("The window of " + totalRows + "x" + totalColumns +
+                    " pixels does not fit in the source or target image.");
+        }
+        channelMask &= (1L << channels) - 1;
+        if(totalRows == 0 || totalColumns == 0 || channelMask == 0) {
+            return;
+        }
+        ensureWritable();
+
+        var sourceMaxValue = source.maxValue;
+        for(int i = 0; i < totalRows; i++) {
+            for(int k = 0; k < channels; k++) {
+                if((channelMask & (1L << k)) == 0) {
+                    continue;
+                }
+                var targetIndex = getIndex(row + i, column, k);
+                var sourceIndex = source.getIndex(sourceRow + i, sourceColumn, k);
+                for(int j = 0; j < totalColumns; j++, targetIndex += channels, sourceIndex += channels) {
+                    var value = source.pixels.get(sourceIndex);
+                    if(rescale(pixels.get(targetIndex), maxValue, sourceMaxValue) != value) {
+                        pixels.set(targetIndex, limitValue(rescale(value, sourceMaxValue, maxValue)));
+                    }
+                }
+            }
+        }
+        notifyObserver(new ImageChange(row, column, row + totalRows, column + totalColumns, channelMask));
+    }
+
+    /**
+     * This method rescales a sample value from one range to another, rounding to the nearest value. Rescaling a value
+     * to a deeper range and back gives the same value.
+     * @param value The sample value, between 0 and the old maximum value
+     * @param fromMaxValue The old maximum value
+     * @param toMaxValue The new maximum value
+     * @return The rescaled sample value, between 0 and the new maximum value
+     */
+    public static int rescale(int value, int fromMaxValue, int toMaxValue) {
+        if(fromMaxValue == toMaxValue) {
+            return value;
+        }
+        return (int) (((long) value * toMaxValue + fromMaxValue / 2) / fromMaxValue);
+    }
+
+    /**
+     * This method sets a cap of the pixel value at 0 and the maximum value of the image (255 for 8-bit images).
      * @param value The pixel value to be capped.
-     * @return The capped pixel value. If the value is less than 0, it is set to 0. If the value is greater than 255,
-     * it is set to 255.
+     * @return The capped pixel value. If the value is less than 0, it is set to 0. If the value is greater than the
+     * maximum value of the image, it is set to the maximum value.
      */
     protected int limitValue(int value) {
         if(value < 0) {
             return 0;
         }
-        else if(value > MAX_RGB) {
-            return MAX_RGB;
+        else if(value > maxValue) {
+            return maxValue;
         }
         return value;
     }
 
     /**
-     * This method saves the image to the specified file name.
+     * This method translates a row, column, and channel into the linear index of the sample in the pixel buffer.
+     * <p><b>NOTE: </b> No bounds checks are performed.</p>
+     * @param row The row of the pixel
+     * @param column The column of the pixel
+     * @param channel The channel of the pixel
+     * @return The linear index of the sample in the pixel buffer
+     * @see #getBuffer()
+     */
+    public int getIndex(int row, int column, int channel) {
+        return offset + row * rowStride + column * channels + channelOffsets[channel];
+    }
+
+    /**
+     * This method processes a range of rows in parallel bands with the {@link TileExecutor}, for work that writes to
+     * this image. Images backed by a memory-mapped file are processed sequentially, since their pages are copied on the
+     * first write.
+     * @param rows The number of rows to be processed
+     * @param samplesPerRow The number of samples processed per row
+     * @param task The work to be performed on every band. Every band must write a disjoint set of samples.
+     */
+    public void forEachRowBand(int rows, long samplesPerRow, @NotNull RowBandTask task) {
+        try {
+            if(pixels instanceof MappedPixelBuffer) {
+                task.run(0, rows);
+            }
+            else {
+                TileExecutor.forEachRowBand(rows, samplesPerRow, task);
+            }
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * This method returns the channel offsets of a pixel in which the channels are stored in their natural order.
+     * @param channels The number of channels in the image
+     * @return The channel offsets {0, 1, ..., channels - 1}
+     */
+    private static int [] getDefaultChannelOffsets(int channels) {
+        var offsets = new int[channels];
+        for(int k = 0; k < channels; k++) { offsets[k] = k; }
+        return offsets;
+    }
+
+    /**
+     * This method saves the image to the specified file name. The image is written as a binary PGM (grayscale) or PPM
+     * (color) file by the pure Java {@link PnmWriter}.
      * @param fileName The name of the file to be saved
+     * @throws ImageIncorrectExtensionException If the extension of the file is not .pgm or .ppm
+     * @throws IOException If the file cannot be written
      */
-    public void save(@NotNull @NotBlank @NotEmpty String fileName) throws ImageIncorrectExtensionException {
-        var image = getOpenCvMat();
+    public void save(@NotNull @NotBlank @NotEmpty String fileName) throws ImageIncorrectExtensionException,
+            IOException {
         var extension = Misc.getFileExtension(fileName);
         if(!extension.equals("ppm") && !extension.equals("pgm")){
             throw new ImageIncorrectExtensionException(extension);
         }
-        Imgcodecs.imwrite(fileName, image);
+        PnmWriter.write(Paths.get(fileName), this);
+        ImageCache.getDefault().invalidate(fileName);
     }
 
     /**
-     * This method returns the OpenCV Mat object of the image.
+     * This method returns the OpenCV Mat object of the image. 8-bit images are returned as a {@code CV_8U} Mat and
+     * deeper images as a {@code CV_16U} Mat. The pixels are transferred with a single bulk copy.
      * @return The OpenCV Mat object of the image
      */
     public Mat getOpenCvMat(){
-        var image = new Mat(rows, columns, isColor ? CvType.CV_8UC3 : CvType.CV_8UC1);
-        for(int i = 0; i < rows; i++) {
-            for(int j = 0; j < columns; j++) {
-                if(this.isColor){
-                    var channelValues = new double[this.channels];
-                    for(int k = 0; k < channels; k++) {
-                        channelValues[k] = pixels[i][j][k];
+        var is8Bit = maxValue <= MAX_RGB;
+        var image = new Mat(rows, columns, CvType.makeType(is8Bit ? CvType.CV_8U : CvType.CV_16U, channels));
+        var numSamples = rows * columns * channels;
+        if(is8Bit) {
+            if(isContiguous() && pixels instanceof BytePixelBuffer bytePixels) {
+                image.put(0, 0, bytePixels.array(), 0, numSamples);
+            }
+            else if(hasNaturalChannelOrder() && pixels instanceof BytePixelBuffer bytePixels) {
+                for(int i = 0; i < rows; i++) {
+                    image.put(i, 0, bytePixels.array(), getRowStart(i), columns * channels);
+                }
+            }
+            else {
+                var data = new byte[numSamples];
+                for(int i = 0, n = 0; i < rows; i++) {
+                    for(int j = 0; j < columns; j++) {
+                        for(int k = 0; k < channels; k++) {
+                            data[n++] = (byte) pixels.get(getIndex(i, j, k));
+                        }
                     }
-                    image.put(i, j, channelValues);
                 }
-                else {
-                    image.put(i, j, pixels[i][j][0]);
+                image.put(0, 0, data);
+            }
+        }
+        else {
+            short [] data;
+            if(isContiguous() && pixels instanceof ShortPixelBuffer shortPixels) {
+                data = shortPixels.array();
+            }
+            else {
+                data = new short[numSamples];
+                for(int i = 0, n = 0; i < rows; i++) {
+                    for(int j = 0; j < columns; j++) {
+                        for(int k = 0; k < channels; k++) {
+                            data[n++] = (short) pixels.get(getIndex(i, j, k));
+                        }
+                    }
                 }
-
             }
+            image.put(0, 0, data);
+        }
+        return image;
+    }
+
+    /**
+     * This method creates an image object from an OpenCV Mat object. The pixels are transferred with a single bulk
+     * copy. Color Mat objects are expected to be in BGR order.
+     * @param mat The OpenCV Mat object. The depth of the Mat must be {@code CV_8U} or {@code CV_16U}.
+     * @return The image object
+     */
+    public static Image fromMat(@NotNull Mat mat) {
+        var depth = mat.depth();
+        if(depth != CvType.CV_8U && depth != CvType.CV_16U) {
+            throw new IllegalArgumentException("Unsupported Mat type: " + CvType.typeToString(mat.type()) +
+                    ". Only CV_8U and CV_16U Mat objects can be converted to images.");
         }
+        var image = new Image(mat.rows(), mat.cols(), mat.channels(),
+                depth == CvType.CV_8U ? MAX_RGB : ShortPixelBuffer.MAX_VALUE);
+        image.readFromMat(mat);
         return image;
     }
 
+    /**
+     * This method copies the pixels of an OpenCV Mat object with the same dimensions into the pixel buffer with a
+     * single bulk copy. The observers are not notified.
+     * @param mat The OpenCV Mat object
+     */
+    private void readFromMat(Mat mat) {
+        var source = mat.isContinuous() ? mat : mat.clone();
+        var numSamples = rows * columns * channels;
+        if(source.depth() == CvType.CV_8U && isContiguous() && pixels instanceof BytePixelBuffer bytePixels) {
+            source.get(0, 0, bytePixels.array());
+        }
+        else {
+            int [] data;
+            if(source.depth() == CvType.CV_8U) {
+                var bytes = new byte[numSamples];
+                source.get(0, 0, bytes);
+                data = new int[numSamples];
+                for(int n = 0; n < numSamples; n++) { data[n] = bytes[n] & BytePixelBuffer.MAX_VALUE; }
+            }
+            else {
+                var shorts = new short[numSamples];
+                source.get(0, 0, shorts);
+                data = new int[numSamples];
+                for(int n = 0; n < numSamples; n++) { data[n] = shorts[n] & ShortPixelBuffer.MAX_VALUE; }
+            }
+            for(int i = 0, n = 0; i < rows; i++) {
+                for(int j = 0; j < columns; j++) {
+                    for(int k = 0; k < channels; k++) {
+                        pixels.set(getIndex(i, j, k), limitValue(data[n++]));
+                    }
+                }
+            }
+        }
+        if(source != mat) { source.release(); }
+    }
+
+    /**
+     * This method checks if the samples of the image are stored back to back in their natural order, i.e. the pixel
+     * buffer can be transferred as is.
+     * @return True if the samples are stored back to back in their natural order, false otherwise
+     */
+    private boolean isContiguous() {
+        return isCompact() && hasNaturalChannelOrder();
+    }
+
+    /**
+     * This method checks if the pixel buffer holds exactly the rows of the image, stored back to back.
+     * @return True if the pixel buffer holds exactly the rows of the image, false for views and windows
+     */
+    private boolean isCompact() {
+        return offset == 0 && rowStride == columns * channels && pixels.size() == rows * rowStride;
+    }
+
+    /**
+     * This method checks if the channels of a pixel are stored in their natural order.
+     * @return True if the channel offsets are {0, 1, ..., channels - 1}
+     */
+    private boolean hasNaturalChannelOrder() {
+        for(int k = 0; k < channels; k++) {
+            if(channelOffsets[k] != k) { return false; }
+        }
+        return true;
+    }
+
     /**
      * This method returns the OpenCV Mat object of the image based on the specified channel.
      * @param channel The channel of the image
@@ -344,10 +1006,11 @@ public class Image implements AutoCloseable{
      */
     public Mat getOpenCvMat(int channel){
         var image = getOpenCvMat();
-        var imageChannels = new ArrayList<Mat>();
-        Core.split(image, imageChannels);
-        if(isColor){ return imageChannels.get(channel); }
-        else { return imageChannels.get(0); }
+        if(!isColor){ return image; }
+        var channelImage = new Mat();
+        Core.extractChannel(image, channelImage, channel);
+        image.release();
+        return channelImage;
     }
 
     /**
@@ -386,7 +1049,16 @@ public class Image implements AutoCloseable{
         if(rows != other.rows || columns != other.columns || channels != other.channels) {
             return false;
         }
-        return Arrays.deepEquals(pixels, other.pixels);
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                for(int k = 0; k < channels; k++) {
+                    if(pixels.get(getIndex(i, j, k)) != other.pixels.get(other.getIndex(i, j, k))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -395,7 +1067,15 @@ public class Image implements AutoCloseable{
      */
     @Override
     public int hashCode() {
-        return Objects.hash(rows, columns, channels, Arrays.deepHashCode(pixels));
+        var pixelHash = 1;
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                for(int k = 0; k < channels; k++) {
+                    pixelHash = 31 * pixelHash + pixels.get(getIndex(i, j, k));
+                }
+            }
+        }
+        return Objects.hash(rows, columns, channels, pixelHash);
     }
 
     /**
@@ -447,6 +1127,38 @@ public class Image implements AutoCloseable{
         return channels;
     }
 
+    /**
+     * This method is used to get the maximum value of a pixel in the image (255 for 8-bit images).
+     * @return The maximum value of a pixel in the image
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * This method is used to get the pixel buffer of the image. Use {@link #getIndex(int, int, int)} to locate a
+     * sample in the buffer.
+     * <p><b>NOTE: </b> The buffer is not a copy. Values written directly to the buffer are neither capped nor reported
+     * to the observers. Use {@link #reportChange(ImageChange)} once the writes are done. If the buffer is shared with a
+     * snapshot, the image receives its own copy first; use {@link #getReadOnlyBuffer()} to only read the samples.</p>
+     * @return The pixel buffer of the image
+     */
+    public PixelBuffer getBuffer() {
+        ensureWritable();
+        return pixels;
+    }
+
+    /**
+     * This method is used to get the pixel buffer of the image for reading. Unlike {@link #getBuffer()}, a buffer that
+     * is shared with a snapshot or a view is not copied, so reading a cached image or a region of interest is cheap.
+     * <p><b>NOTE: </b> The buffer must not be written to, since the writes could be seen by the images sharing it. It
+     * may be larger than the image; use {@link #getIndex(int, int, int)} to locate a sample in the buffer.</p>
+     * @return The pixel buffer of the image
+     */
+    public PixelBuffer getReadOnlyBuffer() {
+        return pixels;
+    }
+
     /**
      * This method is used to check if the image is a color image.
      * @return True if the image is a color image, false otherwise
@@ -464,15 +1176,44 @@ public class Image implements AutoCloseable{
         if(other.rows != this.rows || other.columns != this.columns || other.channels != this.channels){
             throw new ImageDimensionsNotSameException(this, other);
         }
+        ensureWritable(other == this);
 
-        for(int i = 0; i < this.rows; i++){
-            for(int j = 0; j < this.columns; j++){
-                for(int k = 0; k < this.channels; k++){
-                    this.pixels[i][j][k] = other.pixels[i][j][k];
+        if(this.maxValue == other.maxValue && Arrays.equals(this.channelOffsets, other.channelOffsets)) {
+            for(int i = 0; i < rows; i++) {
+                this.pixels.copyFrom(other.pixels, other.getRowStart(i), getRowStart(i), columns * channels);
+            }
+        }
+        else {
+            for(int i = 0; i < this.rows; i++){
+                for(int j = 0; j < this.columns; j++){
+                    for(int k = 0; k < this.channels; k++){
+                        this.pixels.set(getIndex(i, j, k), limitValue(other.pixels.get(other.getIndex(i, j, k))));
+                    }
                 }
             }
         }
-        notifyObserver();
+        notifyObserver(ImageChange.ofImage(this));
+    }
+
+    /**
+     * Method that performs a deep copy from an OpenCV Mat object into the current image. The pixels are transferred
+     * with a single bulk copy, so results computed with OpenCV can be written back without a round trip through the
+     * file system.
+     * <p><b>NOTE: </b> The observer is notified when this method is called.</p>
+     * @param other OpenCV Mat object to be copied. Color Mat objects are expected to be in BGR order.
+     * @throws ImageDimensionsNotSameException If the dimensions of the Mat object differ from the image
+     */
+    public void deepCopy(@NotNull Mat other) throws ImageDimensionsNotSameException {
+        if(other.rows() != this.rows || other.cols() != this.columns || other.channels() != this.channels){
+            throw new ImageDimensionsNotSameException(this, other.rows(), other.cols(), other.channels());
+        }
+        if(other.depth() != CvType.CV_8U && other.depth() != CvType.CV_16U) {
+            throw new IllegalArgumentException("Unsupported Mat type: " + CvType.typeToString(other.type()) +
+                    ". Only CV_8U and CV_16U Mat objects can be copied into images.");
+        }
+        ensureWritable(false);
+        readFromMat(other);
+        notifyObserver(ImageChange.ofImage(this));
     }
 
     /**
@@ -492,12 +1233,78 @@ public class Image implements AutoCloseable{
         observers.remove(observer);
     }
 
+    /**
+     * This method is used to add an observer that is notified with a summary of every change made to the image object.
+     * @param observer The observer to be added
+     * @see ImageChange
+     */
+    public void addChangeObserver(BiConsumer<Image, ImageChange> observer) {
+        changeObservers.add(observer);
+    }
+
+    /**
+     * This method is used to remove a change observer from the image object.
+     * @param observer The observer to be removed
+     */
+    public void removeChangeObserver(BiConsumer<Image, ImageChange> observer) {
+        changeObservers.remove(observer);
+    }
+
+    /**
+     * This method notifies the observers of a change that was made directly through the pixel buffer.
+     * <p><b>NOTE: </b> While a batch is open, the change is merged into the pending change.</p>
+     * @param change The change made to the image
+     * @see #getBuffer()
+     */
+    public void reportChange(@NotNull ImageChange change) {
+        notifyObserver(change);
+    }
+
+    /**
+     * This method starts a batch of modifications. Until the matching {@link #endUpdate()} call, the observers are not
+     * notified; the changes are merged into a single dirty rectangle instead. Batches can be nested, in which case the
+     * observers are notified when the outermost batch ends.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * This method ends a batch of modifications started with {@link #beginUpdate()}. When the outermost batch ends and
+     * at least one pixel was changed, the observers are notified once with the merged change.
+     * @throws IllegalStateException If no batch is open
+     */
+    public void endUpdate() {
+        if(updateDepth == 0) {
+            throw new IllegalStateException("endUpdate() called without a matching beginUpdate()");
+        }
+        if(--updateDepth == 0 && pendingChange != null) {
+            var change = pendingChange;
+            pendingChange = null;
+            notifyObserver(change);
+        }
+    }
+
+    /**
+     * This method checks if a batch of modifications is currently open.
+     * @return True if the observers are currently not notified of the changes, false otherwise
+     */
+    public boolean isUpdating() {
+        return updateDepth > 0;
+    }
+
     /**
      * This method is used to notify the observers of the image object. This method is called whenever a pixel value
-     * is changed.
+     * is changed. While a batch is open, the change is merged into the pending change instead.
+     * @param change The change made to the image
      */
-    private void notifyObserver() {
+    private void notifyObserver(ImageChange change) {
+        if(updateDepth > 0) {
+            pendingChange = pendingChange == null ? change : pendingChange.union(change);
+            return;
+        }
         observers.forEach(observer -> observer.accept(this));
+        changeObservers.forEach(observer -> observer.accept(this, change));
     }
 
     /**
@@ -509,6 +1316,8 @@ public class Image implements AutoCloseable{
             removeObserver(o);
         }
         observers.clear();
+        changeObservers.clear();
+        pendingChange = null;
         pixels = null;
     }
 
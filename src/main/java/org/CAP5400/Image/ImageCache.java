@@ -0,0 +1,260 @@
+package org.CAP5400.Image;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.Misc.Misc;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * This class caches decoded image files, so an image that is the source of many lines of a parameter file is read and
+ * decoded only once. Every call to {@link #open(String)} returns a copy-on-write {@link Image#snapshot()} of the cached
+ * image, which only copies the pixels when they are written to.
+ * <br><br>
+ * <p>The images are identified by their normalized absolute path and validated with the modification time and the size
+ * of the file, so a file that is changed is decoded again. Images saved with {@link Image#save(String)} are removed
+ * from the shared cache, see {@link #getDefault()}.</p>
+ * <p>The cache holds at most {@link #getCapacity()} bytes of pixels and evicts the least recently opened images first.
+ * The capacity can be configured with the {@value #CAPACITY_PROPERTY} system property; 0 disables the cache.</p>
+ * <p><b>NOTE: </b> Files that are memory-mapped by {@link Image#open(String)} are never cached, since their pixels are
+ * already shared with the operating system.</p>
+ * @see Image
+ * @author Reubin George
+ */
+public final class ImageCache {
+    public static final String CAPACITY_PROPERTY = "cap5400.imageCache.capacity";
+    public static final long DEFAULT_CAPACITY = 256L * 1024 * 1024; // bytes of pixels
+
+    private static final ImageCache DEFAULT = new ImageCache(readCapacity());
+
+    private final long capacity;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private long size;
+    private long hits, misses;
+
+    /**
+     * This class holds a cached image. The image is decoded by the first thread that opens the file; other threads
+     * opening the same file wait for it instead of decoding it again.
+     */
+    private static final class Entry {
+        private final FileTime lastModified;
+        private final long fileSize;
+        private final CompletableFuture<Image> image = new CompletableFuture<>();
+        private long weight; // 0 until the image is decoded
+
+        private Entry(BasicFileAttributes attributes) {
+            this.lastModified = attributes.lastModifiedTime();
+            this.fileSize = attributes.size();
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return lastModified.equals(attributes.lastModifiedTime()) && fileSize == attributes.size();
+        }
+    }
+
+    /**
+     * Constructor of an image cache.
+     * @param capacity The maximum number of bytes of pixels held by the cache. 0 disables the cache.
+     */
+    public ImageCache(long capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("The capacity must not be negative, but was " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Method to get the shared image cache.
+     * @return The shared image cache
+     */
+    public static ImageCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * This method opens an image file, see {@link Image#open(String)}. The file is decoded only if it is not cached or
+     * it was changed since it was cached.
+     * @param fileName The name of the image file. The file must have a .pgm or .ppm extension.
+     * @return A copy-on-write snapshot of the image
+     * @throws Exception If the file does not exist, the extension is incorrect, or the file cannot be decoded
+     */
+    public Image open(@NotNull @NotBlank @NotEmpty String fileName) throws Exception {
+        var path = normalize(fileName);
+        if(capacity == 0 || path == null || !Misc.doesFileExist(fileName)) {
+            return Image.open(fileName);
+        }
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if(attributes.size() >= Image.MAPPING_THRESHOLD) {
+            return Image.open(fileName);
+        }
+
+        Entry entry;
+        var isLoader = false;
+        synchronized (this) {
+            entry = entries.get(path);
+            if(entry != null && entry.matches(attributes)) {
+                hits++;
+            }
+            else {
+                if(entry != null) {
+                    remove(path);
+                }
+                entry = new Entry(attributes);
+                entries.put(path, entry);
+                isLoader = true;
+                misses++;
+            }
+        }
+
+        if(isLoader) {
+            load(path, fileName, entry);
+        }
+        try {
+            return entry.image.join().snapshot(fileName);
+        }
+        catch (CompletionException e) {
+            if(e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void load(Path path, String fileName, Entry entry) throws Exception {
+        Image image;
+        try {
+            image = new Image(fileName);
+        }
+        catch (Exception e) {
+            synchronized (this) {
+                entries.remove(path, entry);
+            }
+            entry.image.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // the entry may have been invalidated while the image was decoded
+            if(entries.get(path) == entry) {
+                var weight = getWeight(image);
+                if(weight > capacity) {
+                    entries.remove(path); // the image is returned once, but it would evict every other image
+                }
+                else {
+                    entry.weight = weight;
+                    size += weight;
+                    evict();
+                }
+            }
+        }
+        entry.image.complete(image);
+    }
+
+    /**
+     * This method evicts the least recently opened images until the cache fits its capacity. Images that are still
+     * being decoded are kept.
+     */
+    private void evict() {
+        var iterator = entries.values().iterator();
+        while(size > capacity && iterator.hasNext()) {
+            var entry = iterator.next();
+            if(entry.weight > 0) {
+                size -= entry.weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void remove(Path path) {
+        var entry = entries.remove(path);
+        if(entry != null) {
+            size -= entry.weight;
+        }
+    }
+
+    /**
+     * This method removes an image file from the cache.
+     * @param fileName The name of the image file
+     */
+    public synchronized void invalidate(@NotNull String fileName) {
+        var path = normalize(fileName);
+        if(path != null) {
+            remove(path);
+        }
+    }
+
+    /**
+     * This method removes all images from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Method to get the capacity of the cache.
+     * @return The maximum number of bytes of pixels held by the cache
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Method to get the size of the cache.
+     * @return The number of bytes of pixels currently held by the cache
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Method to get the number of files opened from the cache.
+     * @return The number of files that were opened without being decoded
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Method to get the number of files decoded by the cache.
+     * @return The number of files that were decoded
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private static long getWeight(Image image) {
+        var bytesPerSample = image.getMaxValue() > Image.MAX_RGB ? 2L : 1L;
+        return (long) image.getRows() * image.getColumns() * image.getNumChannels() * bytesPerSample;
+    }
+
+    private static Path normalize(String fileName) {
+        try {
+            return Paths.get(fileName).toAbsolutePath().normalize();
+        }
+        catch (InvalidPathException e) {
+            return null; // the file cannot be cached, Image.open reports the error
+        }
+    }
+
+    private static long readCapacity() {
+        var property = System.getProperty(CAPACITY_PROPERTY);
+        if(property == null || property.isBlank()) {
+            return DEFAULT_CAPACITY;
+        }
+        try {
+            return Math.max(0, Long.parseLong(property.trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + CAPACITY_PROPERTY + ": " + property, e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.CAP5400.Image;
+
+import java.util.Objects;
+
+/**
+ * This class describes a change made to an image. A change is summarised by its dirty rectangle, i.e. the smallest
+ * rectangle of rows and columns that contains every modified pixel, and by the set of channels that were modified.
+ * Observers registered with {@link Image#addChangeObserver} receive one change per single write, or a single merged
+ * change per batch started with {@link Image#beginUpdate()}, so they can recompute only the affected area.
+ * <br><br>
+ * <p><b>NOTE: </b> The end row and end column are exclusive. Instances are immutable.</p>
+ * @Author: Reubin George
+ * @see Image
+ */
+public final class ImageChange {
+
+    private final int startRow, startColumn, endRow, endColumn;
+    private final long channelMask;
+
+    /**
+     * Constructor for the ImageChange class.
+     * @param startRow The first modified row
+     * @param startColumn The first modified column
+     * @param endRow The row after the last modified row
+     * @param endColumn The column after the last modified column
+     * @param channelMask Bit mask of the modified channels (bit k is set if channel k was modified)
+     */
+    public ImageChange(int startRow, int startColumn, int endRow, int endColumn, long channelMask) {
+        if(startRow < 0 || startColumn < 0 || endRow < startRow || endColumn < startColumn) {
+            throw new IllegalArgumentException("Invalid dirty rectangle: [" + startRow + ", " + endRow + ") x [" +
+                    startColumn + ", " + endColumn + ")");
+        }
+        this.startRow = startRow;
+        this.startColumn = startColumn;
+        this.endRow = endRow;
+        this.endColumn = endColumn;
+        this.channelMask = channelMask;
+    }
+
+    /**
+     * This method creates a change that covers a single sample of the image.
+     * @param row The row of the modified pixel
+     * @param column The column of the modified pixel
+     * @param channel The modified channel
+     * @return The change covering the sample
+     */
+    public static ImageChange ofPixel(int row, int column, int channel) {
+        return new ImageChange(row, column, row + 1, column + 1, 1L << channel);
+    }
+
+    /**
+     * This method creates a change that covers one whole channel of an image.
+     * @param image The modified image
+     * @param channel The modified channel
+     * @return The change covering the channel
+     */
+    public static ImageChange ofChannel(Image image, int channel) {
+        return new ImageChange(0, 0, image.getRows(), image.getColumns(), 1L << channel);
+    }
+
+    /**
+     * This method creates a change that covers every pixel and channel of an image.
+     * @param image The modified image
+     * @return The change covering the whole image
+     */
+    public static ImageChange ofImage(Image image) {
+        return new ImageChange(0, 0, image.getRows(), image.getColumns(), allChannels(image.getNumChannels()));
+    }
+
+    /**
+     * This method merges two changes into the smallest change that covers both of them.
+     * @param other The change to be merged with this change
+     * @return The merged change
+     */
+    public ImageChange union(ImageChange other) {
+        return new ImageChange(
+                Math.min(startRow, other.startRow), Math.min(startColumn, other.startColumn),
+                Math.max(endRow, other.endRow), Math.max(endColumn, other.endColumn),
+                channelMask | other.channelMask);
+    }
+
+    /**
+     * This method checks if the specified channel was modified.
+     * @param channel The channel to check
+     * @return True if the channel was modified, false otherwise
+     */
+    public boolean isChannelModified(int channel) {
+        return (channelMask & (1L << channel)) != 0;
+    }
+
+    /**
+     * This method checks if the change covers every pixel and channel of the specified image.
+     * @param image The image to compare with
+     * @return True if the whole image was modified, false otherwise
+     */
+    public boolean coversImage(Image image) {
+        return startRow == 0 && startColumn == 0 && endRow >= image.getRows() && endColumn >= image.getColumns() &&
+                (channelMask & allChannels(image.getNumChannels())) == allChannels(image.getNumChannels());
+    }
+
+    /**
+     * Method to get the first modified row.
+     * @return The first modified row.
+     */
+    public int getStartRow() {
+        return startRow;
+    }
+
+    /**
+     * Method to get the first modified column.
+     * @return The first modified column.
+     */
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    /**
+     * Method to get the row after the last modified row.
+     * @return The exclusive end row.
+     */
+    public int getEndRow() {
+        return endRow;
+    }
+
+    /**
+     * Method to get the column after the last modified column.
+     * @return The exclusive end column.
+     */
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    /**
+     * Method to get the number of pixels covered by the dirty rectangle.
+     * @return The number of pixels covered by the dirty rectangle.
+     */
+    public long getPixelCount() {
+        return (long) (endRow - startRow) * (endColumn - startColumn);
+    }
+
+    /**
+     * Method to get the bit mask of the modified channels.
+     * @return The bit mask of the modified channels.
+     */
+    public long getChannelMask() {
+        return channelMask;
+    }
+
+    private static long allChannels(int channels) {
+        return channels >= Long.SIZE ? -1L : (1L << channels) - 1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj instanceof ImageChange other) {
+            return startRow == other.startRow && startColumn == other.startColumn && endRow == other.endRow &&
+                    endColumn == other.endColumn && channelMask == other.channelMask;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(startRow, startColumn, endRow, endColumn, channelMask);
+    }
+
+    @Override
+    public String toString() {
+        return "ImageChange{" +
+                "rows=[" + startRow + ", " + endRow + ")" +
+                ", columns=[" + startColumn + ", " + endColumn + ")" +
+                ", channels=" + Long.toBinaryString(channelMask) +
+                '}';
+    }
+}
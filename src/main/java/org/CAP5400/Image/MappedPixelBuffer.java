@@ -0,0 +1,139 @@
+package org.CAP5400.Image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class is a {@link PixelBuffer} whose samples live off-heap in a memory-mapped region of a file. It is used to
+ * open binary PGM/PPM (P5/P6) files that are too large to be comfortably decoded on the heap. The raster section of the
+ * file is mapped read-only, so the operating system only pages in the parts of the file that are actually touched.
+ * <br><br>
+ * <p><b>NOTE: </b> Changes made to the buffer are never written back to the file. The first write to a page of the
+ * raster copies that page (64 KiB) to the heap, and all further accesses to the page use the heap copy. 16-bit samples
+ * are stored big-endian as required by the PNM specification.</p>
+ * @see PixelBuffer
+ * @Author Reubin George
+ */
+public class MappedPixelBuffer implements PixelBuffer {
+    private static final int CHUNK_SHIFT = 30; // map the file in chunks of 1 GiB
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final int PAGE_SHIFT = 16; // copy-on-write pages of 64 KiB
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private final ByteBuffer[] chunks;
+    private final ByteBuffer[] writtenPages;
+    private final int size, bytesPerSample;
+
+    /**
+     * Constructor that maps a region of a file.
+     * @param fileChannel The channel of the file to be mapped. The channel can be closed once the buffer is created.
+     * @param offset The offset (in bytes) of the first sample in the file
+     * @param size The total number of samples
+     * @param bytesPerSample The number of bytes per sample (1 or 2)
+     * @throws IOException If the file cannot be mapped
+     */
+    public MappedPixelBuffer(FileChannel fileChannel, long offset, int size, int bytesPerSample) throws IOException {
+        if(bytesPerSample != 1 && bytesPerSample != 2) {
+            throw new IllegalArgumentException("Invalid number of bytes per sample: " + bytesPerSample);
+        }
+        this.size = size;
+        this.bytesPerSample = bytesPerSample;
+        var totalBytes = (long) size * bytesPerSample;
+        var numChunks = (int) ((totalBytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+        this.chunks = new ByteBuffer[Math.max(numChunks, 1)];
+        for(int i = 0; i < chunks.length; i++) {
+            var chunkStart = (long) i << CHUNK_SHIFT;
+            var chunkLength = Math.min(totalBytes - chunkStart, 1L << CHUNK_SHIFT);
+            chunks[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, offset + chunkStart, chunkLength);
+        }
+        this.writtenPages = new ByteBuffer[(int) ((totalBytes + PAGE_MASK) >>> PAGE_SHIFT)];
+    }
+
+    @Override
+    public int get(int index) {
+        var position = (long) index * bytesPerSample;
+        var page = writtenPages[(int) (position >>> PAGE_SHIFT)];
+        ByteBuffer buffer;
+        int bufferIndex;
+        if(page != null) {
+            buffer = page;
+            bufferIndex = (int) (position & PAGE_MASK);
+        }
+        else {
+            buffer = chunks[(int) (position >>> CHUNK_SHIFT)];
+            bufferIndex = (int) (position & CHUNK_MASK);
+        }
+        if(bytesPerSample == 1) {
+            return buffer.get(bufferIndex) & BytePixelBuffer.MAX_VALUE;
+        }
+        return buffer.getShort(bufferIndex) & ShortPixelBuffer.MAX_VALUE;
+    }
+
+    @Override
+    public void set(int index, int value) {
+        var position = (long) index * bytesPerSample;
+        var pageNumber = (int) (position >>> PAGE_SHIFT);
+        var page = writtenPages[pageNumber];
+        if(page == null) {
+            page = copyPage(pageNumber);
+        }
+        var pageIndex = (int) (position & PAGE_MASK);
+        if(bytesPerSample == 1) {
+            page.put(pageIndex, (byte) value);
+        }
+        else {
+            page.putShort(pageIndex, (short) value);
+        }
+    }
+
+    /**
+     * This method copies a page of the mapped file to the heap. All further accesses to the page use the heap copy.
+     * @param pageNumber The number of the page to be copied
+     * @return The heap copy of the page
+     */
+    private ByteBuffer copyPage(int pageNumber) {
+        var pageStart = (long) pageNumber << PAGE_SHIFT;
+        var chunk = chunks[(int) (pageStart >>> CHUNK_SHIFT)];
+        var chunkIndex = (int) (pageStart & CHUNK_MASK);
+        var page = new byte[Math.min(PAGE_MASK + 1, chunk.capacity() - chunkIndex)];
+        chunk.get(chunkIndex, page);
+        writtenPages[pageNumber] = ByteBuffer.wrap(page);
+        return writtenPages[pageNumber];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getMaxSampleValue() {
+        return bytesPerSample == 1 ? BytePixelBuffer.MAX_VALUE : ShortPixelBuffer.MAX_VALUE;
+    }
+
+    /**
+     * This method creates an independent copy of the buffer on the heap.
+     * @return An independent heap copy of the buffer
+     */
+    @Override
+    public PixelBuffer copy() {
+        var heapCopy = PixelBuffer.allocate(size, getMaxSampleValue());
+        if(heapCopy instanceof BytePixelBuffer byteCopy) {
+            var array = byteCopy.array();
+            for(int pageNumber = 0; pageNumber < writtenPages.length; pageNumber++) {
+                var pageStart = pageNumber << PAGE_SHIFT;
+                var length = Math.min(PAGE_MASK + 1, array.length - pageStart);
+                if(writtenPages[pageNumber] != null) {
+                    writtenPages[pageNumber].get(0, array, pageStart, length);
+                }
+                else {
+                    chunks[pageStart >>> CHUNK_SHIFT].get((int) (pageStart & CHUNK_MASK), array, pageStart, length);
+                }
+            }
+        }
+        else {
+            heapCopy.copyFrom(this, 0, 0, size);
+        }
+        return heapCopy;
+    }
+}
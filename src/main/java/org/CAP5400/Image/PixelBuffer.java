@@ -0,0 +1,79 @@
+package org.CAP5400.Image;
+
+/**
+ * This interface represents the contiguous storage engine behind an {@link Image}. All samples of an image are stored
+ * in a single flat, interleaved buffer (row by row, pixel by pixel, channel by channel). The {@link Image} class is
+ * responsible for translating a (row, column, channel) triple into a linear index using its row stride and channel
+ * offsets.
+ * <br><br>
+ * <p><b>NOTE: </b> Implementations do not perform any bounds or value checks. The caller is responsible for clamping
+ * the value to the depth of the buffer.</p>
+ * @see BytePixelBuffer
+ * @see ShortPixelBuffer
+ * @Author Reubin George
+ */
+public interface PixelBuffer {
+
+    /**
+     * This method returns the sample stored at the given linear index.
+     * @param index The linear index of the sample
+     * @return The unsigned value of the sample
+     */
+    int get(int index);
+
+    /**
+     * This method stores the sample at the given linear index.
+     * @param index The linear index of the sample
+     * @param value The unsigned value of the sample
+     */
+    void set(int index, int value);
+
+    /**
+     * This method returns the total number of samples stored in the buffer.
+     * @return The total number of samples stored in the buffer
+     */
+    int size();
+
+    /**
+     * This method returns the largest value that a single sample of the buffer can hold.
+     * @return The largest value that a single sample of the buffer can hold
+     */
+    int getMaxSampleValue();
+
+    /**
+     * This method creates an independent copy of the buffer.
+     * @return An independent copy of the buffer
+     */
+    PixelBuffer copy();
+
+    /**
+     * This method copies a range of samples from another buffer into this buffer.
+     * @param source The buffer to copy from
+     * @param sourceIndex The first index in the source buffer
+     * @param targetIndex The first index in this buffer
+     * @param length The number of samples to copy
+     */
+    default void copyFrom(PixelBuffer source, int sourceIndex, int targetIndex, int length) {
+        for(int i = 0; i < length; i++) {
+            set(targetIndex + i, source.get(sourceIndex + i));
+        }
+    }
+
+    /**
+     * This method allocates a zero filled buffer that is deep enough to hold samples up to the given maximum value.
+     * Samples up to 255 are stored in a {@code byte[]}, while deeper samples (up to 65535) are stored in a
+     * {@code short[]}.
+     * @param size The total number of samples
+     * @param maxValue The largest value that a sample must be able to hold
+     * @return A zero filled buffer
+     */
+    static PixelBuffer allocate(int size, int maxValue) {
+        if(maxValue <= 0 || maxValue > ShortPixelBuffer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid maximum sample value: " + maxValue);
+        }
+        if(maxValue <= BytePixelBuffer.MAX_VALUE) {
+            return new BytePixelBuffer(size);
+        }
+        return new ShortPixelBuffer(size);
+    }
+}
@@ -0,0 +1,71 @@
+package org.CAP5400.Image;
+
+/**
+ * This class is a {@link PixelBuffer} backed by a single {@code short[]}. It is used for images that are deeper than
+ * 8 bits (e.g. 16-bit PGM/PPM files with a maximum value above 255). Samples are stored unsigned.
+ * @see PixelBuffer
+ * @Author Reubin George
+ */
+public class ShortPixelBuffer implements PixelBuffer {
+    public static final int MAX_VALUE = 0xFFFF;
+    private final short[] data;
+
+    /**
+     * Constructor that allocates a zero filled buffer.
+     * @param size The total number of samples
+     */
+    public ShortPixelBuffer(int size) {
+        this(new short[size]);
+    }
+
+    /**
+     * Constructor that wraps an existing array. The array is not copied.
+     * @param data The array to be wrapped
+     */
+    public ShortPixelBuffer(short[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int get(int index) {
+        return data[index] & MAX_VALUE;
+    }
+
+    @Override
+    public void set(int index, int value) {
+        data[index] = (short) value;
+    }
+
+    @Override
+    public int size() {
+        return data.length;
+    }
+
+    @Override
+    public int getMaxSampleValue() {
+        return MAX_VALUE;
+    }
+
+    @Override
+    public PixelBuffer copy() {
+        return new ShortPixelBuffer(data.clone());
+    }
+
+    @Override
+    public void copyFrom(PixelBuffer source, int sourceIndex, int targetIndex, int length) {
+        if(source instanceof ShortPixelBuffer other) {
+            System.arraycopy(other.data, sourceIndex, data, targetIndex, length);
+        }
+        else {
+            PixelBuffer.super.copyFrom(source, sourceIndex, targetIndex, length);
+        }
+    }
+
+    /**
+     * This method returns the backing array of the buffer. Changes to the array are reflected in the buffer.
+     * @return The backing array of the buffer
+     */
+    public short[] array() {
+        return data;
+    }
+}
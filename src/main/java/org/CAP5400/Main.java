@@ -1,6 +1,7 @@
 package org.CAP5400;
 
 import nu.pattern.OpenCV;
+import org.CAP5400.Misc.Diagnostics;
 import org.CAP5400.Parser.Parser;
 
 
@@ -10,6 +11,7 @@ public class Main {
     public static void main(String... args) {
 
         OpenCV.loadLocally();
+        Diagnostics.configure(args);
         Parser.performOperations("parameters.txt");
     }
 
@@ -0,0 +1,48 @@
+package org.CAP5400.Misc;
+
+/**
+ * This class controls the generation of diagnostic artifacts, such as the magnitude spectra saved by the Fourier
+ * filters and the histograms saved by the histogram operations. The artifacts are not needed to process an image, so
+ * they are disabled by default and the work to build them is skipped entirely.
+ * <br><br>
+ * <p>The artifacts of a whole run are enabled with the {@value #DIAGNOSTICS_ARGUMENT} command line argument, with the
+ * {@value #DIAGNOSTICS_PROPERTY} system property or at runtime with {@link #setEnabled(boolean)}. The operations that
+ * produce artifacts read this setting when they are created and can override it for a single operation.</p>
+ * <p><b>NOTE: </b> The saved artifacts are appended to the tracker file, see {@link Misc#appendToTrackerFile(String)}.</p>
+ * @author Reubin George
+ */
+public class Diagnostics {
+    public static final String DIAGNOSTICS_PROPERTY = "cap5400.diagnostics";
+    public static final String DIAGNOSTICS_ARGUMENT = "--diagnostics";
+
+    private static volatile boolean enabled = Boolean.getBoolean(DIAGNOSTICS_PROPERTY);
+
+    /**
+     * Method to check whether the diagnostic artifacts are generated.
+     * @return True if the diagnostic artifacts are generated.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Method to enable or disable the diagnostic artifacts.
+     * @param enabled True to generate the diagnostic artifacts.
+     */
+    public static void setEnabled(boolean enabled) {
+        Diagnostics.enabled = enabled;
+    }
+
+    /**
+     * This method enables the diagnostic artifacts if the command line arguments contain
+     * {@value #DIAGNOSTICS_ARGUMENT}.
+     * @param args The command line arguments.
+     */
+    public static void configure(String... args) {
+        for(var arg : args) {
+            if(DIAGNOSTICS_ARGUMENT.equals(arg)) {
+                setEnabled(true);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.security.SecureRandom;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -14,12 +15,16 @@ import java.util.stream.Collectors;
 /**
  * This class contains miscellaneous methods. These methods are used to perform various tasks such as getting the
  * extension of a file, generating a random string, getting the current date and time, deleting a file, etc.
+ * <p>The additional files created by an operation are recorded in the tracker file. A thread can record them in memory
+ * instead, see {@link #setThreadTracker(List)}, so operations running concurrently on several threads do not collect
+ * each other's files.</p>
  * @version 1.0
  * @author Reubin George
  */
 public class Misc {
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
     private static final String trackerFilename = "tracker.txt";
+    private static final ThreadLocal<List<String>> threadTracker = new ThreadLocal<>();
 
     /**
      * This method is used to get the extension of a file.
@@ -93,11 +98,30 @@ public class Misc {
     }
 
     /**
-     * This method is used to append a filename to the tracker file.
+     * This method is used to record the additional files of the current thread in memory instead of the tracker file.
+     * @param tracker The list receiving the filenames, or null to use the tracker file again.
+     */
+    public static void setThreadTracker(List<String> tracker) {
+        if(tracker == null) {
+            threadTracker.remove();
+        }
+        else {
+            threadTracker.set(tracker);
+        }
+    }
+
+    /**
+     * This method is used to append a filename to the tracker file, or to the tracker of the current thread if it has
+     * one.
      * @param filename The name of the file to be appended.
      * @throws Exception Error thrown if the tracker file cannot be created.
      */
     public static void appendToTrackerFile(String filename) throws Exception {
+        var tracker = threadTracker.get();
+        if(tracker != null) {
+            tracker.add(filename);
+            return;
+        }
         createTrackerFile();
         var filePath = Paths
                 .get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()) //location of the Main class
@@ -151,11 +175,18 @@ public class Misc {
     }
 
     /**
-     * This method is used to get the contents of the tracker file and remove said file from the tracker file.
+     * This method is used to get the contents of the tracker file and remove said file from the tracker file. If the
+     * current thread has a tracker, its contents are returned and removed instead.
      * @return The contents of the tracker file.
      * @throws Exception Error thrown if the tracker file cannot be read.
      */
     public static List<String> popContentsOfTrackerFile() throws Exception{
+        var tracker = threadTracker.get();
+        if(tracker != null) {
+            var files = new ArrayList<>(tracker);
+            tracker.clear();
+            return files;
+        }
         var filePath = Paths
                 .get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()) //location of the Main class
                 .getParent() //parent directory of the main file
@@ -0,0 +1,172 @@
+package org.CAP5400.Misc;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class executes pixel-local work in parallel. The rows of an image or region of interest are split into bands of
+ * consecutive rows and the bands are processed on a shared {@link ForkJoinPool}. Every band must only write pixels that
+ * no other band writes, so the result is identical to the sequential execution.
+ * <br><br>
+ * <p>The parallelism level defaults to the number of available processors. It can be configured with the
+ * {@value #PARALLELISM_PROPERTY} system property or at runtime with {@link #setParallelism(int)}. A parallelism level of
+ * 1 runs all work sequentially on the calling thread.</p>
+ * <p><b>NOTE: </b> Small workloads are executed on the calling thread, since splitting them costs more than it saves.</p>
+ * @author Reubin George
+ */
+public class TileExecutor {
+    public static final String PARALLELISM_PROPERTY = "cap5400.parallelism";
+    public static final int MIN_SAMPLES_PER_BAND = 1 << 15; // bands smaller than this are not worth a task
+    private static final int BANDS_PER_THREAD = 4; // extra bands per thread to balance uneven rows
+
+    private static int parallelism = readParallelism();
+    private static ForkJoinPool pool;
+
+    /**
+     * This interface represents work performed on a band of rows.
+     */
+    @FunctionalInterface
+    public interface RowBandTask {
+        /**
+         * This method processes the rows from the start row (inclusive) to the end row (exclusive).
+         * @param startRow The first row of the band.
+         * @param endRow The row after the last row of the band.
+         * @throws Exception Thrown error if any problems are detected!
+         */
+        void run(int startRow, int endRow) throws Exception;
+    }
+
+    /**
+     * This method processes the rows from 0 to {@code rows} in parallel bands.
+     * @param rows The number of rows to be processed.
+     * @param samplesPerRow The number of samples processed per row. It is used to decide how many bands are created.
+     * @param task The work to be performed on every band.
+     * @throws Exception The first error thrown by any band.
+     */
+    public static void forEachRowBand(int rows, long samplesPerRow, RowBandTask task) throws Exception {
+        if(rows <= 0) {
+            return;
+        }
+        var currentParallelism = getParallelism();
+        var bands = (int) Math.min(Math.min(rows, (long) currentParallelism * BANDS_PER_THREAD),
+                Math.max(1, rows * samplesPerRow / MIN_SAMPLES_PER_BAND));
+        if(currentParallelism <= 1 || bands <= 1) {
+            task.run(0, rows);
+            return;
+        }
+
+        //Errors are collected instead of thrown, so the caller receives the original exception and not a copy made by
+        //the pool
+        var error = new AtomicReference<Exception>();
+        var currentPool = getPool();
+        while(true) {
+            try {
+                currentPool.invoke(new BandAction(task, 0, rows, bands, error));
+                break;
+            }
+            catch (RejectedExecutionException e) {
+                //The pool was replaced by setParallelism and shut down before the bands were submitted, so no band
+                //has run yet and the bands are submitted to the new pool
+                var newPool = getPool();
+                if(newPool == currentPool) {
+                    throw e;
+                }
+                currentPool = newPool;
+            }
+        }
+        if(error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    /**
+     * Method to get the parallelism level.
+     * @return The number of threads used to process the bands.
+     */
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Method to set the parallelism level. The current pool is replaced by a pool of the new size before it is shut
+     * down, so the bands that are running on it are completed, and work that is submitted to it afterwards is moved to
+     * the new pool.
+     * @param parallelism The number of threads used to process the bands. 1 disables parallel execution.
+     */
+    public static void setParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism level must be at least 1, but was " + parallelism);
+        }
+        ForkJoinPool oldPool;
+        synchronized (TileExecutor.class) {
+            if(parallelism == TileExecutor.parallelism) {
+                return;
+            }
+            oldPool = pool;
+            pool = oldPool == null ? null : new ForkJoinPool(parallelism);
+            TileExecutor.parallelism = parallelism;
+        }
+        if(oldPool != null) {
+            oldPool.shutdown();
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if(pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    private static int readParallelism() {
+        var property = System.getProperty(PARALLELISM_PROPERTY);
+        if(property == null || property.isBlank()) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            return Math.max(1, Integer.parseInt(property.trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + PARALLELISM_PROPERTY + ": " + property, e);
+        }
+    }
+
+    /**
+     * This class splits a range of rows in halves until a single band is left, which is then processed.
+     */
+    private static class BandAction extends RecursiveAction {
+        private final RowBandTask task;
+        private final int startRow, endRow, bands;
+        private final AtomicReference<Exception> error;
+
+        BandAction(RowBandTask task, int startRow, int endRow, int bands, AtomicReference<Exception> error) {
+            this.task = task;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.bands = bands;
+            this.error = error;
+        }
+
+        @Override
+        protected void compute() {
+            if(bands <= 1) {
+                if(error.get() != null) {
+                    return; // another band failed already
+                }
+                try {
+                    task.run(startRow, endRow);
+                }
+                catch (Exception e) {
+                    error.compareAndSet(null, e);
+                }
+                return;
+            }
+            var leftBands = bands / 2;
+            var middleRow = startRow + (int) ((long) (endRow - startRow) * leftBands / bands);
+            invokeAll(new BandAction(task, startRow, middleRow, leftBands, error),
+                    new BandAction(task, middleRow, endRow, bands - leftBands, error));
+        }
+    }
+}
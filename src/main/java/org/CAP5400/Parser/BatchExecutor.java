@@ -0,0 +1,289 @@
+package org.CAP5400.Parser;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * This class performs the jobs of an {@link ExecutionPlan} on a bounded pool of worker threads. Independent jobs, i.e.
+ * lines of the parameter file, run concurrently; a job that depends on an earlier job waits until that job is done.
+ * <br><br>
+ * <p>A job depends on an earlier job if</p>
+ * <ul>
+ *     <li>its source image is the target image of the earlier job (the image is read after it is written),</li>
+ *     <li>its target image is the target image of the earlier job (the last line must win), or</li>
+ *     <li>its target image is the source image of the earlier job (the image is written after it is read).</li>
+ * </ul>
+ * <p>Image names are compared as normalized absolute paths, so {@code ./a.pgm} and {@code a.pgm} are the same
+ * image.</p>
+ * <p>Every job writes its report to its own buffer, and the reports are printed in the order of the lines as soon as
+ * all earlier reports are printed, so the console output is identical to the sequential execution.</p>
+ * <p>The jobs can be read while they are performed. Only a few jobs per worker are read ahead of the oldest report
+ * that is not printed yet, so the memory used does not grow with the number of lines.</p>
+ * <p>The number of workers defaults to the number of available processors. It can be configured with the
+ * {@value #BATCH_PARALLELISM_PROPERTY} system property. A single worker performs all jobs sequentially on the calling
+ * thread.</p>
+ * @see Parser
+ * @author Reubin George
+ */
+public final class BatchExecutor {
+    public static final String BATCH_PARALLELISM_PROPERTY = "cap5400.batchParallelism";
+    private static final int JOBS_PER_WORKER = 4; // jobs read ahead per worker thread
+
+    private final int parallelism;
+
+    /**
+     * Constructor of a batch executor.
+     * @param parallelism The number of worker threads. 1 performs all jobs sequentially.
+     */
+    public BatchExecutor(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism level must be at least 1, but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Method to get the default number of worker threads.
+     * @return The value of the {@value #BATCH_PARALLELISM_PROPERTY} system property, or the number of available
+     * processors if it is not set.
+     */
+    public static int getDefaultParallelism() {
+        var property = System.getProperty(BATCH_PARALLELISM_PROPERTY);
+        if(property == null || property.isBlank()) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            return Math.max(1, Integer.parseInt(property.trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + BATCH_PARALLELISM_PROPERTY + ": " + property, e);
+        }
+    }
+
+    /**
+     * Method to get the number of worker threads.
+     * @return The number of worker threads.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * This method performs the jobs and prints their reports in order.
+     * @param jobs The jobs, in the order of the lines of the parameter file.
+     * @param runner The method performing a job and writing its report to the given stream. It must not throw.
+     * @param out The stream receiving the reports.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the reports.
+     */
+    public void execute(@NotNull List<ExecutionPlan.Job> jobs,
+                        @NotNull BiConsumer<ExecutionPlan.Job, PrintStream> runner,
+                        @NotNull PrintStream out) throws InterruptedException {
+        execute(jobs.iterator(), runner, out);
+    }
+
+    /**
+     * This method performs the jobs and prints their reports in order, while the jobs are being read. At most
+     * {@link #getMaxJobsInFlight()} jobs are submitted but not printed yet; the next job is only requested from the
+     * iterator once the report of the oldest job is printed, so a large parameter file is never read far ahead of the
+     * workers.
+     * @param jobs The jobs, in the order of the lines of the parameter file.
+     * @param runner The method performing a job and writing its report to the given stream. It must not throw.
+     * @param out The stream receiving the reports.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the reports.
+     */
+    public void execute(@NotNull Iterator<ExecutionPlan.Job> jobs,
+                        @NotNull BiConsumer<ExecutionPlan.Job, PrintStream> runner,
+                        @NotNull PrintStream out) throws InterruptedException {
+        if(parallelism <= 1) {
+            while(jobs.hasNext()) {
+                runner.accept(jobs.next(), out);
+            }
+            return;
+        }
+
+        var pool = Executors.newFixedThreadPool(parallelism, new WorkerFactory());
+        var tracker = new DependencyTracker();
+        var reports = new ArrayList<CompletableFuture<String>>(); // reports that are not printed yet, from firstJob on
+        var firstJob = 0;
+        try {
+            for(int jobIndex = 0; jobs.hasNext(); jobIndex++) {
+                var printed = false;
+                while(!reports.isEmpty() && (reports.size() >= getMaxJobsInFlight() || reports.get(0).isDone())) {
+                    print(reports.remove(0), out);
+                    firstJob++;
+                    printed = true;
+                }
+                if(printed) {
+                    tracker.forget(firstJob);
+                }
+
+                var job = jobs.next();
+                var dependencies = tracker.add(jobIndex, job);
+                var predecessors = new ArrayList<CompletableFuture<?>>(dependencies.length);
+                for(var dependency : dependencies) {
+                    if(dependency >= firstJob) { // the earlier jobs are printed, so they are done
+                        predecessors.add(reports.get(dependency - firstJob));
+                    }
+                }
+                // a failed predecessor has printed its report already, so the dependent job is still performed
+                var ready = predecessors.isEmpty() ? CompletableFuture.completedFuture(null) :
+                        CompletableFuture.allOf(predecessors.toArray(CompletableFuture[]::new))
+                                .handle((ignored, error) -> null);
+                var report = ready.thenApplyAsync(ignored -> run(job, runner), pool);
+                reports.add(report);
+            }
+        }
+        finally {
+            // the reports of the submitted jobs are printed, even if the remaining jobs cannot be read
+            try {
+                while(!reports.isEmpty()) {
+                    print(reports.remove(0), out);
+                }
+                out.flush();
+            }
+            finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Method to get the maximum number of jobs that are submitted but not printed yet.
+     * @return The maximum number of jobs in flight, a few per worker thread.
+     */
+    public int getMaxJobsInFlight() {
+        return parallelism * JOBS_PER_WORKER;
+    }
+
+    private static void print(CompletableFuture<String> report, PrintStream out) throws InterruptedException {
+        try {
+            out.print(report.get());
+        }
+        catch (ExecutionException e) {
+            // the runner reports its own errors, so this is a bug in the runner
+            e.getCause().printStackTrace(out);
+        }
+    }
+
+    private static String run(ExecutionPlan.Job job, BiConsumer<ExecutionPlan.Job, PrintStream> runner) {
+        var buffer = new ByteArrayOutputStream();
+        try (var stream = new PrintStream(buffer)) {
+            runner.accept(job, stream);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * This method finds the earlier jobs every job depends on, see {@link BatchExecutor}.
+     * @param jobs The jobs, in the order of the lines of the parameter file.
+     * @return For every job, the indices of the earlier jobs that must be done before it starts.
+     */
+    static int [][] findDependencies(@NotNull List<ExecutionPlan.Job> jobs) {
+        var tracker = new DependencyTracker();
+        var dependencies = new int[jobs.size()][];
+        for(int i = 0; i < jobs.size(); i++) {
+            dependencies[i] = tracker.add(i, jobs.get(i));
+        }
+        return dependencies;
+    }
+
+    /**
+     * This class finds the dependencies of the jobs as they are read. It remembers the last job writing every image
+     * and the jobs reading it since then; jobs that are done can be forgotten, so the memory used does not grow with
+     * the number of jobs.
+     */
+    private static final class DependencyTracker {
+        private final HashMap<String, Integer> lastWriters = new HashMap<>();
+        private final HashMap<String, List<Integer>> readersSinceWrite = new HashMap<>();
+
+        /**
+         * This method adds the next job.
+         * @param index The index of the job.
+         * @param job The job.
+         * @return The indices of the earlier jobs that must be done before the job starts.
+         */
+        int [] add(int index, ExecutionPlan.Job job) {
+            var source = normalize(job.sourceImageName());
+            var target = normalize(job.targetImageName());
+            var predecessors = new ArrayList<Integer>();
+            if(source != null) {
+                addIfPresent(predecessors, lastWriters.get(source));
+            }
+            if(target != null) {
+                addIfPresent(predecessors, lastWriters.get(target));
+                for(var reader : readersSinceWrite.getOrDefault(target, List.of())) {
+                    addIfPresent(predecessors, reader);
+                }
+            }
+
+            if(source != null) {
+                readersSinceWrite.computeIfAbsent(source, name -> new ArrayList<>()).add(index);
+            }
+            if(target != null) {
+                lastWriters.put(target, index);
+                // the readers of the old image are covered by this job, so later writers only wait for this job
+                readersSinceWrite.remove(target);
+            }
+            return predecessors.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * This method forgets the jobs that are done.
+         * @param firstPending The index of the first job that might not be done yet.
+         */
+        void forget(int firstPending) {
+            lastWriters.values().removeIf(writer -> writer < firstPending);
+            readersSinceWrite.values().removeIf(readers -> {
+                readers.removeIf(reader -> reader < firstPending);
+                return readers.isEmpty();
+            });
+        }
+    }
+
+    private static void addIfPresent(List<Integer> predecessors, Integer job) {
+        if(job != null && !predecessors.contains(job)) {
+            predecessors.add(job);
+        }
+    }
+
+    private static String normalize(String imageName) {
+        if(imageName == null) {
+            return null;
+        }
+        try {
+            return Paths.get(imageName).toAbsolutePath().normalize().toString();
+        }
+        catch (InvalidPathException e) {
+            return imageName; // the job fails when the image is opened, the name is only compared
+        }
+    }
+
+    /**
+     * This class creates the worker threads. They are daemon threads, so a stuck job does not keep the program alive
+     * after the reports are printed.
+     */
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            var thread = new Thread(runnable, "cap5400-batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.CAP5400.Parser;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class holds a parameter file parsed into the operations to perform, before any image is opened. Every line of
+ * the parameter file becomes a {@link Job} with its {@link Step}s; the operation of every step is resolved in an
+ * {@link OperationRegistry} and its arguments are converted once.
+ * <br><br>
+ * <p>The plan is immutable. Errors found while parsing a line are kept in the plan and reported by the {@link Parser}
+ * when the job or the step is performed, in the same order as if the line was parsed while being performed.</p>
+ * <p>Large parameter files do not need to be held in memory: {@link #read(BufferedReader, OperationRegistry)} parses
+ * the jobs one line at a time, as they are requested.</p>
+ * @see Parser
+ * @author Reubin George
+ */
+public final class ExecutionPlan {
+    private final List<Job> jobs;
+
+    /**
+     * A step of a job: an operation performed on a region of interest.
+     * @param startX The first row of the region of interest.
+     * @param startY The first column of the region of interest.
+     * @param totalX The number of rows of the region of interest.
+     * @param totalY The number of columns of the region of interest.
+     * @param methodName The name of the operation, or null if the region could not be parsed.
+     * @param operation The operation, or null if it could not be resolved.
+     * @param arguments The converted arguments of the operation.
+     * @param error The error found while parsing the step, or null.
+     */
+    public record Step(int startX, int startY, int totalX, int totalY, String methodName, Operation operation,
+                       List<Object> arguments, Exception error) {
+        /**
+         * Method to check if the region of interest of the step was parsed.
+         * @return True if the coordinates of the region of interest are valid numbers.
+         */
+        public boolean hasRegion() {
+            return methodName != null || error == null;
+        }
+
+        /**
+         * Method to check if the step is a point operation, see {@link Operation#isPointOperation()}.
+         * @return True if the operation of the step is a point operation.
+         */
+        public boolean isPointOperation() {
+            return operation != null && operation.isPointOperation();
+        }
+
+        /**
+         * Method to check if the step is performed on the given region of interest.
+         * @param startX The first row of the region of interest.
+         * @param startY The first column of the region of interest.
+         * @param totalX The number of rows of the region of interest.
+         * @param totalY The number of columns of the region of interest.
+         * @return True if the step has the same region of interest.
+         */
+        public boolean hasRegion(int startX, int startY, int totalX, int totalY) {
+            return this.startX == startX && this.startY == startY && this.totalX == totalX && this.totalY == totalY;
+        }
+    }
+
+    /**
+     * A job: the steps performed on a source image, which is then saved to a target image.
+     * @param sourceImageName The name of the source image.
+     * @param targetImageName The name of the target image.
+     * @param steps The steps, in order.
+     * @param error The error found while parsing the number of regions of interest, or null.
+     */
+    public record Job(String sourceImageName, String targetImageName, List<Step> steps, Exception error) { }
+
+    private static final int MAX_INITIAL_STEPS = 16; // the number of regions is only an upper bound of the steps
+
+    private ExecutionPlan(List<Job> jobs) {
+        this.jobs = Collections.unmodifiableList(jobs);
+    }
+
+    /**
+     * Method to get the jobs of the plan.
+     * @return The jobs, one per line of the parameter file.
+     */
+    public List<Job> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * This method parses the lines of a parameter file into a plan.
+     * @param lines The lines of the parameter file.
+     * @param registry The registry used to resolve the operations.
+     * @return The plan.
+     */
+    public static ExecutionPlan parse(@NotNull List<String> lines, @NotNull OperationRegistry registry) {
+        var jobs = new ArrayList<Job>(lines.size());
+        for(var line : lines){
+            jobs.add(parseLine(line, registry));
+        }
+        return new ExecutionPlan(jobs);
+    }
+
+    /**
+     * This method returns the jobs of a parameter file, parsing one line whenever the next job is requested. The
+     * reader is not closed by the iterator.
+     * @param reader The reader of the parameter file.
+     * @param registry The registry used to resolve the operations.
+     * @return The jobs, one per line of the parameter file. The iterator throws an {@link UncheckedIOException} if
+     * the parameter file cannot be read.
+     */
+    public static Iterator<Job> read(@NotNull BufferedReader reader, @NotNull OperationRegistry registry) {
+        return new Iterator<>() {
+            private String nextLine;
+
+            @Override
+            public boolean hasNext() {
+                if(nextLine == null) {
+                    try {
+                        nextLine = reader.readLine();
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return nextLine != null;
+            }
+
+            @Override
+            public Job next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var line = nextLine;
+                nextLine = null;
+                return parseLine(line, registry);
+            }
+        };
+    }
+
+    /**
+     * This method parses a line of a parameter file into a job. The tokens are consumed in order; a step that cannot
+     * be parsed consumes the tokens read until the error, and the next step starts at the following token.
+     * @param line The line of the parameter file.
+     * @param registry The registry used to resolve the operations.
+     * @return The job.
+     */
+    public static Job parseLine(@NotNull String line, @NotNull OperationRegistry registry) {
+        var tokens = new LineTokenizer(line);
+        var sourceImageName = tokens.next();
+        var targetImageName = tokens.next();
+        int numROIs;
+        try {
+            numROIs = tokens.nextInt();
+        }
+        catch (Exception e) {
+            return new Job(sourceImageName, targetImageName, List.of(), e);
+        }
+
+        var steps = new ArrayList<Step>(Math.max(0, Math.min(numROIs, MAX_INITIAL_STEPS)));
+        for(int i = 0; i < numROIs; i++){
+            steps.add(parseStep(tokens, registry));
+        }
+        return new Job(sourceImageName, targetImageName, Collections.unmodifiableList(steps), null);
+    }
+
+    private static Step parseStep(LineTokenizer tokens, OperationRegistry registry) {
+        int startX, startY, totalX, totalY;
+        try {
+            startX = tokens.nextInt();
+            startY = tokens.nextInt();
+            totalX = tokens.nextInt();
+            totalY = tokens.nextInt();
+        }
+        catch (Exception e) {
+            return new Step(0, 0, 0, 0, null, null, List.of(), e);
+        }
+
+        var methodName = tokens.next();
+        try {
+            var operation = registry.getOperation(methodName);
+            var parameters = new String[operation.getParameterCount()];
+            for(int j = 0; j < parameters.length; j++){
+                parameters[j] = tokens.next();
+            }
+            try {
+                var arguments = operation.convertArguments(parameters);
+                return new Step(startX, startY, totalX, totalY, methodName, operation,
+                        Collections.unmodifiableList(Arrays.asList(arguments)), null);
+            }
+            catch (Exception e) {
+                return new Step(startX, startY, totalX, totalY, methodName, operation, List.of(), e);
+            }
+        }
+        catch (Exception e) {
+            return new Step(startX, startY, totalX, totalY, String.valueOf(methodName), null, List.of(), e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.CAP5400.Parser;
+
+/**
+ * This class splits a line of a parameter file into tokens without copying the line. The tokens are the same as those
+ * of {@code line.split(" ")}: they are separated by single spaces, so consecutive spaces produce empty tokens, and
+ * trailing spaces are ignored. Integers are parsed directly from the line, so coordinates and counts do not create a
+ * String per token.
+ * @see ExecutionPlan
+ * @author Reubin George
+ */
+final class LineTokenizer {
+    private static final int MAX_FAST_DIGITS = 9; // integers with more digits might overflow and are parsed as Strings
+
+    private final String line;
+    private final int end; // the end of the last token, i.e. the trailing spaces are excluded
+    private int position;
+
+    /**
+     * Constructor of a tokenizer.
+     * @param line The line of the parameter file.
+     */
+    LineTokenizer(String line) {
+        this.line = line;
+        var lastCharacter = line.length();
+        while(lastCharacter > 0 && line.charAt(lastCharacter - 1) == ' ') {
+            lastCharacter--;
+        }
+        this.end = lastCharacter;
+        // a line of spaces has no tokens, while an empty line has a single empty token
+        this.position = end == 0 && !line.isEmpty() ? 1 : 0;
+    }
+
+    /**
+     * Method to check if there are more tokens.
+     * @return True if there is at least one more token.
+     */
+    boolean hasNext() {
+        return position <= end;
+    }
+
+    /**
+     * This method returns the next token.
+     * @return The next token, or null if there are no more tokens.
+     */
+    String next() {
+        if(!hasNext()) {
+            return null;
+        }
+        var tokenEnd = findTokenEnd();
+        var token = line.substring(position, tokenEnd);
+        position = tokenEnd + 1;
+        return token;
+    }
+
+    /**
+     * This method parses the next token as an integer, like {@link Integer#parseInt(String)}. The token is consumed
+     * even if it is not a valid integer.
+     * @return The integer value of the next token.
+     * @throws NullPointerException If there are no more tokens.
+     * @throws NumberFormatException If the token is not a valid integer.
+     */
+    int nextInt() {
+        if(!hasNext()) {
+            throw new NullPointerException();
+        }
+        var tokenStart = position;
+        var tokenEnd = findTokenEnd();
+        position = tokenEnd + 1;
+
+        var index = tokenStart;
+        var negative = false;
+        if(index < tokenEnd && (line.charAt(index) == '-' || line.charAt(index) == '+')) {
+            negative = line.charAt(index) == '-';
+            index++;
+        }
+        var digits = tokenEnd - index;
+        if(digits == 0 || digits > MAX_FAST_DIGITS) {
+            // let the JDK report the error or handle the values close to the limits
+            return Integer.parseInt(line.substring(tokenStart, tokenEnd));
+        }
+        var value = 0;
+        for(; index < tokenEnd; index++) {
+            var digit = line.charAt(index) - '0';
+            if(digit < 0 || digit > 9) {
+                return Integer.parseInt(line.substring(tokenStart, tokenEnd));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private int findTokenEnd() {
+        var tokenEnd = line.indexOf(' ', position);
+        return tokenEnd < 0 || tokenEnd > end ? end : tokenEnd;
+    }
+}
@@ -0,0 +1,151 @@
+package org.CAP5400.Parser;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.RegionOfInterest.ROI;
+import org.CAP5400.Toolbox.LookupTable;
+import org.CAP5400.Toolbox.PointOperations;
+import org.CAP5400.Toolbox.Toolbox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * This class describes an operation of the {@link Toolbox} that can be used in a parameter file. The descriptor is
+ * created once by the {@link OperationRegistry}; it holds the parameter types of the operation, the converters of the
+ * parameters from the tokens of the parameter file, and a {@link MethodHandle} that invokes the operation without
+ * reflection. Point operations also hold a handle to the {@link PointOperations} method that compiles them into a
+ * lookup table.
+ * @see OperationRegistry
+ * @author Reubin George
+ */
+public final class Operation {
+    private final String name;
+    private final List<Class<?>> parameterTypes;
+    private final Function<String, Object> [] converters;
+    private final MethodHandle invoker, compiler;
+
+    /**
+     * Constructor of an operation.
+     * @param name The name of the operation.
+     * @param parameterTypes The types of the parameters after the region of interest.
+     * @param converters The converters of the parameters, one per parameter.
+     * @param invoker The handle of the {@link Toolbox} method, taking all arguments in an array.
+     * @param compiler The handle of the {@link PointOperations} method, or null if this is not a point operation.
+     */
+    Operation(String name, List<Class<?>> parameterTypes, Function<String, Object> [] converters,
+              MethodHandle invoker, MethodHandle compiler) {
+        this.name = name;
+        this.parameterTypes = List.copyOf(parameterTypes);
+        this.converters = converters.clone();
+        this.invoker = invoker;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Method to get the name of the operation.
+     * @return The name of the operation, i.e. the name of the {@link Toolbox} method.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Method to get the types of the parameters.
+     * @return The types of the parameters after the region of interest.
+     */
+    public List<Class<?>> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Method to get the number of parameters.
+     * @return The number of parameters after the region of interest, i.e. the number of tokens of the operation in the
+     * parameter file.
+     */
+    public int getParameterCount() {
+        return parameterTypes.size();
+    }
+
+    /**
+     * Method to check if the operation can be compiled into a lookup table.
+     * @return True if the operation is a point operation, see {@link PointOperations}.
+     */
+    public boolean isPointOperation() {
+        return compiler != null;
+    }
+
+    /**
+     * This method converts the tokens of the parameter file to the arguments of the operation.
+     * @param tokens The tokens of the parameters, in order.
+     * @return The arguments of the operation.
+     * @throws Exception If the number of tokens is wrong or a token cannot be converted.
+     */
+    public Object [] convertArguments(@NotNull String [] tokens) throws Exception {
+        if(tokens.length != converters.length){
+            throw new IllegalArgumentException("Wrong number of arguments for method " + name);
+        }
+        var arguments = new Object[tokens.length];
+        for(int i = 0; i < tokens.length; i++){
+            arguments[i] = converters[i].apply(tokens[i]);
+        }
+        return arguments;
+    }
+
+    /**
+     * This method performs the operation on a region of interest.
+     * @param region The region of interest.
+     * @param arguments The arguments of the operation, see {@link #convertArguments(String[])}.
+     * @throws Exception The error thrown by the operation.
+     */
+    public void apply(@NotNull ROI region, @NotNull Object [] arguments) throws Exception {
+        invoke(invoker, region, arguments);
+    }
+
+    /**
+     * This method compiles the operation into a lookup table.
+     * @param region The region of interest.
+     * @param arguments The arguments of the operation, see {@link #convertArguments(String[])}.
+     * @return The lookup table of the operation.
+     * @throws Exception The error thrown by the operation.
+     */
+    public LookupTable compile(@NotNull ROI region, @NotNull Object [] arguments) throws Exception {
+        if(compiler == null){
+            throw new UnsupportedOperationException("The method `" + name + "` is not a point operation");
+        }
+        return (LookupTable) invoke(compiler, region, arguments);
+    }
+
+    /**
+     * This method converts a method handle to a handle that takes the region of interest and the arguments in a single
+     * array and returns an Object, so it can be invoked exactly without boxing the signature of every operation.
+     * @param handle The handle of a static method.
+     * @return The adapted handle.
+     */
+    static MethodHandle adapt(MethodHandle handle) {
+        return handle.asSpreader(Object[].class, handle.type().parameterCount())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    private static Object invoke(MethodHandle handle, ROI region, Object [] arguments) throws Exception {
+        var allArguments = new Object[arguments.length + 1];
+        allArguments[0] = region;
+        System.arraycopy(arguments, 0, allArguments, 1, arguments.length);
+        try {
+            return (Object) handle.invokeExact(allArguments);
+        }
+        catch (Exception e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            //Errors are reported like exceptions, as they were by reflective invocation
+            throw new Exception(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + parameterTypes.stream().map(Class::getSimpleName).toList();
+    }
+}
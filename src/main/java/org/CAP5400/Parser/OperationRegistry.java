@@ -0,0 +1,141 @@
+package org.CAP5400.Parser;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.RegionOfInterest.ROI;
+import org.CAP5400.Toolbox.LookupTable;
+import org.CAP5400.Toolbox.PointOperations;
+import org.CAP5400.Toolbox.Toolbox;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * This class maps the names of the operations used in parameter files to their {@link Operation} descriptors. The
+ * methods of the {@link Toolbox} and {@link PointOperations} classes are scanned once, when the registry is created,
+ * and every operation is looked up by name afterwards, without reflection.
+ * <br><br>
+ * <p>Every public static method of the {@link Toolbox} whose first parameter is a {@link ROI} is an operation. Its
+ * other parameters must be of type String, int, float or double. A method of the {@link PointOperations} with the same
+ * name that returns a {@link LookupTable} makes the operation a point operation.</p>
+ * <p><b>NOTE: </b>Operations are identified by name, so the {@link Toolbox} must not contain overloaded operations.</p>
+ * @see Operation
+ * @see Parser
+ * @author Reubin George
+ */
+public final class OperationRegistry {
+    private static final OperationRegistry DEFAULT = new OperationRegistry(Toolbox.class, PointOperations.class);
+
+    private final Class<?> operationsClass;
+    private final Map<String, Operation> operations;
+
+    /**
+     * Constructor of a registry.
+     * @param operationsClass The class containing the operations, e.g. {@link Toolbox}.
+     * @param pointOperationsClass The class compiling the point operations into lookup tables, e.g.
+     *                             {@link PointOperations}.
+     */
+    OperationRegistry(@NotNull Class<?> operationsClass, @NotNull Class<?> pointOperationsClass) {
+        this.operationsClass = operationsClass;
+        var compilers = new HashMap<String, Method>();
+        for(var method : pointOperationsClass.getDeclaredMethods()){
+            if(isOperation(method) && method.getReturnType() == LookupTable.class){
+                compilers.put(method.getName(), method);
+            }
+        }
+
+        var lookup = MethodHandles.publicLookup();
+        var operations = new HashMap<String, Operation>();
+        for(var method : operationsClass.getDeclaredMethods()){
+            if(!isOperation(method)){
+                continue;
+            }
+            var parameterTypes = Arrays.asList(method.getParameterTypes()).subList(1, method.getParameterCount());
+            @SuppressWarnings("unchecked")
+            Function<String, Object> [] converters = parameterTypes.stream()
+                    .map(OperationRegistry::getConverter)
+                    .toArray(Function[]::new);
+            try {
+                var compiler = compilers.get(method.getName());
+                var operation = new Operation(method.getName(), parameterTypes, converters,
+                        Operation.adapt(lookup.unreflect(method)),
+                        compiler == null ? null : Operation.adapt(lookup.unreflect(compiler)));
+                if(operations.put(method.getName(), operation) != null){
+                    throw new IllegalStateException("The method `" + method.getName() + "` is overloaded in `" +
+                            operationsClass.getName() + "`");
+                }
+            }
+            catch (IllegalAccessException e) {
+                throw new IllegalStateException("The method `" + method.getName() + "` cannot be accessed", e);
+            }
+        }
+        this.operations = Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * Method to get the registry of the {@link Toolbox} operations.
+     * @return The shared registry.
+     */
+    public static OperationRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * This method returns the operation with the given name.
+     * @param name The name of the operation.
+     * @return The operation.
+     * @throws NoSuchMethodException If there is no operation with the given name.
+     */
+    public Operation getOperation(String name) throws NoSuchMethodException {
+        var operation = name == null ? null : operations.get(name);
+        if(operation == null){
+            throw new NoSuchMethodException("The method `" + name + "` was not found in `" +
+                    operationsClass.getName() + "`");
+        }
+        return operation;
+    }
+
+    /**
+     * Method to get the names of all operations.
+     * @return The names of the operations.
+     */
+    public Set<String> getOperationNames() {
+        return operations.keySet();
+    }
+
+    private static boolean isOperation(Method method) {
+        var modifiers = method.getModifiers();
+        return Modifier.isPublic(modifiers) && Modifier.isStatic(modifiers) && method.getParameterCount() > 0 &&
+                method.getParameterTypes()[0] == ROI.class;
+    }
+
+    /**
+     * This method returns the converter of a token of the parameter file to a parameter type. Unsupported types are
+     * only reported when a token is converted, so the other operations remain usable.
+     * @param targetType The type of the parameter.
+     * @return The converter.
+     */
+    private static Function<String, Object> getConverter(Class<?> targetType) {
+        if(targetType == String.class){
+            return token -> token;
+        }
+        else if(targetType == int.class || targetType == Integer.class){
+            return Integer::parseInt;
+        }
+        else if(targetType == float.class || targetType == Float.class){
+            return Float::parseFloat;
+        }
+        else if(targetType == double.class || targetType == Double.class){
+            return Double::parseDouble;
+        }
+        return token -> {
+            throw new IllegalArgumentException("Type `" + targetType.getName() + "` cannot be used for conversion");
+        };
+    }
+}
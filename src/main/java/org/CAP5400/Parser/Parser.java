@@ -1,20 +1,23 @@
 package org.CAP5400.Parser;
 
-import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageCache;
 import org.CAP5400.Misc.Misc;
 import org.CAP5400.RegionOfInterest.ROI;
+import org.CAP5400.Toolbox.LookupTable;
+import org.CAP5400.Toolbox.PointOperations;
 import org.CAP5400.Toolbox.Toolbox;
 
-import java.lang.reflect.Method;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * This class is used to parse the parameter file and perform the operations on the images. It uses reflection to
- * invoke the methods in the Toolbox class. The parameter file is a text file that contains the following information:
+ * This class is used to parse the parameter file and perform the operations on the images. The file is read line by
+ * line into the jobs of an {@link ExecutionPlan} while the earlier lines are performed, and the operations are invoked
+ * through the descriptors of the {@link OperationRegistry}, which scans the methods of the Toolbox class once. The
+ * parameter file is a text file that contains the following information:
  * <ul>
  *     <li>Source Image Name</li>
  *     <li>Target Image Name</li>
@@ -29,186 +32,175 @@ import java.util.Objects;
  * </ul>
  * <p><b>NOTE: </b>Ensure that there are <b><i>NO</i></b> overloaded methods in Toolbox. There will be unintended
  * consequences.</p>
+ * <p>Consecutive point operations (see {@link PointOperations}) on the same region of interest are compiled into
+ * lookup tables, fused and applied to the image in a single pass.</p>
+ * <p>Independent lines are performed concurrently by a {@link BatchExecutor}; lines that read or write an image written
+ * or read by an earlier line wait for it. The report of every line is printed in the order of the lines.</p>
+ * <p>Source images are opened through the {@link ImageCache}, so an image used by many lines is decoded once.</p>
  * @see Toolbox
+ * @see OperationRegistry
  * @see ROI
+ * @see BatchExecutor
  * @Author Reubin George
  */
 public class Parser {
     /**
-     * This method is used to get the number of parameters for a method.
-     * @param clazz The class that contains the method.
-     * @param methodName The name of the method.
-     * @return The number of parameters for the method.
-     * @throws Exception If the method is not found.
+     * This method is used to perform the operations on the images.
+     * @param parameterFile The name of the parameter file.
      */
-    private static Integer getNumberOfParameterForMethod(Class<?> clazz, String methodName) throws Exception{
-        var methods = clazz.getDeclaredMethods();
-        for(var method : methods){
-            if(method.getName().equals(methodName)){
-                return method.getParameterCount();
+    public static void performOperations(String parameterFile) {
+        try{
+            var path = Paths.get(parameterFile);
+            try (var reader = Files.newBufferedReader(path)) {
+                var jobs = ExecutionPlan.read(reader, OperationRegistry.getDefault());
+                new BatchExecutor(BatchExecutor.getDefaultParallelism()).execute(jobs, Parser::performJob, System.out);
             }
+            Misc.deleteFilesWithExtension("json"); // delete the json files used for histograms
+        }
+        catch (Exception e3){
+            e3.printStackTrace();
         }
-        throw new NoSuchMethodException("The method `" + methodName + "` was not found in `" + clazz.getName() + "`");
     }
 
     /**
-     * This method is used to get the parameter types for a method.
-     * @param clazz The class that contains the method.
-     * @param methodName The name of the method.
-     * @return The parameter types for the method.
-     * @throws Exception If the method is not found.
+     * This method is used to perform the steps of a job on its source image and to save the target image. The
+     * additional files of the steps are collected in a tracker of the current thread, so concurrent jobs report only
+     * their own files.
+     * @param job The job, i.e. a parsed line of the parameter file.
+     * @param out The stream receiving the report of the job.
      */
-    private static Class<?> [] getParameterTypes(Class<?> clazz, String methodName) throws Exception {
-        var numParameters = getNumberOfParameterForMethod(clazz, methodName);
-        var types = new Class<?>[numParameters - 1];
-        var methods = clazz.getDeclaredMethods();
-        for(var method : methods){
-            if(method.getName().equals(methodName)){
-                for(int i = 1; i < numParameters; i++){
-                    types[i - 1] = method.getParameterTypes()[i];
+    static void performJob(ExecutionPlan.Job job, PrintStream out) {
+        Misc.setThreadTracker(new ArrayList<>());
+        try {
+            out.println("=*=".repeat(35));
+            var sourceImage = ImageCache.getDefault().open(job.sourceImageName());
+            out.printf("\033[1m%s\033[0m%-25s\033[1m%s\033[0m%-25s\n\n",
+                    "Source Image:", job.sourceImageName(), "Target Image:", job.targetImageName());
+            if(job.error() != null){
+                throw job.error();
+            }
+            ROI pendingRegion = null; // region of the point operations that are fused but not applied yet
+            LookupTable pendingTable = null;
+            var pendingSteps = new ArrayList<PendingStep>(); // reported once the fused table is applied
+            for(var step : job.steps()){
+                var isPointOperation = step.hasRegion() && step.isPointOperation();
+                var isFused = isPointOperation && pendingRegion != null &&
+                        step.hasRegion(pendingRegion.getStartX(), pendingRegion.getStartY(),
+                                pendingRegion.getTotalX(), pendingRegion.getTotalY());
+                if(!isFused && pendingRegion != null){
+                    applyPendingSteps(pendingRegion, pendingTable, pendingSteps, out);
+                    pendingRegion = null;
+                    pendingTable = null;
+                }
+                try{
+                    if(!step.hasRegion()){
+                        throw step.error();
+                    }
+                    var region = isFused ? pendingRegion :
+                            new ROI(sourceImage, step.startX(), step.startY(), step.totalX(), step.totalY());
+                    var arguments = step.arguments().toArray();
+                    if(isPointOperation){
+                        //Point operations on the same region are fused and applied in a single pass later, so they
+                        //are reported once the table is applied
+                        pendingRegion = region;
+                        try {
+                            if(step.error() != null){
+                                throw step.error();
+                            }
+                            var table = step.operation().compile(region, arguments);
+                            pendingTable = pendingTable == null ? table : pendingTable.andThen(table);
+                            pendingSteps.add(new PendingStep(step.methodName(), Misc.popContentsOfTrackerFile(),
+                                    null));
+                        }
+                        catch (Exception e){
+                            pendingSteps.add(new PendingStep(step.methodName(), List.of(), e));
+                        }
+                        continue;
+                    }
+
+                    out.printf("\033[1m%s\033[0m%-35s","Perform Operation: ", step.methodName());
+                    if(step.error() != null){
+                        throw step.error();
+                    }
+                    step.operation().apply(region, arguments);
+                    region.applyModifications();
+                    out.println("["+"\033[1;32mSUCCESS\033[0m" + "]");
+                    printAdditionalFiles(Misc.popContentsOfTrackerFile(), out);
+                }
+                catch (Exception e1){
+                    printFailure(e1, out);
                 }
-                return types;
             }
+            if(pendingRegion != null){
+                applyPendingSteps(pendingRegion, pendingTable, pendingSteps, out);
+            }
+            sourceImage.save(job.targetImageName());
         }
-
-        throw new NoSuchMethodException("The method `" + methodName + "` was not found in `" + clazz.getName() + "`");
-    }
-
-    /**
-     * This method is used to invoke a method using reflection. It is used to invoke the methods in the Toolbox class.
-     * @param instance The instance of the class that contains the method.
-     * @param region The region of interest.
-     * @param methodName The name of the method.
-     * @param parameters The parameters for the method.
-     * @throws Exception If the method is not found.
-     */
-    private static void invokeMethod(
-            Object instance,
-            ROI region,
-            String methodName,
-            String [] parameters) throws Exception{
-        var method = findMethod(instance.getClass(), methodName);
-        var numParams = getNumberOfParameterForMethod(instance.getClass(), methodName);
-        var paramsForMethod = new Object[numParams];
-        paramsForMethod[0] = region;
-        var paramsTypesForMethod = getParameterTypes(instance.getClass(), methodName);
-
-        if (parameters.length != numParams - 1) {
-            throw new IllegalArgumentException("Wrong number of arguments for method " + methodName);
+        catch (Exception e2){
+            out.printf("\033[1m%15s\033[0m%s\n","Error: ", getErrorMessage(e2));
         }
-
-        for (int i = 0; i < paramsTypesForMethod.length; i++){
-            paramsForMethod[i + 1] = convertToType(paramsTypesForMethod[i], parameters[i]);
+        finally {
+            Misc.setThreadTracker(null);
         }
-        method.invoke(instance, paramsForMethod);
-
     }
 
     /**
-     * This method is used to convert a string to a given type.
-     * @param targetType The type to convert the string to.
-     * @param value The string to convert.
-     * @return The converted object.
-     * @throws Exception If the type cannot be used for conversion.
+     * This record holds the report of a point operation that is fused with the following point operations.
+     * @param methodName The name of the operation.
+     * @param additionalFiles The additional files written by the operation.
+     * @param error The error thrown while the operation was compiled, or null if it was compiled.
      */
-    private static Object convertToType(Class<?> targetType, String value) throws Exception {
-        if (targetType == String.class) {
-            return value;
-        } else if (targetType == int.class || targetType == Integer.class) {
-            return Integer.parseInt(value);
-        } else if (targetType == float.class || targetType == Float.class) {
-            return Float.parseFloat(value);
-        } else if (targetType == double.class || targetType == Double.class) {
-            return Double.parseDouble(value);
-        }
-        throw new Exception("Type `" + targetType.getName() + "` cannot be used for conversion");
-    }
+    private record PendingStep(String methodName, List<String> additionalFiles, Exception error) {}
 
     /**
-     * This method is used to find a method in a class. It is used to find the methods in the Toolbox class.
-     * @param clazz The class that contains the method.
-     * @param methodName The name of the method.
-     * @return The method.
-     * @throws NoSuchMethodException If the method is not found.
+     * This method applies the fused lookup table of point operations to the source image and reports the operations.
+     * An error thrown while the table is applied is reported against every fused operation, and not against the
+     * following operation, so the source image is still saved.
+     * @param region The region of interest of the point operations.
+     * @param table The fused lookup table, or null if no operation was compiled.
+     * @param steps The reports of the operations. The list is cleared.
+     * @param out The stream receiving the report of the job.
      */
-    private static Method findMethod(Class<?> clazz, String methodName) throws NoSuchMethodException {
-        var methods = clazz.getDeclaredMethods();
-        for (var method : methods) {
-            if (method.getName().equals(methodName)) {
-                return method;
+    private static void applyPendingSteps(ROI region, LookupTable table, List<PendingStep> steps, PrintStream out) {
+        Exception applyError = null;
+        if(table != null){
+            try {
+                table.applyToSource(region);
+            }
+            catch (Exception e){
+                applyError = e;
+            }
+        }
+        for(var step : steps){
+            out.printf("\033[1m%s\033[0m%-35s","Perform Operation: ", step.methodName());
+            var error = step.error() != null ? step.error() : applyError;
+            if(error != null){
+                printFailure(error, out);
+                continue;
             }
+            out.println("["+"\033[1;32mSUCCESS\033[0m" + "]");
+            printAdditionalFiles(step.additionalFiles(), out);
         }
-        throw new NoSuchMethodException("The method `" + methodName + "` was not found in `" + clazz.getName() + "`");
+        steps.clear();
     }
 
-    /**
-     * This method is used to perform the operations on the images.
-     * @param parameterFile The name of the parameter file.
-     */
-    public static void performOperations(String parameterFile) {
-        try{
-            var path = Paths.get(parameterFile);
-            var lines = Files.readAllLines(path);
-            for(var line : lines){
-                try {
-                    var tokens = new LinkedList<>(Arrays.asList(line.split(" ")));
-                    System.out.println("=*=".repeat(35));
-                    var sourceImageName = tokens.poll();
-                    var sourceImage = new Image(sourceImageName);
-                    var targetImageName = tokens.poll();
-                    System.out.printf("\033[1m%s\033[0m%-25s\033[1m%s\033[0m%-25s\n\n",
-                            "Source Image:", sourceImageName, "Target Image:", targetImageName);
-                    var numROIs = Integer.parseInt(Objects.requireNonNull(tokens.poll()));
-                    for(int i = 0; i < numROIs; i++){
-                        try{
-                            var startX = Integer.parseInt(Objects.requireNonNull(tokens.poll()));
-                            var startY = Integer.parseInt(Objects.requireNonNull(tokens.poll()));
-                            var totalX = Integer.parseInt(Objects.requireNonNull(tokens.poll()));
-                            var totalY = Integer.parseInt(Objects.requireNonNull(tokens.poll()));
-                            var region = new ROI(sourceImage, startX, startY, totalX, totalY);
-                            var methodName = tokens.poll();
-                            System.out.printf("\033[1m%s\033[0m%-35s","Perform Operation: ", methodName);
-                            var numParams = getNumberOfParameterForMethod(Toolbox.class, methodName);
-                            var methodParameters = new String[numParams - 1];
-                            for(int j = 0; j < numParams - 1; j++){
-                                methodParameters[j] = tokens.poll();
-                            }
-
-                            invokeMethod(new Toolbox(), region, methodName, methodParameters);
-                            region.applyModifications();
-                            System.out.println("["+"\033[1;32mSUCCESS\033[0m" + "]");
-
-                            var additionalFiles = Misc.popContentsOfTrackerFile();
-                            if(!additionalFiles.isEmpty()){
-                                System.out.printf("\033[1m%25s\033[0m\n","Additional Files: ");
-                                for(var additionalFile : additionalFiles){
-                                    System.out.print(" ".repeat(10));
-                                    System.out.println(additionalFile);
-                                }
-                            }
-                            Misc.deleteFilesWithExtension("json"); // delete the json file used for histogram
-
-                        }
-                        catch (Exception e1){
-                            System.out.println("["+"\033[1;31mFAILED\033[0m"+ "]");
-                            System.out.printf("\033[1m%15s\033[0m%s\n","Reason: ", getErrorMessage(e1));
-                        }
-                    }
-                    sourceImage.save(targetImageName);
-                }
-                catch (Exception e2){
-                    System.out.printf("\033[1m%15s\033[0m%s\n","Error: ", getErrorMessage(e2));
-                }
-
+    private static void printAdditionalFiles(List<String> additionalFiles, PrintStream out) {
+        if(!additionalFiles.isEmpty()){
+            out.printf("\033[1m%25s\033[0m\n","Additional Files: ");
+            for(var additionalFile : additionalFiles){
+                out.print(" ".repeat(10));
+                out.println(additionalFile);
             }
         }
-        catch (Exception e3){
-            e3.printStackTrace();
-        }
+    }
+
+    private static void printFailure(Exception exception, PrintStream out) {
+        out.println("["+"\033[1;31mFAILED\033[0m"+ "]");
+        out.printf("\033[1m%15s\033[0m%s\n","Reason: ", getErrorMessage(exception));
     }
 
     private static String getErrorMessage(Exception exception) {
-        if (exception.getMessage() != null) {
+        if (exception.getMessage() != null || exception.getCause() == null) {
             return exception.getMessage();
         } else {
             return exception.getCause().getMessage();
@@ -3,17 +3,31 @@ package org.CAP5400.RegionOfInterest;
 import jakarta.validation.constraints.NotNull;
 import org.CAP5400.Exceptions.RoiOutOfBoundsException;
 import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageChange;
 
 import java.util.Objects;
 
 /**
  * This class represents a region of interest in an image. It is used to perform operations on a subset of an image.
+ * <br><br>
+ * <p>The region image of an 8-bit source image is a copy-on-write view of the source image (see
+ * {@link Image#view(int, int, int, int)}): operations that only read the region do not copy it, and the first write
+ * copies it to a private buffer. The region image keeps the samples the region was created with, since the view is
+ * copied before the source image is changed, e.g. by another region of interest. The changes made to the region image
+ * are tracked, and
+ * {@link #applyModifications()} only copies the rows, columns and channels that were changed back to the source
+ * image.</p>
+ * <p>The operations of the toolbox work on 8-bit samples, so the region image of a deeper source image is an 8-bit
+ * copy whose samples are rescaled to 0-255 (see {@link Image#rescaleWindow}). The changed samples are rescaled back
+ * to the depth of the source image by {@link #applyModifications()}, while the samples that were not changed keep
+ * their full precision. Shallower source images are copied to an 8-bit region image without rescaling.</p>
  * @see Image
  * @Author Reubin George
  */
 public class ROI {
     private Image sourceImage, regionImage;
     private int startX, startY, totalX, totalY;
+    private ImageChange pendingChange; // changes made to the region image that are not applied to the source yet
 
     /**
      * Method to get the start x coordinate of the region of interest.
@@ -99,7 +113,7 @@ public class ROI {
     public ROI(@NotNull Image image, int startX, int startY, int totalX, int totalY) throws Exception {
 
         var isStartInBound = image.isInBounds(startX, startY);
-        var isEndInBound = image.isInBounds(startX + totalX, startY + totalY);
+        var isEndInBound = image.isInBounds(startX + totalX - 1, startY + totalY - 1); // the last pixel
         if(!isStartInBound || !isEndInBound) {
             throw new RoiOutOfBoundsException(image, this);
         }
@@ -109,16 +123,20 @@ public class ROI {
         this.startY = startY;
         this.totalX = totalX;
         this.totalY = totalY;
-        this.regionImage = new Image(totalX, totalY, getNumChannels());
-
-        for(int i = 0; i < totalX; i++) {
-            for(int j = 0; j < totalY; j++) {
-                for(int k = 0; k < this.sourceImage.getNumChannels(); k++) {
-                    var value = this.sourceImage.getPixel(i + startX, j + startY, k);
-                    this.regionImage.setPixel(i, j, k, value);
-                }
-            }
+        var allChannels = (1L << getNumChannels()) - 1;
+        if(image.getMaxValue() == Image.MAX_RGB) {
+            this.regionImage = image.view(startX, startY, totalX, totalY);
         }
+        else if(isDeep()) {
+            this.regionImage = new Image(totalX, totalY, getNumChannels());
+            this.regionImage.rescaleWindow(image, startX, startY, 0, 0, totalX, totalY, allChannels);
+        }
+        else {
+            this.regionImage = new Image(totalX, totalY, getNumChannels());
+            this.regionImage.copyWindow(image, startX, startY, 0, 0, totalX, totalY, allChannels);
+        }
+        this.regionImage.addChangeObserver((region, change) ->
+                pendingChange = pendingChange == null ? change : pendingChange.union(change));
     }
 
     /**
@@ -184,18 +202,39 @@ public class ROI {
     }
 
     /**
-     * Method to apply the modifications to the region of interest.
+     * Method to apply the modifications to the region of interest. Only the rows, columns and channels of the region
+     * image that were changed since the last call are copied to the source image. The observers of the source image
+     * are notified once, with the changed area as the dirty rectangle, or not at all if nothing was changed.
      * @throws Exception Error thrown if the modifications cannot be applied.
      */
     public void applyModifications() throws Exception {
-        for(int i = getStartX(); i < getEndX(); i++){
-            for(int j = getStartY(); j < getEndY(); j++){
-                for(int k = 0; k < sourceImage.getNumChannels(); k++){
-                    var newValue = regionImage.getPixel(i - startX, j - startY, k);
-                    sourceImage.setPixel(i, j, k, newValue);
-                }
-            }
+        if(pendingChange == null) {
+            return;
+        }
+        var change = pendingChange;
+        pendingChange = null;
+        var endRow = Math.min(change.getEndRow(), totalX);
+        var endColumn = Math.min(change.getEndColumn(), totalY);
+        if(endRow <= change.getStartRow() || endColumn <= change.getStartColumn()) {
+            return;
+        }
+        if(isDeep()) {
+            sourceImage.rescaleWindow(regionImage, change.getStartRow(), change.getStartColumn(),
+                    startX + change.getStartRow(), startY + change.getStartColumn(),
+                    endRow - change.getStartRow(), endColumn - change.getStartColumn(), change.getChannelMask());
+            return;
         }
+        sourceImage.copyWindow(regionImage, change.getStartRow(), change.getStartColumn(),
+                startX + change.getStartRow(), startY + change.getStartColumn(),
+                endRow - change.getStartRow(), endColumn - change.getStartColumn(), change.getChannelMask());
+    }
+
+    /**
+     * Method to check if the source image is deeper than the region image.
+     * @return True if the samples of the source image are rescaled to the 8-bit region image.
+     */
+    public boolean isDeep() {
+        return sourceImage.getMaxValue() > Image.MAX_RGB;
     }
 
 }
@@ -2,9 +2,10 @@ package org.CAP5400.Toolbox;
 
 import jakarta.validation.constraints.NotNull;
 import org.CAP5400.Exceptions.IllegalColorspaceException;
-import org.CAP5400.Image.Image;
+import org.CAP5400.Misc.Diagnostics;
 import org.CAP5400.Misc.Misc;
 import org.CAP5400.Misc.StringOptions;
+import org.CAP5400.Misc.TileExecutor;
 import org.CAP5400.RegionOfInterest.ROI;
 import org.checkerframework.common.value.qual.IntRange;
 import org.opencv.core.*;
@@ -14,26 +15,41 @@ import org.opencv.imgproc.Imgproc;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.UnaryOperator;
 
 import static org.CAP5400.Image.Image.MAX_RGB;
-import static org.CAP5400.Misc.Misc.delete;
 
 /**
  * This class is used to perform Fourier Transform operations on an image. The operations that can be performed are:
- * <ul> <li>Low Pass Filter</li> <li>High Pass Filter</li> <li>Band Stop Filter</li> <li>Unsharp Masking</li> </ul>
+ * <ul> <li>Low Pass Filter</li> <li>High Pass Filter</li> <li>Band Stop Filter</li> <li>Unsharp Masking</li>
+ * <li>Gaussian and Butterworth Filters (low pass, high pass, band pass and band stop)</li> </ul>
  * The class is used to perform the operations on a given region of interest. The user specifies the region of interest.
- * The user can also specify the color space and the channel on which the operations will be performed.
+ * The user can also specify the color space and the channels on which the operations will be performed.
+ * <br><br>
+ * <p>The region is converted to the color space once. Every operation transforms all selected channels, in parallel
+ * when possible (see {@link TileExecutor}), applies the mask to every channel and writes the region back once.</p>
+ * <p>The region can have any size. Every channel is padded with zeros to the optimal DFT size (a product of 2, 3 and 5,
+ * see {@link Core#getOptimalDFTSize(int)}), the masks are centred on the padded spectrum, and the padding is cropped
+ * after the inverse transform.</p>
+ * <p>The magnitude spectra of every channel before and after filtering are only computed and saved when the
+ * diagnostic artifacts are enabled (see {@link Diagnostics} and {@link #setDiagnostics(boolean)}).</p>
+ * <p>Gaussian low-pass and high-pass filters with a small equivalent kernel are performed in the spatial domain,
+ * which is cheaper than the transforms (see {@link SpatialFilter}).</p>
+ * <p>When tiling is enabled, regions larger than the tiling threshold are filtered tile by tile with the overlap-save
+ * method instead, so the memory used by the transforms is bounded by the tile size (see {@link TiledConvolution}). No
+ * magnitude spectra are saved for these regions.</p>
  * @see ROI
  * @author Reubin George
  * @version 1.0
  */
 public class Fourier implements AutoCloseable{
 
-    private final Mat operationChannel;
+    private final List<Mat> planes;
     private final String colorSpace;
     private final int [] MAX_HSV = {179, MAX_RGB, MAX_RGB};
-    private final int channel;
+    private final int [] channels;
     private final ROI region;
+    private boolean diagnostics = Diagnostics.isEnabled();
 
     /**
      * Default constructor
@@ -46,22 +62,71 @@ public class Fourier implements AutoCloseable{
             @NotNull ROI region,
             @NotNull String colorSpace,
             @IntRange(from = 0, to = 2) int channel) throws Exception {
+        this(region, colorSpace, new int[]{channel});
+    }
+
+    /**
+     * Constructor that applies the filters/masks to all channels of the region
+     * @param region Region of Interest
+     * @param colorSpace the color space on which the filters/masks will be applied
+     * @throws Exception Exception is an error is produced
+     */
+    public Fourier(@NotNull ROI region, @NotNull String colorSpace) throws Exception {
+        this(region, colorSpace, allChannels(region));
+    }
+
+    /**
+     * Constructor that applies the filters/masks to a set of channels
+     * @param region Region of Interest
+     * @param colorSpace the color space on which the filters/masks will be applied
+     * @param channels the image channels on which the filter/masks will be applied
+     * @throws Exception Exception is an error is produced
+     */
+    public Fourier(@NotNull ROI region, @NotNull String colorSpace, @NotNull int [] channels) throws Exception {
         this.colorSpace = colorSpace.toLowerCase(Locale.US);
         if(!(this.colorSpace.equals("hsv") || this.colorSpace.equals("rgb"))){
             throw new IllegalColorspaceException(colorSpace);
         }
+        if(channels.length == 0){
+            throw new IllegalArgumentException("At least one channel must be selected.");
+        }
 
-        region.enforceBaseTwoDimensions(true);
-        region.enforceSquareDimensions(true);
-        this.operationChannel = region.getRegionImage().getOpenCvMat(colorSpace, channel);
-        this.channel = channel;
+        this.channels = channels.clone();
         this.region = region;
+
+        //The region is converted to the color space once, and all planes are kept to write the region back
+        var image = region.getRegionImage().getOpenCvMat();
+        if(this.colorSpace.equals("hsv")){
+            Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2HSV);
+        }
+        this.planes = new ArrayList<>(region.getNumChannels());
+        if(image.channels() == 1){
+            this.planes.add(image);
+        }
+        else {
+            Core.split(image, this.planes);
+            image.release();
+        }
+        for(var channel : this.channels){
+            if(channel < 0 || (channel >= this.planes.size() && this.planes.size() > 1)){
+                throw new IllegalArgumentException("Invalid channel: " + channel);
+            }
+        }
+    }
+
+    private static int [] allChannels(ROI region) {
+        var channels = new int[region.getNumChannels()];
+        for(int k = 0; k < channels.length; k++){
+            channels[k] = k;
+        }
+        return channels;
     }
 
     /**
-     * The method is used to perform the Discrete Fourier Transform on an image.
+     * The method is used to perform the Discrete Fourier Transform on an image. The image is real, so only half of the
+     * spectrum is computed and stored in the packed CCS layout, see {@link FrequencyMask}.
      * @param image image on which the DFT will be performed. This is an OpenCV Mat object.
-     * @return the DFT of the image
+     * @return the packed DFT of the image, a single channel float Mat
      */
     private Mat performDFT(Mat image){
         Mat paddedImage = new Mat();
@@ -69,165 +134,98 @@ public class Fourier implements AutoCloseable{
         var n = Core.getOptimalDFTSize(image.cols());
         Core.copyMakeBorder(image, paddedImage, 0, m - image.rows(), 0, n - image.cols(),
                 Core.BORDER_CONSTANT, Scalar.all(0));
-        var planes = new ArrayList<Mat>();
         paddedImage.convertTo(paddedImage, CvType.CV_32F);
-        planes.add(paddedImage);
-        planes.add(Mat.zeros(paddedImage.size(), CvType.CV_32F));
-        var complexImage = new Mat();
-        Core.merge(planes, complexImage);
-        Core.dft(complexImage, complexImage);
-        return complexImage;
+        Core.dft(paddedImage, paddedImage);
+        return paddedImage;
     }
 
     /**
-     * Method that perform a shifting operation on a DFT array. We want to ensure that the most frequent frequencies
-     * are clustered at the center of the image
-     * @param image Mat file containing the DFT
+     * Method that computes the shifted magnitude spectrum of a packed DFT image. The magnitude of the frequencies that
+     * are not stored is the magnitude of their complex conjugate. The zero frequency is moved to the center of the
+     * spectrum (row rows / 2, column cols / 2), for any number of rows and columns.
+     * @param dftImage Mat file containing the packed DFT
+     * @param channel the channel of the DFT
+     * @return the normalized magnitude spectrum
      */
-    private void performShift(Mat image){
-        image = new Mat(image, new Rect(0, 0, image.cols() & - 2, image.rows() & -2));
-
-        int cx = image.cols() / 2;
-        int cy = image.rows() / 2;
-
-        var q0 = new Mat(image, new Rect(0, 0, cx, cy));
-        var q1 = new Mat(image, new Rect(cx, 0, cx, cy));
-        var q2 = new Mat(image, new Rect(0, cy, cx, cy));
-        var q3 = new Mat(image, new Rect(cx, cy, cx, cy));
+    private Mat getMagnitudeSpectrum(Mat dftImage, int channel) {
+        var rows = dftImage.rows();
+        var cols = dftImage.cols();
+        var packed = new float[rows * cols];
+        dftImage.get(0, 0, packed);
+        var magnitude = new float[rows * cols];
+        var shiftedRows = new int[rows];
+        for(int u = 0; u < rows; u++){
+            shiftedRows[u] = ((u + rows / 2) % rows) * cols;
+        }
+        var shiftedColumns = new int[cols];
+        for(int v = 0; v < cols; v++){
+            shiftedColumns[v] = (v + cols / 2) % cols;
+        }
 
-        var tmp = new Mat();
-        q0.copyTo(tmp);
-        q3.copyTo(q0);
-        tmp.copyTo(q3);
+        //Columns holding one frequency per row: (real, imaginary) pairs
+        for(int v = 1; 2 * v < cols; v++){
+            for(int u = 0; u < rows; u++){
+                var value = (float) Math.hypot(packed[u * cols + 2 * v - 1], packed[u * cols + 2 * v]);
+                magnitude[shiftedRows[u] + shiftedColumns[v]] = value;
+                magnitude[shiftedRows[(rows - u) % rows] + shiftedColumns[cols - v]] = value;
+            }
+        }
+        //First and (for an even number of columns) last columns: (real, imaginary) pairs along the rows
+        var specialColumns = (cols % 2 == 0 && cols > 1) ? new int[]{0, cols - 1} : new int[]{0};
+        for(var c : specialColumns){
+            var v = c == 0 ? 0 : cols / 2;
+            magnitude[shiftedRows[0] + shiftedColumns[v]] = Math.abs(packed[c]);
+            if(rows % 2 == 0 && rows > 1){
+                magnitude[shiftedRows[rows / 2] + shiftedColumns[v]] = Math.abs(packed[(rows - 1) * cols + c]);
+            }
+            for(int u = 1; 2 * u < rows; u++){
+                var value = (float) Math.hypot(packed[(2 * u - 1) * cols + c], packed[2 * u * cols + c]);
+                magnitude[shiftedRows[u] + shiftedColumns[v]] = value;
+                magnitude[shiftedRows[rows - u] + shiftedColumns[v]] = value;
+            }
+        }
 
-        q1.copyTo(tmp);
-        q2.copyTo(q1);
-        tmp.copyTo(q2);
+        var magnitudeImage = new Mat(rows, cols, CvType.CV_32F);
+        magnitudeImage.put(0, 0, magnitude);
+        Core.add(magnitudeImage, Scalar.all(1), magnitudeImage);
+        Core.log(magnitudeImage, magnitudeImage);
+        Core.normalize(magnitudeImage, magnitudeImage, 0, getMaxChannelValue(channel), Core.NORM_MINMAX);
+        return magnitudeImage;
     }
 
     /**
-     * Method that saves the magnitude spectrum of a DFT image
-     * @param dftImage Mat file containing the DFT
-     * @param performShift boolean value that indicates if the shifting operation should be performed
+     * Method that saves a magnitude spectrum and releases it
+     * @param magnitudeImage the magnitude spectrum
      * @throws Exception Exception is an error is produced
      */
-    private void saveMagnitudeSpectrum(Mat dftImage, boolean performShift) throws Exception {
-        var planes = new ArrayList<Mat>(2);
-        Core.split(dftImage, planes);
-
-        var magnitudeImage = new Mat();
-        Core.magnitude(planes.get(0), planes.get(1), magnitudeImage);
-
-        Core.add(magnitudeImage, Scalar.all(1), magnitudeImage);
-        Core.log(magnitudeImage, magnitudeImage);
-
-        if(performShift){ performShift(magnitudeImage); }
-
-        Core.normalize(magnitudeImage, magnitudeImage, 0, getMaxChannelValue(), Core.NORM_MINMAX);
-
+    private void saveMagnitudeSpectrum(Mat magnitudeImage) throws Exception {
         var filename = "mag_" + Misc.getCurrentFormattedDateTime() + "_" + Misc.getRandomString(6) + ".pgm";
         Imgcodecs.imwrite(filename, magnitudeImage);
         Misc.appendToTrackerFile(filename);
-
-        for(var plane : planes){
-            plane.release();
-        }
         magnitudeImage.release();
     }
 
     /**
      * Method that returns the maximum possible value for a given channel in a given color space.
+     * @param channel the channel
      * @return the maximum possible value for a given channel in a given color space.
      */
-    private int getMaxChannelValue(){
-        if(colorSpace.equals("rbg")){
+    private int getMaxChannelValue(int channel){
+        if(colorSpace.equals("rgb")){
             return MAX_RGB;
         }
         else{
-            return MAX_HSV[this.channel];
-        }
-    }
-
-    /**
-     * Method that returns a band stop filter
-     * @param innerRadius inner radius of the filter
-     * @param outerRadius outer radius of the filter
-     * @param dftArray Mat file containing the DFT
-     * @return the band stop filter
-     */
-    private Mat getBandStopFilter(int innerRadius, int outerRadius, Mat dftArray){
-        int valueInCircle = 1, valueOutCircle = 0;
-        Point center = new Point((double) dftArray.rows() /2, (double) dftArray.cols() /2);
-        Mat filter = new Mat(dftArray.rows(), dftArray.cols(), CvType.CV_32F);
-        for(int i = 0; i < dftArray.rows(); i++){
-            for(int j = 0; j < dftArray.cols(); j++){
-                var currentRadius = getRadius(new Point(i, j), center);
-                if(currentRadius < (double) innerRadius || currentRadius > (double) outerRadius) {
-                    filter.put(i, j, (float) valueOutCircle);
-                }
-                else {
-                    filter.put(i, j, (float) valueInCircle);
-                }
-            }
-        }
-        return filter;
-    }
-
-    /**
-     * Method that returns a pass filter (low pass or high pass)
-     * @param filterRadius radius of the filter
-     * @param dftArray Mat file containing the DFT
-     * @param valueInCircle value inside the circle
-     * @param valueOutCircle value outside the circle
-     * @return the pass filter
-     */
-    private Mat getPassFilter(int filterRadius, Mat dftArray, int valueInCircle, int valueOutCircle){
-        Point center = new Point((double) dftArray.rows() /2, (double) dftArray.cols() /2);
-        Mat filter = new Mat(dftArray.rows(), dftArray.cols(), CvType.CV_32F);
-        for(int i = 0; i < dftArray.rows(); i++) {
-            for (int j = 0; j < dftArray.cols(); j++) {
-                var currentRadius = getRadius(new Point(i, j), center);
-                if(currentRadius > (double) filterRadius){
-                    filter.put(i, j, (float) valueOutCircle);
-                }
-                else{
-                    filter.put(i, j, (float) valueInCircle);
-                }
-            }
+            return MAX_HSV[channel];
         }
-        return filter;
     }
 
     /**
-     * Method that returns a low-pass filter
-     * @param filterRadius radius of the filter
-     * @param dftArray Mat file containing the DFT
-     * @return the low-pass filter
+     * Method to enable or disable the magnitude spectra of the operations of this instance. The default is
+     * {@link Diagnostics#isEnabled()}.
+     * @param diagnostics true to save the magnitude spectra before and after filtering
      */
-    private Mat getLowPassFilter(int filterRadius, Mat dftArray){
-        return getPassFilter(filterRadius, dftArray, 1, 0);
-    }
-
-    /**
-     * Method that returns a high-pass filter
-     * @param filterRadius radius of the filter
-     * @param dftArray Mat file containing the DFT
-     * @return the high-pass filter
-     */
-    private Mat getHighPassFilter(int filterRadius, Mat dftArray){
-        return getPassFilter(filterRadius, dftArray, 0, 1);
-    }
-
-    /**
-     * Method that returns the radius of a circle
-     * @param currentPoint current point
-     * @param circleCenter center of the circle
-     * @return the radius of a circle
-     */
-    private double getRadius(@NotNull Point currentPoint, @NotNull Point circleCenter){
-        return Math.sqrt(
-                Math.pow((currentPoint.x - circleCenter.x), 2.0) +
-                Math.pow((currentPoint.y - circleCenter.y), 2.0));
+    public void setDiagnostics(boolean diagnostics) {
+        this.diagnostics = diagnostics;
     }
 
     /**
@@ -241,33 +239,62 @@ public class Fourier implements AutoCloseable{
             @IntRange(from = 0 , to = Integer.MAX_VALUE) int distance1,
             @IntRange(from = 0, to = Integer.MAX_VALUE) int distance2,
             @StringOptions({"Low Pass", "High Pass", "Band Stop"}) String filterType) throws Exception {
-        Mat resultantDFT = performDFT(this.operationChannel);
-        saveMagnitudeSpectrum(resultantDFT, true);
-        Mat dftClone = resultantDFT.clone();
-        Mat filter = switch (filterType) {
-            case "Low Pass" -> getLowPassFilter(distance1, dftClone);
-            case "High Pass" -> getHighPassFilter(distance1, dftClone);
-            case "Band Stop" -> getBandStopFilter(distance1, distance2, dftClone);
+        TiledConvolution.MaskSource filter = switch (filterType) {
+            case "Low Pass" -> (rows, cols, rowScale, colScale) ->
+                    FrequencyMask.getPassMask(rows, cols, rowScale, colScale, FrequencyMask.Type.LOW_PASS, distance1);
+            case "High Pass" -> (rows, cols, rowScale, colScale) ->
+                    FrequencyMask.getPassMask(rows, cols, rowScale, colScale, FrequencyMask.Type.HIGH_PASS, distance1);
+            case "Band Stop" -> (rows, cols, rowScale, colScale) ->
+                    FrequencyMask.getBandMask(rows, cols, rowScale, colScale, distance1, distance2);
             default -> throw new IllegalArgumentException("Unknown filter: `" + filterType + "` has been detected!");
         };
+        applyMask(filter);
+    }
 
-        var mergeMat = List.of(filter, filter);
-        Core.merge(mergeMat, dftClone);
-        performShift(resultantDFT);
-        Core.mulSpectrums(resultantDFT, dftClone, resultantDFT, 0);
-        saveMagnitudeSpectrum(resultantDFT, false);
-        performShift(resultantDFT);
-        Core.idft(resultantDFT, resultantDFT);
-
-        applyChanges(resultantDFT);
-
-        //Release all Mat objects
-        resultantDFT.release();
-        dftClone.release();
-        filter.release();
-        for(var mat : mergeMat){
-            mat.release();
+    /**
+     * Method that applies a Gaussian filter to an image. Unlike the ideal filters, the Gaussian filters do not cause
+     * ringing.
+     * @param mode mode of the filter. It must be one of the following: "lowpass", "highpass", "bandpass", "bandstop"
+     * @param cutoff cutoff frequency of the low-pass and high-pass filters, or center of the band of the band filters
+     * @param bandWidth width of the band (ignored by the low-pass and high-pass filters)
+     * @throws Exception Exception is an error is produced
+     * @see FrequencyMask
+     */
+    public void applyGaussianFilter(
+            @StringOptions({"lowpass", "highpass", "bandpass", "bandstop"}) String mode,
+            double cutoff,
+            double bandWidth) throws Exception {
+        var type = FrequencyMask.Type.fromString(mode);
+        if(SpatialFilter.isAutomatic() && (type == FrequencyMask.Type.LOW_PASS || type == FrequencyMask.Type.HIGH_PASS)){
+            //The Gaussian mask is the transform of a Gaussian kernel, see SpatialFilter
+            var rowSigma = getDftRows() / (2 * Math.PI * cutoff);
+            var columnSigma = getDftColumns() / (2 * Math.PI * cutoff);
+            if(SpatialFilter.prefersSpatial(getDftRows(), getDftColumns(), rowSigma, columnSigma)){
+                blurChannels(rowSigma, columnSigma, type == FrequencyMask.Type.HIGH_PASS);
+                return;
+            }
         }
+        applyMask((rows, cols, rowScale, colScale) ->
+                FrequencyMask.getGaussianMask(rows, cols, rowScale, colScale, type, cutoff, bandWidth));
+    }
+
+    /**
+     * Method that applies a Butterworth filter to an image.
+     * @param mode mode of the filter. It must be one of the following: "lowpass", "highpass", "bandpass", "bandstop"
+     * @param cutoff cutoff frequency of the low-pass and high-pass filters, or center of the band of the band filters
+     * @param bandWidth width of the band (ignored by the low-pass and high-pass filters)
+     * @param order order of the filter. Higher orders have sharper cutoffs and more ringing
+     * @throws Exception Exception is an error is produced
+     * @see FrequencyMask
+     */
+    public void applyButterworthFilter(
+            @StringOptions({"lowpass", "highpass", "bandpass", "bandstop"}) String mode,
+            double cutoff,
+            double bandWidth,
+            @IntRange(from = 1, to = Integer.MAX_VALUE) int order) throws Exception {
+        var type = FrequencyMask.Type.fromString(mode);
+        applyMask((rows, cols, rowScale, colScale) ->
+                FrequencyMask.getButterworthMask(rows, cols, rowScale, colScale, type, cutoff, bandWidth, order));
     }
 
     /**
@@ -279,104 +306,206 @@ public class Fourier implements AutoCloseable{
     public void sharpenEdges(
             @NotNull @IntRange(from = 0, to = Integer.MAX_VALUE) int distance,
             @NotNull double factor) throws Exception {
-        var resultantDFT = performDFT(this.operationChannel);
-        saveMagnitudeSpectrum(resultantDFT, true);
-        var lowPassFilter = getLowPassFilter(distance, resultantDFT);
-        var highPassFilter = getHighPassFilter(distance, resultantDFT);
-        var lowPassImage = getFilteredImage(lowPassFilter, resultantDFT);
-        var highPassImage = getFilteredImage(highPassFilter, resultantDFT);
-
-        Core.multiply(highPassImage, Scalar.all(1.0 + factor), highPassImage);
-        Core.add(lowPassImage, highPassImage, resultantDFT);
-        saveMagnitudeSpectrum(resultantDFT, false);
-        performShift(resultantDFT);
-        Core.idft(resultantDFT, resultantDFT);
-
-        applyChanges(resultantDFT);
-
-        resultantDFT.release();
-        lowPassFilter.release();
-        lowPassImage.release();
-        highPassImage.release();
-        highPassFilter.release();
+        //The low and high frequencies are disjoint, so the unsharp mask is applied as a single combined mask
+        applyMask((rows, cols, rowScale, colScale) -> {
+            var lowPassFilter = FrequencyMask.getPassMask(rows, cols, rowScale, colScale,
+                    FrequencyMask.Type.LOW_PASS, distance);
+            var highPassFilter = FrequencyMask.getPassMask(rows, cols, rowScale, colScale,
+                    FrequencyMask.Type.HIGH_PASS, distance);
+            var unsharpFilter = new Mat();
+            Core.addWeighted(lowPassFilter, 1.0, highPassFilter, 1.0 + factor, 0.0, unsharpFilter);
+            FrequencyMask.release(lowPassFilter);
+            FrequencyMask.release(highPassFilter);
+            return unsharpFilter; // not cached, so it is released when it is handed back
+        });
     }
 
     /**
-     * Method that returns the filtered image
-     * @param filter filter to be applied
-     * @param dftImage Mat file containing the DFT
-     * @return the filtered image
+     * Method that multiplies the packed DFT of every channel with a mask. The mask is sampled on the spectrum of the
+     * region, or on the spectrum of a tile when the region is filtered tile by tile.
+     * @param maskSource source of the packed mask, which is handed back with {@link FrequencyMask#release(Mat)}
+     * @throws Exception Exception is an error is produced
      */
-    private Mat getFilteredImage(Mat filter, Mat dftImage){
-        var dftClone = dftImage.clone();
-        var mergedFilter = new Mat();
-        var mergeMat = List.of(filter, filter);
-        Core.merge(mergeMat, mergedFilter);
-        performShift(dftClone);
-        Core.mulSpectrums(dftClone, mergedFilter, dftClone, 0);
-        return dftClone;
+    private void applyMask(TiledConvolution.MaskSource maskSource) throws Exception {
+        var rows = getDftRows();
+        var cols = getDftColumns();
+        if(TiledConvolution.shouldTile(region.getTotalX(), region.getTotalY())){
+            //Kernels that only fit in a tile as large as the region are not tiled, so they are never truncated
+            var kernelSpectrum = TiledConvolution.createKernelSpectrum(maskSource, rows, cols);
+            if(kernelSpectrum != null){
+                try {
+                    filterTiles(kernelSpectrum);
+                }
+                finally {
+                    kernelSpectrum.release();
+                }
+                return;
+            }
+        }
+
+        var filter = maskSource.get(rows, cols, 1, 1);
+        try {
+            filterChannels(dft -> {
+                Core.multiply(dft, filter, dft);
+                return dft;
+            });
+        }
+        finally {
+            FrequencyMask.release(filter);
+        }
     }
 
     /**
-     * Method that applies the changes to the image.
-     * @param inverseDFT Mat file containing the inverse DFT
+     * Method that filters all selected channels with a Gaussian kernel in the spatial domain and writes the region back
+     * once. Every channel is padded with zeros to the DFT size and convolved with wrap-around, like the circular
+     * convolution performed by the DFT, and normalized like the frequency-domain filters. No magnitude spectra are
+     * saved.
+     * @param rowSigma standard deviation of the kernel along the rows
+     * @param columnSigma standard deviation of the kernel along the columns
+     * @param highPass true to keep the difference between the channel and its blur instead of the blur
      * @throws Exception Exception is an error is produced
      */
-    private void applyChanges(Mat inverseDFT) throws Exception {
-        var planes = new ArrayList<Mat>(2);
-        Core.split(inverseDFT, planes);
-        Core.normalize(planes.get(0), operationChannel, 0, getMaxChannelValue(), Core.NORM_MINMAX, CvType.CV_8U);
-
-        var originalImageSize = region.getRegionImage().getChannel(this.channel).length;
-        var processedImageSize = this.operationChannel.total();
+    private void blurChannels(double rowSigma, double columnSigma, boolean highPass) throws Exception {
+        var rows = getDftRows();
+        var cols = getDftColumns();
+        var horizontalKernel = SpatialFilter.gaussianKernel(columnSigma);
+        var verticalKernel = SpatialFilter.gaussianKernel(rowSigma);
+        var results = new Mat[channels.length];
+        for(int c = 0; c < channels.length; c++){
+            var plane = getPlane(channels[c]);
+            var data = new byte[(int) plane.total()];
+            plane.get(0, 0, data);
+            var padded = new float[rows * cols];
+            for(int i = 0; i < plane.rows(); i++){
+                for(int j = 0; j < plane.cols(); j++){
+                    padded[i * cols + j] = data[i * plane.cols() + j] & MAX_RGB;
+                }
+            }
 
-        if(originalImageSize != processedImageSize){
-            throw new Exception("The original image has size: " + originalImageSize +
-                    " while the processed image has size: " + processedImageSize);
+            var blurred = SpatialFilter.convolveSeparable(padded, rows, cols, horizontalKernel, verticalKernel,
+                    SpatialFilter.BorderMode.WRAP);
+            var filtered = new float[(int) plane.total()];
+            for(int i = 0; i < plane.rows(); i++){
+                for(int j = 0; j < plane.cols(); j++){
+                    var value = blurred[i * cols + j];
+                    filtered[i * plane.cols() + j] = highPass ? padded[i * cols + j] - value : value;
+                }
+            }
+            var filteredImage = new Mat(plane.rows(), plane.cols(), CvType.CV_32F);
+            filteredImage.put(0, 0, filtered);
+            results[c] = new Mat();
+            Core.normalize(filteredImage, results[c], 0, getMaxChannelValue(channels[c]), Core.NORM_MINMAX,
+                    CvType.CV_8U);
+            filteredImage.release();
         }
+        applyChanges(results);
+    }
 
+    /**
+     * Method that filters all selected channels tile by tile and writes the region back once. The channels are
+     * processed one after the other and the tiles of every channel in parallel.
+     * @param kernelSpectrum packed spectrum of the kernel, see {@link TiledConvolution}
+     * @throws Exception Exception is an error is produced
+     */
+    private void filterTiles(Mat kernelSpectrum) throws Exception {
+        var results = new Mat[channels.length];
+        for(int c = 0; c < channels.length; c++){
+            results[c] = TiledConvolution.filter(getPlane(channels[c]), kernelSpectrum,
+                    getMaxChannelValue(channels[c]), getDftRows(), getDftColumns());
+        }
+        applyChanges(results);
+    }
 
-        if(colorSpace.equals("rgb")){
-            for(int i = 0; i < region.getTotalX(); i++){
-                for(int j = 0; j < region.getTotalY(); j++){
-                    var newValue = (int)operationChannel.get(i, j)[0];
-                    region.getRegionImage().setPixel(i, j, channel, newValue);
+    /**
+     * Method that filters all selected channels and writes the region back once. For every channel, the packed DFT is
+     * computed, filtered in the frequency domain and inverted, and the padding added by the DFT is cropped. The
+     * channels are processed in parallel, and the magnitude spectra (if enabled) are saved afterwards in the order of
+     * the channels.
+     * @param spectrumFilter filter that receives the packed DFT of a channel and returns the filtered packed DFT
+     * @throws Exception Exception is an error is produced
+     */
+    private void filterChannels(UnaryOperator<Mat> spectrumFilter) throws Exception {
+        var spectra = new Mat[diagnostics ? channels.length : 0][2];
+        var results = new Mat[channels.length];
+        TileExecutor.forEachRowBand(channels.length, TileExecutor.MIN_SAMPLES_PER_BAND, (start, end) -> {
+            for(int c = start; c < end; c++){
+                var channel = channels[c];
+                var resultantDFT = performDFT(getPlane(channel));
+                if(diagnostics){
+                    spectra[c][0] = getMagnitudeSpectrum(resultantDFT, channel);
+                }
+                var filteredDFT = spectrumFilter.apply(resultantDFT);
+                if(diagnostics){
+                    spectra[c][1] = getMagnitudeSpectrum(filteredDFT, channel);
                 }
+
+                var inverseDFT = new Mat();
+                Core.idft(filteredDFT, inverseDFT, Core.DFT_REAL_OUTPUT);
+                var croppedInverseDFT = inverseDFT.submat(0, region.getTotalX(), 0, region.getTotalY());
+                results[c] = new Mat();
+                Core.normalize(croppedInverseDFT, results[c], 0, getMaxChannelValue(channel), Core.NORM_MINMAX,
+                        CvType.CV_8U);
+                croppedInverseDFT.release();
+                inverseDFT.release();
+                filteredDFT.release();
+                resultantDFT.release();
+            }
+        });
+
+        for(var channelSpectra : spectra){
+            for(var spectrum : channelSpectra){
+                saveMagnitudeSpectrum(spectrum);
             }
         }
+        applyChanges(results);
+    }
 
-        else if(colorSpace.equals("hsv")){
-            var extension = Misc.getFileExtension(region.getSourceImage().getFileName());
-            var filename = Misc.getRandomString(10) + "." + extension;
-            region.getRegionImage().save(filename);
-            var rgbImage = Imgcodecs.imread(filename);
-            var hsvImage = new Mat();
-            var updatedRgbImage = new Mat();
-            Imgproc.cvtColor(rgbImage, hsvImage, Imgproc.COLOR_BGR2HSV);
-            var hsvChannels = new ArrayList<Mat>(region.getNumChannels());
-            Core.split(hsvImage, hsvChannels);
-            hsvChannels.set(channel, operationChannel);
-            Core.merge(hsvChannels, hsvImage);
-            Imgproc.cvtColor(hsvImage, updatedRgbImage, Imgproc.COLOR_HSV2BGR);
-            if(updatedRgbImage.rows() != region.getTotalX() || updatedRgbImage.cols() != region.getTotalY()){
-                throw new Exception("Error during HSV to RGB conversion!");
+    private int getDftRows() {
+        return Core.getOptimalDFTSize(planes.get(0).rows());
+    }
+
+    private int getDftColumns() {
+        return Core.getOptimalDFTSize(planes.get(0).cols());
+    }
+
+    private Mat getPlane(int channel) {
+        return planes.size() == 1 ? planes.get(0) : planes.get(channel);
+    }
+
+    /**
+     * Method that applies the changes to the image.
+     * @param results the filtered channels, in the order of the selected channels
+     * @throws Exception Exception is an error is produced
+     */
+    private void applyChanges(Mat [] results) throws Exception {
+        var originalImageSize = (long) region.getTotalX() * region.getTotalY();
+        for(int c = 0; c < channels.length; c++){
+            var processedImageSize = results[c].total();
+            if(originalImageSize != processedImageSize){
+                throw new Exception("The original image has size: " + originalImageSize +
+                        " while the processed image has size: " + processedImageSize);
             }
-            Imgcodecs.imwrite(filename, updatedRgbImage);
-            region.getRegionImage().deepCopy(new Image(filename));
-
-            //Release allocated resources
-            delete(filename);
-            rgbImage.release();
-            hsvImage.release();
-            updatedRgbImage.release();
-            for(var ch: hsvChannels){
-                ch.release();
+            var index = planes.size() == 1 ? 0 : channels[c];
+            planes.get(index).release();
+            planes.set(index, results[c]);
+        }
+
+        var image = new Mat();
+        Core.merge(planes, image);
+        if(colorSpace.equals("hsv")){
+            Imgproc.cvtColor(image, image, Imgproc.COLOR_HSV2BGR);
+            if(image.rows() != region.getTotalX() || image.cols() != region.getTotalY()){
+                throw new Exception("Error during HSV to RGB conversion!");
             }
         }
+        region.getRegionImage().deepCopy(image);
+        image.release();
     }
 
     @Override
     public void close() {
-        this.operationChannel.release();
+        for(var plane : planes){
+            plane.release();
+        }
     }
 }
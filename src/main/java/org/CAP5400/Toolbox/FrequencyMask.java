@@ -0,0 +1,529 @@
+package org.CAP5400.Toolbox;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * This class creates the frequency-domain masks used by the {@link Fourier} filters. The spectra of real images are
+ * stored in the packed CCS layout of OpenCV ({@link org.opencv.core.Core#dft}): a single channel float matrix with the
+ * size of the image, in which every element is the real or the imaginary part of one frequency. The masks are real and
+ * symmetric, so a mask is stored in the same layout, with the weight of the frequency of every element, and it is
+ * applied by an element-wise multiplication. The weights are computed from the squared distance of the frequency to
+ * the zero frequency, into a single array that is copied to the matrix at once.
+ * <br><br>
+ * <p>Three profiles are supported. {@link Profile#IDEAL} masks have a hard cutoff, which causes ringing around edges.
+ * {@link Profile#GAUSSIAN} and {@link Profile#BUTTERWORTH} masks fall off smoothly and do not ring (Gaussian) or barely
+ * ring for low orders (Butterworth). For a distance {@code D} to the center, a cutoff {@code D0}, a band center
+ * {@code C0}, a band width {@code W} and an order {@code n}:</p>
+ * <ul>
+ *     <li>Gaussian low-pass: {@code exp(-D^2 / (2 D0^2))}</li>
+ *     <li>Butterworth low-pass: {@code 1 / (1 + (D / D0)^(2n))}</li>
+ *     <li>Gaussian band-stop: {@code 1 - exp(-((D^2 - C0^2) / (D W))^2)}</li>
+ *     <li>Butterworth band-stop: {@code 1 / (1 + (D W / (D^2 - C0^2))^(2n))}</li>
+ * </ul>
+ * <p>The high-pass and band-pass masks are the complements ({@code 1 - H}) of the low-pass and band-stop masks.</p>
+ * <p>The masks are memoized in a cache keyed by the size, the profile, the type and the parameters of the mask, so
+ * filtering many regions of interest of the same size only creates the mask once. The cache holds at most
+ * {@link #getCacheCapacity()} bytes of masks ({@code rows * columns * 4} bytes per mask) and evicts the least recently
+ * used masks first. The capacity can be configured with the {@value #CACHE_CAPACITY_PROPERTY} system property or at
+ * runtime.</p>
+ * <p>A mask can also be sampled on a spectrum of another size, e.g. the spectrum of a tile of a larger region (see
+ * {@link TiledConvolution}). The frequencies of such a mask are scaled to the frequencies of the larger spectrum, so
+ * the cutoffs keep their meaning.</p>
+ * <p><b>NOTE: </b> The returned masks are shared and must not be modified. The masks sampled for the filters are
+ * leased: they are handed back with {@link #release(Mat)}, and an evicted mask is released as soon as no filter uses
+ * it. The masks returned by the public methods are released by the garbage collector once they are evicted.</p>
+ * @author Reubin George
+ * @see Fourier
+ */
+public final class FrequencyMask {
+    public static final String CACHE_CAPACITY_PROPERTY = "cap5400.frequencyMask.cacheCapacity";
+    public static final long DEFAULT_CACHE_CAPACITY = 64L * 1024 * 1024; // bytes, a 512x512 mask takes 1 MB
+
+    /**
+     * This enum lists the shapes of the masks.
+     */
+    public enum Profile {
+        IDEAL,
+        GAUSSIAN,
+        BUTTERWORTH
+    }
+
+    /**
+     * This enum lists the types of masks.
+     * <ul>
+     *     <li>{@link #LOW_PASS} - keeps the frequencies inside the cutoff</li>
+     *     <li>{@link #HIGH_PASS} - keeps the frequencies outside the cutoff</li>
+     *     <li>{@link #BAND_PASS} - keeps the frequencies of a band</li>
+     *     <li>{@link #BAND_STOP} - removes the frequencies of a band</li>
+     * </ul>
+     */
+    public enum Type {
+        LOW_PASS,
+        HIGH_PASS,
+        BAND_PASS,
+        BAND_STOP;
+
+        /**
+         * This method returns the type with the given name, ignoring the case, spaces, dashes and underscores.
+         * @param name The name of the type, e.g. "lowpass" or "band_stop".
+         * @return The type of mask.
+         * @throws IllegalArgumentException If no type has the given name.
+         */
+        public static Type fromString(String name) {
+            if(name == null || name.isBlank()) {
+                throw new IllegalArgumentException("The filter mode must not be empty.");
+            }
+            var normalizedName = name.replaceAll("[\\s_-]", "").toUpperCase(Locale.US);
+            for(var type : values()) {
+                if(type.name().replace("_", "").equals(normalizedName)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown filter mode: " + name +
+                    ". Expected one of lowpass, highpass, bandpass or bandstop");
+        }
+
+        private boolean isBand() {
+            return this == BAND_PASS || this == BAND_STOP;
+        }
+    }
+
+    /**
+     * The parameters of a mask. The first and second parameters are the inner and outer radii of ideal band masks, and
+     * the cutoff (or band center) and band width of all other masks. The frequencies along the rows and columns of the
+     * mask are multiplied by the row and column scales before the weights are computed.
+     */
+    private record Key(int rows, int columns, double rowScale, double columnScale, Profile profile, Type type,
+                       double first, double second, int order) { }
+
+    /**
+     * This class holds a cached mask and the number of filters using it.
+     */
+    private static final class Entry {
+        private final Mat mask;
+        private final long weight;
+        private int users; // number of leases that are not released yet
+        private boolean shared; // handed out without a lease, so it is never released explicitly
+        private boolean evicted;
+
+        private Entry(Mat mask) {
+            this.mask = mask;
+            this.weight = (long) mask.rows() * mask.cols() * Float.BYTES;
+        }
+    }
+
+    private static final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private static final IdentityHashMap<Mat, Entry> entries = new IdentityHashMap<>(); // cached and leased masks
+    private static long cacheCapacity = readCapacity();
+    private static long cacheSize;
+
+    private FrequencyMask() { }
+
+    /**
+     * This method returns a low-pass or a high-pass mask.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param type {@link Type#LOW_PASS} or {@link Type#HIGH_PASS}.
+     * @param radius The radius of the mask. Frequencies at exactly this distance are inside the circle.
+     * @return The shared mask. It must not be modified or released.
+     */
+    public static Mat getPassMask(int rows, int columns, Type type, int radius) {
+        return get(getPassKey(rows, columns, 1, 1, type, radius), false);
+    }
+
+    /**
+     * This method returns a low-pass or a high-pass mask sampled on a spectrum of another size.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param rowScale The ratio between the number of rows of the spectrum the radius refers to and {@code rows}.
+     * @param columnScale The ratio between the number of columns of the spectrum the radius refers to and
+     *                    {@code columns}.
+     * @param type {@link Type#LOW_PASS} or {@link Type#HIGH_PASS}.
+     * @param radius The radius of the mask.
+     * @return The leased mask. It must not be modified, and it must be handed back with {@link #release(Mat)}.
+     */
+    static Mat getPassMask(int rows, int columns, double rowScale, double columnScale, Type type, int radius) {
+        return get(getPassKey(rows, columns, rowScale, columnScale, type, radius), true);
+    }
+
+    private static Key getPassKey(int rows, int columns, double rowScale, double columnScale, Type type, int radius) {
+        if(type.isBand()){
+            throw new IllegalArgumentException("A band mask needs an inner and an outer radius.");
+        }
+        return new Key(rows, columns, rowScale, columnScale, Profile.IDEAL, type, radius, radius, 0);
+    }
+
+    /**
+     * This method returns a mask that keeps the frequencies between two radii.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param innerRadius The inner radius of the band (inclusive).
+     * @param outerRadius The outer radius of the band (inclusive).
+     * @return The shared mask. It must not be modified or released.
+     */
+    public static Mat getBandMask(int rows, int columns, int innerRadius, int outerRadius) {
+        return get(new Key(rows, columns, 1, 1, Profile.IDEAL, Type.BAND_PASS, innerRadius, outerRadius, 0), false);
+    }
+
+    /**
+     * This method returns a mask that keeps the frequencies between two radii, sampled on a spectrum of another size.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param rowScale The ratio between the number of rows of the spectrum the radii refer to and {@code rows}.
+     * @param columnScale The ratio between the number of columns of the spectrum the radii refer to and {@code columns}.
+     * @param innerRadius The inner radius of the band (inclusive).
+     * @param outerRadius The outer radius of the band (inclusive).
+     * @return The leased mask. It must not be modified, and it must be handed back with {@link #release(Mat)}.
+     */
+    static Mat getBandMask(int rows, int columns, double rowScale, double columnScale, int innerRadius,
+                           int outerRadius) {
+        return get(new Key(rows, columns, rowScale, columnScale, Profile.IDEAL, Type.BAND_PASS, innerRadius,
+                outerRadius, 0), true);
+    }
+
+    /**
+     * This method returns a Gaussian mask.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param type The type of mask.
+     * @param cutoff The cutoff frequency of low-pass and high-pass masks, or the center of the band of band masks.
+     * @param bandWidth The width of the band. It is ignored by low-pass and high-pass masks.
+     * @return The shared mask. It must not be modified or released.
+     */
+    public static Mat getGaussianMask(int rows, int columns, Type type, double cutoff, double bandWidth) {
+        return get(getGaussianKey(rows, columns, 1, 1, type, cutoff, bandWidth), false);
+    }
+
+    /**
+     * This method returns a Gaussian mask sampled on a spectrum of another size.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param rowScale The ratio between the number of rows of the spectrum the cutoff refers to and {@code rows}.
+     * @param columnScale The ratio between the number of columns of the spectrum the cutoff refers to and
+     *                    {@code columns}.
+     * @param type The type of mask.
+     * @param cutoff The cutoff frequency, or the center of the band.
+     * @param bandWidth The width of the band.
+     * @return The leased mask. It must not be modified, and it must be handed back with {@link #release(Mat)}.
+     */
+    static Mat getGaussianMask(int rows, int columns, double rowScale, double columnScale, Type type, double cutoff,
+                               double bandWidth) {
+        return get(getGaussianKey(rows, columns, rowScale, columnScale, type, cutoff, bandWidth), true);
+    }
+
+    private static Key getGaussianKey(int rows, int columns, double rowScale, double columnScale, Type type,
+                                      double cutoff, double bandWidth) {
+        checkSmoothParameters(type, cutoff, bandWidth, 1);
+        return new Key(rows, columns, rowScale, columnScale, Profile.GAUSSIAN, type, cutoff,
+                type.isBand() ? bandWidth : 0, 0);
+    }
+
+    /**
+     * This method returns a Butterworth mask.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param type The type of mask.
+     * @param cutoff The cutoff frequency of low-pass and high-pass masks, or the center of the band of band masks.
+     * @param bandWidth The width of the band. It is ignored by low-pass and high-pass masks.
+     * @param order The order of the filter. Higher orders have sharper cutoffs.
+     * @return The shared mask. It must not be modified or released.
+     */
+    public static Mat getButterworthMask(int rows, int columns, Type type, double cutoff, double bandWidth, int order) {
+        return get(getButterworthKey(rows, columns, 1, 1, type, cutoff, bandWidth, order), false);
+    }
+
+    /**
+     * This method returns a Butterworth mask sampled on a spectrum of another size.
+     * @param rows The number of rows of the packed DFT.
+     * @param columns The number of columns of the packed DFT.
+     * @param rowScale The ratio between the number of rows of the spectrum the cutoff refers to and {@code rows}.
+     * @param columnScale The ratio between the number of columns of the spectrum the cutoff refers to and
+     *                    {@code columns}.
+     * @param type The type of mask.
+     * @param cutoff The cutoff frequency, or the center of the band.
+     * @param bandWidth The width of the band.
+     * @param order The order of the filter.
+     * @return The leased mask. It must not be modified, and it must be handed back with {@link #release(Mat)}.
+     */
+    static Mat getButterworthMask(int rows, int columns, double rowScale, double columnScale, Type type,
+                                  double cutoff, double bandWidth, int order) {
+        return get(getButterworthKey(rows, columns, rowScale, columnScale, type, cutoff, bandWidth, order), true);
+    }
+
+    private static Key getButterworthKey(int rows, int columns, double rowScale, double columnScale, Type type,
+                                         double cutoff, double bandWidth, int order) {
+        checkSmoothParameters(type, cutoff, bandWidth, order);
+        return new Key(rows, columns, rowScale, columnScale, Profile.BUTTERWORTH, type, cutoff,
+                type.isBand() ? bandWidth : 0, order);
+    }
+
+    /**
+     * Method to get the number of cached masks.
+     * @return The number of cached masks.
+     */
+    public static synchronized int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Method to get the number of bytes held by the cache.
+     * @return The number of bytes of the cached masks.
+     */
+    public static synchronized long getCacheBytes() {
+        return cacheSize;
+    }
+
+    /**
+     * Method to get the capacity of the cache.
+     * @return The maximum number of bytes of masks held by the cache.
+     */
+    public static synchronized long getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    /**
+     * Method to set the capacity of the cache. Masks are evicted until the cache fits the new capacity.
+     * @param cacheCapacity The maximum number of bytes of masks held by the cache. 0 disables the cache.
+     */
+    public static synchronized void setCacheCapacity(long cacheCapacity) {
+        if(cacheCapacity < 0) {
+            throw new IllegalArgumentException("The cache capacity must not be negative, but was " + cacheCapacity);
+        }
+        FrequencyMask.cacheCapacity = cacheCapacity;
+        evict(cacheCapacity);
+    }
+
+    /**
+     * This method removes all masks from the cache. The masks that are still leased are released when they are handed
+     * back.
+     */
+    public static synchronized void clearCache() {
+        evict(0);
+    }
+
+    /**
+     * This method hands back a mask returned by a leased method. A cached mask that was evicted is released once no
+     * filter uses it anymore; a mask that was not cached, e.g. because it is larger than the capacity of the cache, is
+     * released immediately.
+     * @param mask The mask.
+     */
+    static synchronized void release(Mat mask) {
+        var entry = entries.get(mask);
+        if(entry == null) {
+            mask.release();
+            return;
+        }
+        if(entry.users > 0) {
+            entry.users--;
+        }
+        if(entry.users == 0 && entry.evicted) {
+            entries.remove(mask);
+            if(!entry.shared) {
+                mask.release();
+            }
+        }
+    }
+
+    private static void checkSmoothParameters(Type type, double cutoff, double bandWidth, int order) {
+        if(type.isBand() ? cutoff < 0 : cutoff <= 0){
+            throw new IllegalArgumentException("The cutoff frequency must be positive, but was " + cutoff);
+        }
+        if(type.isBand() && bandWidth <= 0){
+            throw new IllegalArgumentException("The band width must be positive, but was " + bandWidth);
+        }
+        if(order < 1){
+            throw new IllegalArgumentException("The order of the filter must be at least 1, but was " + order);
+        }
+    }
+
+    /**
+     * This method returns the cached mask of a key, creating it if it is not cached.
+     * @param key The size, profile, type and parameters of the mask.
+     * @param leased True if the caller hands the mask back with {@link #release(Mat)}.
+     * @return The mask.
+     */
+    private static synchronized Mat get(Key key, boolean leased) {
+        if(key.rows() <= 0 || key.columns() <= 0){
+            throw new IllegalArgumentException("Invalid mask size: " + key.rows() + "x" + key.columns());
+        }
+        if(!(key.rowScale() > 0) || !(key.columnScale() > 0)){
+            throw new IllegalArgumentException("Invalid mask scale: " + key.rowScale() + "x" + key.columnScale());
+        }
+        var entry = cache.get(key);
+        if(entry == null) {
+            var mask = create(key);
+            entry = new Entry(mask);
+            if(entry.weight > cacheCapacity) {
+                return mask; // the mask would evict every other mask, so it is owned by the caller
+            }
+            cache.put(key, entry);
+            entries.put(mask, entry);
+            cacheSize += entry.weight;
+            evict(cacheCapacity);
+        }
+        if(leased) {
+            entry.users++;
+        }
+        else {
+            entry.shared = true;
+        }
+        return entry.mask;
+    }
+
+    /**
+     * This method evicts the least recently used masks until the cache fits a capacity. The evicted masks are released
+     * unless they are still leased or were handed out without a lease.
+     * @param capacity The maximum number of bytes of masks that are kept.
+     */
+    private static void evict(long capacity) {
+        var iterator = cache.values().iterator();
+        while(cacheSize > capacity && iterator.hasNext()) {
+            var entry = iterator.next();
+            iterator.remove();
+            cacheSize -= entry.weight;
+            entry.evicted = true;
+            if(entry.users == 0) {
+                entries.remove(entry.mask);
+                if(!entry.shared) {
+                    entry.mask.release();
+                }
+            }
+        }
+    }
+
+    private static long readCapacity() {
+        var property = System.getProperty(CACHE_CAPACITY_PROPERTY);
+        if(property == null || property.isBlank()) {
+            return DEFAULT_CACHE_CAPACITY;
+        }
+        try {
+            return Math.max(0, Long.parseLong(property.trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + CACHE_CAPACITY_PROPERTY + ": " + property, e);
+        }
+    }
+
+    /**
+     * This method computes a mask in the packed layout of the spectrum. The weight of every element is computed from
+     * the squared distance of its frequency to the zero frequency. The distance is compared to the radii of ideal masks
+     * without a square root: {@code d <= r} is equivalent to {@code d * d <= r * r} for the non-negative distances and
+     * radii.
+     * @param key The size, profile, type and parameters of the mask.
+     * @return The new mask.
+     */
+    private static Mat create(Key key) {
+        var rows = key.rows();
+        var columns = key.columns();
+        var firstSquared = key.first() * key.first();
+        var secondSquared = key.second() * key.second();
+
+        var data = new float[rows * columns];
+        var index = 0;
+        for(int r = 0; r < rows; r++){
+            for(int c = 0; c < columns; c++){
+                var rowFrequency = getRowFrequency(r, c, rows, columns) * key.rowScale();
+                var columnFrequency = getColumnFrequency(c, columns) * key.columnScale();
+                var distanceSquared = rowFrequency * rowFrequency + columnFrequency * columnFrequency;
+                data[index++] = key.profile() == Profile.IDEAL ?
+                        getIdealWeight(key.type(), distanceSquared, firstSquared, secondSquared) :
+                        getSmoothWeight(key, distanceSquared, firstSquared);
+            }
+        }
+
+        var mask = new Mat(rows, columns, CvType.CV_32F);
+        mask.put(0, 0, data);
+        return mask;
+    }
+
+    /**
+     * This method returns the distance along the rows between the frequency stored at an element of a packed spectrum
+     * and the zero frequency. The first column, and the last column when the number of columns is even, hold the
+     * real and imaginary parts of the frequencies of consecutive rows; the other columns hold one frequency per row.
+     * @param row The row of the element.
+     * @param column The column of the element.
+     * @param rows The number of rows of the spectrum.
+     * @param columns The number of columns of the spectrum.
+     * @return The distance along the rows, between 0 and rows / 2.
+     */
+    private static int getRowFrequency(int row, int column, int rows, int columns) {
+        int frequency;
+        if(column == 0 || (columns % 2 == 0 && column == columns - 1)){
+            frequency = (row == 0) ? 0 : (rows % 2 == 0 && row == rows - 1) ? rows / 2 : (row + 1) / 2;
+        }
+        else {
+            frequency = row;
+        }
+        return Math.min(frequency, rows - frequency);
+    }
+
+    /**
+     * This method returns the distance along the columns between the frequency stored at an element of a packed
+     * spectrum and the zero frequency.
+     * @param column The column of the element.
+     * @param columns The number of columns of the spectrum.
+     * @return The distance along the columns, between 0 and columns / 2.
+     */
+    private static int getColumnFrequency(int column, int columns) {
+        if(column == 0){
+            return 0;
+        }
+        if(columns % 2 == 0 && column == columns - 1){
+            return columns / 2;
+        }
+        return (column + 1) / 2;
+    }
+
+    private static float getIdealWeight(Type type, double distanceSquared, double firstSquared, double secondSquared) {
+        return switch (type) {
+            case LOW_PASS -> distanceSquared > secondSquared ? 0f : 1f;
+            case HIGH_PASS -> distanceSquared > secondSquared ? 1f : 0f;
+            case BAND_PASS -> distanceSquared < firstSquared || distanceSquared > secondSquared ? 0f : 1f;
+            case BAND_STOP -> distanceSquared < firstSquared || distanceSquared > secondSquared ? 1f : 0f;
+        };
+    }
+
+    /**
+     * This method computes the weight of a frequency for a Gaussian or Butterworth mask.
+     * @param key The parameters of the mask.
+     * @param distanceSquared The squared distance of the frequency to the zero frequency.
+     * @param cutoffSquared The squared cutoff frequency, or the squared center of the band.
+     * @return The weight of the frequency.
+     */
+    private static float getSmoothWeight(Key key, double distanceSquared, double cutoffSquared) {
+        var type = key.type();
+        double weight;
+        if(!type.isBand()){
+            //Low-pass weight, complemented for high-pass
+            weight = key.profile() == Profile.GAUSSIAN ?
+                    Math.exp(-distanceSquared / (2 * cutoffSquared)) :
+                    1 / (1 + Math.pow(distanceSquared / cutoffSquared, key.order()));
+            return (float) (type == Type.LOW_PASS ? weight : 1 - weight);
+        }
+
+        //Band-stop weight, complemented for band-pass. The weight is 0 at the center of the band and 1 at the zero
+        //frequency
+        var offset = distanceSquared - cutoffSquared;
+        var spread = Math.sqrt(distanceSquared) * key.second();
+        if(offset == 0){
+            weight = 0;
+        }
+        else if(spread == 0){
+            weight = 1;
+        }
+        else if(key.profile() == Profile.GAUSSIAN){
+            var ratio = offset / spread;
+            weight = 1 - Math.exp(-ratio * ratio);
+        }
+        else {
+            var ratio = spread / offset;
+            weight = 1 / (1 + Math.pow(ratio * ratio, key.order()));
+        }
+        return (float) (type == Type.BAND_STOP ? weight : 1 - weight);
+    }
+}
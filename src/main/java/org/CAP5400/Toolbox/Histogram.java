@@ -4,24 +4,23 @@ import com.github.javaparser.quality.Nullable;
 import jakarta.validation.constraints.NotNull;
 import org.CAP5400.Exceptions.IllegalColorspaceException;
 import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageChange;
+import org.CAP5400.Misc.Diagnostics;
 import org.CAP5400.Misc.Misc;
 import org.CAP5400.RegionOfInterest.ROI;
 import org.checkerframework.common.value.qual.IntRange;
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
 
-import java.awt.*;
 import java.util.*;
-import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.stream.IntStream;
 
 import static org.CAP5400.Image.Image.MAX_RGB;
 import static org.CAP5400.Misc.Misc.appendToTrackerFile;
-import static org.CAP5400.Misc.Misc.delete;
 
 /**
  * This class is used to perform histogram operations on a region of interest.
@@ -32,15 +31,28 @@ import static org.CAP5400.Misc.Misc.delete;
  *     <li>Histogram Stretching</li>
  *     <li>Threshold Equalization</li>
  * </ul>
+ * The histogram of the channel is saved before and after every operation when the diagnostic artifacts are enabled
+ * (see {@link Diagnostics} and {@link #setDiagnostics(boolean)}).
  * @Author Reubin George
  * @see ROI
  * @see AutoCloseable
  */
 public class Histogram implements AutoCloseable{
-    private List<Map<Integer, Set<Point>>> data;
+    private int [][] counts; // number of pixels per intensity value, per channel
     private final String colorspace;
     private final int [] MAX_HSV = {179, MAX_RGB, MAX_RGB};
+    private int [][] binIndex; // intensity of every pixel of the region, per channel
+    private int [][] binOffsets, binPixels; // lazily built per channel pixel index, see getBinPixels()
     private ROI region;
+    private boolean diagnostics = Diagnostics.isEnabled();
+    private final BiConsumer<Image, ImageChange> changeObserver = (image, change) -> {
+        try {
+            updateBin(change); //update the bin for the pixels changed in the region image
+        }
+        catch (Exception e){
+            throw new RuntimeException(e);
+        }
+    };
 
     /**
      * Constructor for the Histogram class.
@@ -54,15 +66,8 @@ public class Histogram implements AutoCloseable{
             throw new IllegalColorspaceException(colorSpace);
         }
         this.region = region;
-        this.region.getRegionImage().addObserver(o ->{
-            try {
-                computeBin(); //recompute the bin if the region image changes
-            }
-            catch (Exception e){
-                throw new RuntimeException(e);
-            }
-        });
-        if(data == null){
+        this.region.getRegionImage().addChangeObserver(changeObserver);
+        if(counts == null){
             computeBin();
         }
 
@@ -76,49 +81,183 @@ public class Histogram implements AutoCloseable{
      * @throws Exception Exception thrown if an error occurs.
      */
     private void computeBin() throws Exception {
-
-        this.data = new ArrayList<>();
-        for(var i = 0; i < region.getNumChannels(); i++){
-            data.add(new HashMap<>());
-            var maxIntensity = getMaxChannelValue(i);
-            for(var j = 0; j <= maxIntensity; j++){
-                this.data.get(i).put(j, new HashSet<>());
+        var totalY = region.getTotalY();
+        var numChannels = region.getNumChannels();
+        var totalPixels = region.getTotalX() * totalY;
+        var intensities = getIntensities(0, 0, region.getTotalX(), totalY);
+
+        this.counts = new int[numChannels][];
+        this.binIndex = new int[numChannels][totalPixels];
+        this.binOffsets = new int[numChannels][];
+        this.binPixels = new int[numChannels][];
+        for(int k = 0; k < numChannels; k++){
+            var channelCounts = new int[getMaxChannelValue(k) + 1];
+            var channelIndex = binIndex[k];
+            for(int pixel = 0, index = k; pixel < totalPixels; pixel++, index += numChannels){
+                var intensity = intensities[index];
+                channelCounts[intensity]++;
+                channelIndex[pixel] = intensity;
             }
+            this.counts[k] = channelCounts;
+        }
+    }
+
+    /**
+     * This method is used to update the bin after the region image has changed. Only the pixels inside the dirty
+     * rectangle of the change are visited: for every pixel whose intensity differs from the one recorded in the bin,
+     * the count of the old intensity is decremented and the count of the new intensity is incremented, so the cost is
+     * proportional to the changed area and not to the size of the region of interest.
+     * @param change The change made to the region image.
+     * @throws Exception Exception thrown if an error occurs.
+     */
+    private void updateBin(@NotNull ImageChange change) throws Exception {
+        if(counts == null || binIndex == null){
+            computeBin();
+            return;
         }
 
-        Mat hsvImage = new Mat();
-        if(this.colorspace.equals("hsv")){
-            Imgproc.cvtColor(region.getRegionImage().getOpenCvMat(), hsvImage, Imgproc.COLOR_BGR2HSV);
+        var startRow = Math.min(change.getStartRow(), region.getTotalX());
+        var startColumn = Math.min(change.getStartColumn(), region.getTotalY());
+        var endRow = Math.min(change.getEndRow(), region.getTotalX());
+        var endColumn = Math.min(change.getEndColumn(), region.getTotalY());
+        if(startRow >= endRow || startColumn >= endColumn){
+            return;
         }
 
-        for(int i = 0; i < region.getTotalX(); i++){
-            for(int j = 0; j < region.getTotalY(); j++){
-                for(int k = 0; k < region.getNumChannels(); k++){
-                    var point = new Point(i, j);
-                    int intensity;
-                    if(colorspace.equals("rgb")){
-                        intensity = region.getRegionImage().getPixel(i, j, k);
-                    }
-                    else {
-                        intensity = (int) hsvImage.get(i, j)[k];
+        var totalY = region.getTotalY();
+        var numChannels = region.getNumChannels();
+        var width = endColumn - startColumn;
+        var intensities = getIntensities(startRow, startColumn, endRow, endColumn);
+        for(int k = 0; k < numChannels; k++){
+            //A change in any RGB channel may change every HSV channel of the pixel
+            if(colorspace.equals("rgb") && !change.isChannelModified(k)){
+                continue;
+            }
+            var channelCounts = counts[k];
+            var channelIndex = binIndex[k];
+            var changed = false;
+            for(int i = startRow; i < endRow; i++){
+                for(int j = startColumn; j < endColumn; j++){
+                    var intensity = intensities[((i - startRow) * width + j - startColumn) * numChannels + k];
+                    var oldIntensity = channelIndex[i * totalY + j];
+                    if(intensity != oldIntensity){
+                        channelCounts[oldIntensity]--;
+                        channelCounts[intensity]++;
+                        channelIndex[i * totalY + j] = intensity;
+                        changed = true;
                     }
-                    this.data.get(k).get(intensity).add(point);
                 }
             }
+            if(changed){
+                binOffsets[k] = null;
+                binPixels[k] = null;
+            }
         }
-        hsvImage.release();
     }
 
-/**
-     * This method is used to save the histogram of a channel.
+    /**
+     * This method returns the pixels of a channel sorted by intensity, in a compact CSR-style layout: the linear ids
+     * ({@code row * totalY + column}) of the pixels with intensity {@code i} are stored in
+     * {@code pixels[offsets[i]]} to {@code pixels[offsets[i + 1] - 1]}, in increasing order. The index is built on
+     * first use with a counting sort and is discarded when the channel changes.
+     * @param channel The channel to index.
+     * @return The pixel ids of the channel, sorted by intensity. Use {@link #getBinOffsets(int)} to find the bins.
+     */
+    private int [] getBinPixels(int channel) {
+        if(binPixels[channel] == null){
+            var channelCounts = counts[channel];
+            var offsets = new int[channelCounts.length + 1];
+            for(int i = 0; i < channelCounts.length; i++){
+                offsets[i + 1] = offsets[i] + channelCounts[i];
+            }
+            var next = Arrays.copyOf(offsets, channelCounts.length);
+            var channelIndex = binIndex[channel];
+            var pixels = new int[channelIndex.length];
+            for(int pixel = 0; pixel < channelIndex.length; pixel++){
+                pixels[next[channelIndex[pixel]]++] = pixel;
+            }
+            binOffsets[channel] = offsets;
+            binPixels[channel] = pixels;
+        }
+        return binPixels[channel];
+    }
+
+    /**
+     * This method returns the bin offsets of the pixel index of a channel.
+     * @param channel The channel to index.
+     * @return The offsets of the bins in the array returned by {@link #getBinPixels(int)}.
+     */
+    private int [] getBinOffsets(int channel) {
+        getBinPixels(channel);
+        return binOffsets[channel];
+    }
+
+    /**
+     * This method is used to read the intensities of a rectangle of the region image in the color space of the
+     * histogram.
+     * @param startRow The first row of the rectangle.
+     * @param startColumn The first column of the rectangle.
+     * @param endRow The row after the last row of the rectangle.
+     * @param endColumn The column after the last column of the rectangle.
+     * @return The intensities of the rectangle, stored row by row, pixel by pixel, channel by channel.
+     */
+    private int [] getIntensities(int startRow, int startColumn, int endRow, int endColumn) {
+        var image = region.getRegionImage();
+        var buffer = image.getReadOnlyBuffer();
+        var numChannels = region.getNumChannels();
+        var intensities = new int[(endRow - startRow) * (endColumn - startColumn) * numChannels];
+        var index = 0;
+        for(int i = startRow; i < endRow; i++){
+            for(int j = startColumn; j < endColumn; j++){
+                for(int k = 0; k < numChannels; k++){
+                    intensities[index++] = buffer.get(image.getIndex(i, j, k));
+                }
+            }
+        }
+
+        if(colorspace.equals("hsv")){
+            var bgrData = new byte[intensities.length];
+            for(int i = 0; i < intensities.length; i++){
+                bgrData[i] = (byte) Math.min(intensities[i], MAX_RGB);
+            }
+            var bgrImage = new Mat(endRow - startRow, endColumn - startColumn, CvType.CV_8UC(numChannels));
+            var hsvImage = new Mat();
+            bgrImage.put(0, 0, bgrData);
+            Imgproc.cvtColor(bgrImage, hsvImage, Imgproc.COLOR_BGR2HSV);
+            hsvImage.get(0, 0, bgrData);
+            for(int i = 0; i < intensities.length; i++){
+                intensities[i] = bgrData[i] & MAX_RGB;
+            }
+            bgrImage.release();
+            hsvImage.release();
+        }
+        return intensities;
+    }
+
+    /**
+     * This method is used to enable or disable the histograms saved by the operations of this instance. The default is
+     * {@link Diagnostics#isEnabled()}.
+     * @param diagnostics True to save the histogram of the channel before and after every operation.
+     */
+    public void setDiagnostics(boolean diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * This method is used to save the histogram of a channel, if the diagnostic artifacts are enabled. The histogram
+     * image is built in an array and copied to the image at once.
      * @param channel The channel to save the histogram for.
      * @throws Exception Exception thrown if an error occurs.
      */
     private void saveChannelHistogram(@IntRange(from = 0, to = 2) int channel) throws Exception {
+        if(!diagnostics){
+            return;
+        }
         var histogramImage = new Image(MAX_RGB + 1, MAX_RGB + 1);
+        var histogramData = new int[(MAX_RGB + 1) * (MAX_RGB + 1)];
         var channelData = new int[MAX_RGB + 1];
         for(int i = 0; i <= getMaxChannelValue(channel); i++){
-            var binSize = data.get(channel).get(i).size();
+            var binSize = counts[channel][i];
             if(binSize > 0){ channelData[i] = binSize; }
             else { channelData[i] = -1; }
         }
@@ -131,11 +270,12 @@ public class Histogram implements AutoCloseable{
         for(int j = 0; j <= MAX_RGB; j++){
             var ratio = ((float)(channelData[j] - minBinSize))/((float) (maxBinSize - minBinSize));
             for(int i = 0; i <= MAX_RGB; i++){
-                if(i <(MAX_RGB - (MAX_RGB * ratio))){ histogramImage.setPixel(i, j, 0); }
-                else { histogramImage.setPixel(i, j, MAX_RGB); }
+                if(i <(MAX_RGB - (MAX_RGB * ratio))){ histogramData[i * (MAX_RGB + 1) + j] = 0; }
+                else { histogramData[i * (MAX_RGB + 1) + j] = MAX_RGB; }
 
             }
         }
+        histogramImage.setChannel(histogramData, 0);
 
         var filename = "hist_" + Misc.getCurrentFormattedDateTime() + "_" + Misc.getRandomString(6) + ".pgm";
         histogramImage.save(filename);
@@ -147,13 +287,24 @@ public class Histogram implements AutoCloseable{
      */
     @Override
     public void close() {
-        for (var channelBin : data) {
-            for (var points : channelBin.values()) {
-                points.clear();
-            }
-            channelBin.clear();
+        region.getRegionImage().removeChangeObserver(changeObserver);
+        counts = null;
+        binIndex = null;
+        binOffsets = null;
+        binPixels = null;
+    }
+
+    /**
+     * This method is used to get the number of pixels of a channel that fall into a bin.
+     * @param channel The channel of the bin.
+     * @param intensity The intensity value of the bin.
+     * @return The number of pixels of the channel with the given intensity value.
+     */
+    public int getBinSize(@IntRange(from = 0, to = 2) int channel, int intensity) {
+        if(channel < 0 || channel >= counts.length){
+            throw new IllegalArgumentException("Invalid channel index: " + channel);
         }
-        data.clear();
+        return intensity < 0 || intensity >= counts[channel].length ? 0 : counts[channel][intensity];
     }
 
     /**
@@ -204,12 +355,8 @@ public class Histogram implements AutoCloseable{
             throw new IllegalColorspaceException(colorspace);
         }
 
-        var extension = Misc.getFileExtension(region.getSourceImage().getFileName());
-        var filename = Misc.getRandomString(10) + "." + extension;
-        Imgcodecs.imwrite(filename, cvRegion);
-        region.getRegionImage().deepCopy(new Image(filename));
+        region.getRegionImage().deepCopy(cvRegion);
         saveChannelHistogram(channel);
-        delete(filename);
 
         cvRegion.release();
         for(var ch: channels){
@@ -263,7 +410,7 @@ public class Histogram implements AutoCloseable{
 
         var minIntensity = -1;
         for (int i = 0; i <= maxChannelValue; i++) {
-            if (!data.get(channel).get(i).isEmpty()) {
+            if (counts[channel][i] > 0) {
                 minIntensity = i;
                 break;
             }
@@ -271,7 +418,7 @@ public class Histogram implements AutoCloseable{
 
         var maxIntensity = -1;
         for (int i = maxChannelValue; i >= 0; i--) {
-            if (!data.get(channel).get(i).isEmpty()) {
+            if (counts[channel][i] > 0) {
                 maxIntensity = i;
                 break;
             }
@@ -282,40 +429,23 @@ public class Histogram implements AutoCloseable{
         var stretchFactor = ((float) (maxStretch - minStretch)) / ((float) (newMaxIntensity - newMinIntensity));
 
 
-        Map<Integer, List<Point>> stretchedBin = new HashMap<>();
+        var lookupTable = new int[maxChannelValue + 1];
         for (int i = 0; i <= maxChannelValue; i++) {
-            stretchedBin.put(i, new ArrayList<>());
-        }
-        for (int i = 0; i <= maxChannelValue; i++) {
-
-            if (i >= 0 && i < newMinIntensity) {
-                for (Point point : data.get(channel).get(i)) {
-                    stretchedBin.get(newMinIntensity).add(point);
-                }
-            } else if (i >= newMinIntensity && i < newMaxIntensity) {
-                var j = (int) (((float) (i - newMinIntensity)) * stretchFactor + ((float) minStretch));
-                for (var point : data.get(channel).get(i)) {
-                    stretchedBin.get(j).add(point);
-                }
+            if (i < newMinIntensity) {
+                lookupTable[i] = newMinIntensity;
+            } else if (i < newMaxIntensity) {
+                lookupTable[i] = (int) (((float) (i - newMinIntensity)) * stretchFactor + ((float) minStretch));
             } else {
-                for (var point : data.get(channel).get(i)) {
-                    stretchedBin.get(newMaxIntensity).add(point);
-                }
+                lookupTable[i] = newMaxIntensity;
             }
-
         }
 
-        var image = new Image(region.getRegionImage());
-
-        for(int i = 0; i <= maxChannelValue; i++){
-            for(var point : stretchedBin.get(i)){
-                var x = point.x;
-                var y = point.y;
-                image.setPixel(x, y, channel, i);
-            }
+        var channelIndex = binIndex[channel];
+        var stretchedChannel = new int[channelIndex.length];
+        for (int i = 0; i < channelIndex.length; i++) {
+            stretchedChannel[i] = lookupTable[channelIndex[i]];
         }
-
-        region.getRegionImage().deepCopy(image);
+        region.getRegionImage().setChannel(stretchedChannel, channel);
 
 
         saveChannelHistogram(channel);
@@ -348,50 +478,40 @@ public class Histogram implements AutoCloseable{
             @IntRange(from = 0, to = MAX_RGB) int threshold,
             @IntRange(from = 0, to = 2) int channelIndex) throws Exception {
         saveChannelHistogram(channelIndex);
-        var cvRegion = region.getRegionImage().getOpenCvMat(channelIndex);
-        var darkLocation = new ArrayList<Point>();
-        for(int i = 0; i < region.getTotalX(); i++){
-            for(int j = 0; j < region.getTotalY(); j++){
-                var intensity = cvRegion.get(i, j)[0];
-                if(intensity < threshold){ darkLocation.add(new Point(i, j)); }
-            }
+        var channelData = region.getRegionImage().getChannel(channelIndex);
+        int [] darkPixels;
+        int darkCount;
+        if(colorspace.equals("rgb")){
+            //The pixel index is sorted by intensity, so the dark pixels are the prefix of the index
+            var offsets = getBinOffsets(channelIndex);
+            darkPixels = getBinPixels(channelIndex);
+            darkCount = offsets[Math.max(0, Math.min(threshold, offsets.length - 1))];
         }
-        var cvDarkRegion = new Mat(darkLocation.size(), 1, CvType.CV_8UC1);
-        for(int i = 0; i < darkLocation.size(); i++){
-            var x = darkLocation.get(i).x;
-            var y = darkLocation.get(i).y;
-            cvDarkRegion.put(i, 0, cvRegion.get(x, y)[0]);
+        else {
+            darkPixels = new int[channelData.length];
+            darkCount = 0;
+            for(int i = 0; i < channelData.length; i++){
+                if(channelData[i] < threshold){ darkPixels[darkCount++] = i; }
+            }
         }
-        Imgproc.equalizeHist(cvDarkRegion, cvDarkRegion);
 
-        for(int i = 0; i < darkLocation.size(); i++){
-            var x = darkLocation.get(i).x;
-            var y = darkLocation.get(i).y;
-            var newValue = cvDarkRegion.get(i, 0)[0];
-            cvRegion.put(x, y, newValue);
+        if(darkCount > 0){
+            var darkValues = new byte[darkCount];
+            for(int i = 0; i < darkCount; i++){
+                darkValues[i] = (byte) channelData[darkPixels[i]];
+            }
+            var cvDarkRegion = new Mat(darkCount, 1, CvType.CV_8UC1);
+            cvDarkRegion.put(0, 0, darkValues);
+            Imgproc.equalizeHist(cvDarkRegion, cvDarkRegion);
+            cvDarkRegion.get(0, 0, darkValues);
+            cvDarkRegion.release();
+
+            for(int i = 0; i < darkCount; i++){
+                channelData[darkPixels[i]] = darkValues[i] & MAX_RGB;
+            }
+            region.getRegionImage().setChannel(channelData, channelIndex);
         }
-
-        var image = region.getRegionImage().getOpenCvMat();
-        var imageChannels = new ArrayList<Mat>();
-        Core.split(image, imageChannels);
-        imageChannels.set(channelIndex, cvRegion);
-        Core.merge(imageChannels, image);
-
-        var extension = Misc.getFileExtension(region.getSourceImage().getFileName());
-        var filename = Misc.getRandomString(10) + "." + extension;
-        Imgcodecs.imwrite(filename, image);
-
-        region.getRegionImage().deepCopy(new Image(filename));
         saveChannelHistogram(channelIndex);
-
-        delete(filename);
-        image.release();
-        for(int i = 0; i < imageChannels.size(); i++){
-            imageChannels.get(i).release();
-        }
-        imageChannels.clear();
-        cvDarkRegion.release();
-        cvRegion.release();
     }
 
 }
@@ -0,0 +1,43 @@
+package org.CAP5400.Toolbox;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * This enum lists the interpolation methods used to sample an image at non-integer positions.
+ * <ul>
+ *     <li>{@link #NEAREST} - the value of the nearest pixel</li>
+ *     <li>{@link #BILINEAR} - linear interpolation between the 2x2 nearest pixels</li>
+ *     <li>{@link #BICUBIC} - cubic convolution (Keys, a = -0.5) over the 4x4 nearest pixels</li>
+ *     <li>{@link #LANCZOS} - windowed sinc with 3 lobes over the 6x6 nearest pixels</li>
+ *     <li>{@link #AREA} - average of the source pixels covered by the target pixel, for downscaling</li>
+ * </ul>
+ * <p><b>NOTE: </b> {@link #LANCZOS} and {@link #AREA} are only supported by the {@link Resampler}.</p>
+ * @author Reubin George
+ */
+public enum Interpolation {
+    NEAREST,
+    BILINEAR,
+    BICUBIC,
+    LANCZOS,
+    AREA;
+
+    /**
+     * This method returns the interpolation method with the given name, ignoring the case.
+     * @param name The name of the interpolation method, e.g. "bilinear".
+     * @return The interpolation method.
+     * @throws IllegalArgumentException If no interpolation method has the given name.
+     */
+    public static Interpolation fromString(String name) {
+        if(name == null || name.isBlank()) {
+            throw new IllegalArgumentException("The interpolation method must not be empty.");
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.US));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown interpolation method: " + name + ". Expected one of " +
+                    Arrays.toString(values()).toLowerCase(Locale.US));
+        }
+    }
+}
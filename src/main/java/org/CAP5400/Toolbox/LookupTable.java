@@ -0,0 +1,211 @@
+package org.CAP5400.Toolbox;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.Image.Image;
+import org.CAP5400.RegionOfInterest.ROI;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class represents a point operation compiled into a per-channel lookup table. A point operation maps every sample
+ * to a new value that only depends on the old value of the sample and its channel, e.g. adding a constant or
+ * thresholding. Instead of evaluating the operation for every pixel, it is evaluated once for every possible sample
+ * value, and the table is then applied to the image in a single pass. Consecutive point operations are fused into a
+ * single table with {@link #andThen(LookupTable)}, so a chain of operations costs one pass over the image.
+ * <br><br>
+ * <p><b>NOTE: </b> Instances are immutable. The result of every operation is capped between 0 and the maximum output
+ * value, exactly like {@link Image#setPixel(int, int, int, int)} caps the values written to an image.</p>
+ * @Author Reubin George
+ * @see PointOperations
+ * @see Image#applyLookupTable
+ */
+public final class LookupTable {
+
+    private final int [][] tables;
+    private final int outputMaxValue;
+
+    /**
+     * Private constructor for the LookupTable class.
+     * @param tables The lookup tables, one per channel.
+     * @param outputMaxValue The largest value that can be stored in the table.
+     */
+    private LookupTable(int [][] tables, int outputMaxValue) {
+        this.tables = tables;
+        this.outputMaxValue = outputMaxValue;
+    }
+
+    /**
+     * This method creates a lookup table that maps every sample to itself. The cap at the maximum output value is
+     * applied by the first operation that is composed with the table.
+     * @param channels The number of channels.
+     * @param inputMaxValue The largest sample value that can be looked up.
+     * @param outputMaxValue The largest value that can be stored in the table.
+     * @return The identity lookup table.
+     */
+    public static LookupTable identity(int channels, int inputMaxValue, int outputMaxValue) {
+        if(channels <= 0 || inputMaxValue < outputMaxValue || outputMaxValue <= 0) {
+            throw new IllegalArgumentException("Invalid lookup table: " + channels + " channels, input values up to " +
+                    inputMaxValue + ", output values up to " + outputMaxValue);
+        }
+        var tables = new int[channels][inputMaxValue + 1];
+        for(var table : tables) {
+            for(int v = 0; v < table.length; v++) {
+                table[v] = v;
+            }
+        }
+        return new LookupTable(tables, outputMaxValue);
+    }
+
+    /**
+     * This method creates a lookup table that maps every sample of the region image of a region of interest to itself.
+     * The tables of a region of interest always map region samples, so they can be fused with
+     * {@link #andThen(LookupTable)} even if the samples of a deeper source image are rescaled to the region image, see
+     * {@link ROI}. The rescaling is applied once, when the table is applied to the region.
+     * @param region The region of interest.
+     * @return The identity lookup table for the region of interest.
+     */
+    public static LookupTable identity(@NotNull ROI region) {
+        var regionMaxValue = region.getRegionImage().getMaxValue();
+        return identity(region.getNumChannels(), regionMaxValue, regionMaxValue);
+    }
+
+    /**
+     * This method composes the lookup table with an operation that is applied to every channel.
+     * @param operation The operation to be applied after this lookup table.
+     * @return The composed lookup table.
+     */
+    public LookupTable map(@NotNull IntUnaryOperator operation) {
+        var result = copyTables();
+        for(var table : result) {
+            for(int v = 0; v < table.length; v++) {
+                table[v] = limitValue(operation.applyAsInt(table[v]));
+            }
+        }
+        return new LookupTable(result, outputMaxValue);
+    }
+
+    /**
+     * This method composes the lookup table of a single channel with an operation.
+     * @param channel The channel to which the operation is applied.
+     * @param operation The operation to be applied after this lookup table.
+     * @return The composed lookup table.
+     */
+    public LookupTable map(int channel, @NotNull IntUnaryOperator operation) {
+        var result = copyTables();
+        var table = result[channel];
+        for(int v = 0; v < table.length; v++) {
+            table[v] = limitValue(operation.applyAsInt(table[v]));
+        }
+        return new LookupTable(result, outputMaxValue);
+    }
+
+    /**
+     * This method fuses this lookup table with the one that is applied after it. Applying the fused table is
+     * equivalent to applying this table and then the next table.
+     * @param next The lookup table to be applied after this lookup table.
+     * @return The fused lookup table.
+     */
+    public LookupTable andThen(@NotNull LookupTable next) {
+        if(next.tables.length != tables.length || next.tables[0].length < tables[0].length) {
+            throw new IllegalArgumentException("The lookup tables cannot be fused: the next table does not cover " +
+                    "the output of this table.");
+        }
+        var result = new int[tables.length][];
+        for(int k = 0; k < tables.length; k++) {
+            var table = tables[k];
+            var nextTable = next.tables[k];
+            result[k] = new int[table.length];
+            for(int v = 0; v < table.length; v++) {
+                result[k][v] = nextTable[table[v]];
+            }
+        }
+        return new LookupTable(result, Math.min(outputMaxValue, next.outputMaxValue));
+    }
+
+    /**
+     * This method looks up the value of a sample.
+     * @param channel The channel of the sample.
+     * @param value The value of the sample.
+     * @return The mapped value of the sample.
+     */
+    public int get(int channel, int value) {
+        return tables[channel][value];
+    }
+
+    /**
+     * Method to get the number of channels of the lookup table.
+     * @return The number of channels of the lookup table.
+     */
+    public int getNumChannels() {
+        return tables.length;
+    }
+
+    /**
+     * This method applies the lookup table to a region of interest. Every sample of the region image is set to its
+     * mapped value, in a single pass, so the changes already made to the region image are kept.
+     * @param region Region of interest on which the lookup table will be applied.
+     */
+    public void apply(@NotNull ROI region) {
+        // reading from a snapshot gives the region image a new buffer instead of a copy of the samples it overwrites
+        var regionImage = region.getRegionImage();
+        regionImage.applyLookupTable(tables, 0, 0, region.getTotalX(), region.getTotalY(),
+                regionImage.snapshot(), 0, 0);
+    }
+
+    /**
+     * This method applies the lookup table in place to the area of the source image that is covered by a region of
+     * interest. This is equivalent to {@link #apply(ROI)} followed by {@link ROI#applyModifications()}, without the
+     * intermediate region image.
+     * @param region Region of interest whose source image will be modified.
+     */
+    public void applyToSource(@NotNull ROI region) {
+        var source = region.getSourceImage();
+        var sourceTables = getSourceTables(region);
+        if(region.isDeep()) {
+            // the entries are region samples, they are rescaled back like ROI.applyModifications does
+            var sourceMaxValue = source.getMaxValue();
+            var regionMaxValue = region.getRegionImage().getMaxValue();
+            for(var table : sourceTables) {
+                for(int v = 0; v < table.length; v++) {
+                    var isUnchanged = table[v] == Image.rescale(v, sourceMaxValue, regionMaxValue);
+                    table[v] = isUnchanged ? v : Image.rescale(table[v], regionMaxValue, sourceMaxValue);
+                }
+            }
+        }
+        source.applyLookupTable(sourceTables, region.getStartX(), region.getStartY(), region.getTotalX(),
+                region.getTotalY(), source, region.getStartX(), region.getStartY());
+    }
+
+    /**
+     * This method composes the rescaling of the samples of a deeper source image to the region image with the lookup
+     * table, so every sample of the source image is looked up once.
+     * @param region The region of interest.
+     * @return The tables that map the samples of the source image to region samples.
+     */
+    private int [][] getSourceTables(ROI region) {
+        if(!region.isDeep()) {
+            return copyTables();
+        }
+        var sourceMaxValue = region.getSourceImage().getMaxValue();
+        var regionMaxValue = region.getRegionImage().getMaxValue();
+        var sourceTables = new int[tables.length][sourceMaxValue + 1];
+        for(int k = 0; k < tables.length; k++) {
+            for(int v = 0; v <= sourceMaxValue; v++) {
+                sourceTables[k][v] = tables[k][Image.rescale(v, sourceMaxValue, regionMaxValue)];
+            }
+        }
+        return sourceTables;
+    }
+
+    private int [][] copyTables() {
+        var copy = new int[tables.length][];
+        for(int k = 0; k < tables.length; k++) {
+            copy[k] = tables[k].clone();
+        }
+        return copy;
+    }
+
+    private int limitValue(int value) {
+        return Math.max(0, Math.min(value, outputMaxValue));
+    }
+}
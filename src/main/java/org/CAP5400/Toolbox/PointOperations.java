@@ -0,0 +1,81 @@
+package org.CAP5400.Toolbox;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.RegionOfInterest.ROI;
+import org.checkerframework.common.value.qual.IntRange;
+
+import static org.CAP5400.Image.Image.MAX_RGB;
+
+/**
+ * This class compiles the point operations of the {@link Toolbox} into lookup tables. Every method has the same name,
+ * parameters and checks as the corresponding {@link Toolbox} method, but instead of modifying the region of interest it
+ * returns the lookup table of the operation. The tables of consecutive operations on the same region of interest can
+ * be fused with {@link LookupTable#andThen(LookupTable)} and applied in a single pass.
+ * @see LookupTable
+ * @see Toolbox
+ * @author Reubin George
+ */
+public class PointOperations {
+
+    /**
+     * This method compiles {@link Toolbox#addGrey(ROI, int)} into a lookup table.
+     * @param region Region of interest on which this filter will be applied.
+     * @param value the value by which the pixel intensity will be increased.
+     * @return The lookup table of the operation.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static LookupTable addGrey(@NotNull ROI region, int value) throws Exception {
+        if(region.getSourceImage().isColor()){
+            throw new IllegalArgumentException("This filter only works on greyscale images.");
+        }
+        return LookupTable.identity(region).map(intensity -> intensity + value);
+    }
+
+    /**
+     * This method compiles {@link Toolbox#addBrightness(ROI, int)} into a lookup table.
+     * @param region Region of interest on which this filter will be applied.
+     * @param value the value by which the pixel intensity will be increased. The value can be in range (-50 to 50).
+     * Other values leave the region unchanged.
+     * @return The lookup table of the operation.
+     */
+    public static LookupTable addBrightness(@NotNull ROI region, @IntRange(from = -50, to = 50) int value) {
+        var identity = LookupTable.identity(region);
+        if(value > -50 && value < 50) {
+            return identity.map(intensity -> intensity + value);
+        }
+        return identity.map(intensity -> intensity);
+    }
+
+    /**
+     * This method compiles {@link Toolbox#decreaseBrightness(ROI, int, int)} into a lookup table.
+     * @param region Region of interest on which this filter will be applied.
+     * @param threshold The threshold intensity value. Intensities below this threshold are decreased.
+     * @param value The value by which to decrease the brightness of pixels below the threshold.
+     * @return The lookup table of the operation.
+     */
+    public static LookupTable decreaseBrightness(
+            @NotNull ROI region,
+            @IntRange(from = 0, to = MAX_RGB) int threshold,
+            @IntRange(from = 0, to = MAX_RGB) int value) {
+        if(threshold < 0 || threshold > MAX_RGB){
+            throw new IllegalArgumentException("Threshold needs to be capped between 0 to 255");
+        }
+        return LookupTable.identity(region).map(intensity -> intensity < threshold ? intensity - value : intensity);
+    }
+
+    /**
+     * This method compiles {@link Toolbox#binarize(ROI, int)} into a lookup table.
+     * @param region Region of interest on which this filter will be applied.
+     * @param threshold The intensity threshold for binarization (0 to 255).
+     * @return The lookup table of the operation.
+     */
+    public static LookupTable binarize(@NotNull ROI region, @IntRange(from = 0, to = MAX_RGB) int threshold) {
+        if(region.getSourceImage().isColor()){
+            throw new IllegalArgumentException("This filter only works on greyscale images.");
+        }
+        if(threshold < 0 || threshold > MAX_RGB){
+            throw new IllegalArgumentException("Threshold needs to be capped between 0 to 255");
+        }
+        return LookupTable.identity(region).map(intensity -> intensity < threshold ? 0 : MAX_RGB);
+    }
+}
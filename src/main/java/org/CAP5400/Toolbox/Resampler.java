@@ -0,0 +1,254 @@
+package org.CAP5400.Toolbox;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageChange;
+import org.CAP5400.Misc.TileExecutor;
+
+/**
+ * This class contains the resampling engine used to scale images and regions of interest. The resampling is separable:
+ * the rows are resampled horizontally into an intermediate buffer, which is then resampled vertically into the target.
+ * The kernel weights of every output column and row are computed once per pass and stored as fixed-point integers with
+ * {@value #PRECISION_BITS} fractional bits, so the inner loops only use integer multiply-adds. The intermediate buffer
+ * keeps {@value #INTERMEDIATE_BITS} fractional bits, so the result is rounded once.
+ * <br><br>
+ * <p>When downscaling, the kernels are stretched by the scaling factor so every source pixel contributes to the result
+ * (antialiasing). {@link Interpolation#AREA} averages the source pixels covered by every target pixel and is the
+ * recommended method for thumbnails.</p>
+ * <p><b>NOTE: </b> The pixel centers of the source and target images are aligned, i.e. target pixel {@code o} is
+ * centered at source position {@code (o + 0.5) * scale - 0.5}.</p>
+ * @author Reubin George
+ * @see Interpolation
+ */
+public class Resampler {
+    private static final int PRECISION_BITS = 14;
+    private static final int ONE = 1 << PRECISION_BITS;
+    private static final int INTERMEDIATE_BITS = 8; // fractional bits kept between the passes, to round only once
+
+    /**
+     * This class holds the fixed-point kernel weights of a one dimensional pass. The output index {@code o} is computed
+     * from the {@code counts[o]} source samples starting at {@code starts[o]}, with the weights stored at
+     * {@code weights[o * taps]}.
+     */
+    private static final class Coefficients {
+        private final int [] starts, counts, weights;
+        private final int taps;
+
+        private Coefficients(int outputCount, int taps) {
+            this.starts = new int[outputCount];
+            this.counts = new int[outputCount];
+            this.weights = new int[outputCount * taps];
+            this.taps = taps;
+        }
+    }
+
+    /**
+     * This method resizes an image to the given dimensions.
+     * @param source The image to be resized.
+     * @param rows The number of rows of the resized image.
+     * @param columns The number of columns of the resized image.
+     * @param interpolation The interpolation method.
+     * @return The resized image, with the same depth as the source image.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static Image resize(@NotNull Image source, int rows, int columns,
+                               @NotNull Interpolation interpolation) throws Exception {
+        var target = new Image(rows, columns, source.getNumChannels(), source.getMaxValue());
+        resample(source, rows, columns, target, interpolation);
+        return target;
+    }
+
+    /**
+     * This method scales a source image to the given dimensions and writes the top left part of the scaled image that
+     * fits in the target image. Only that part is computed. Target pixels outside the scaled image are not modified.
+     * @param source The image to be scaled.
+     * @param scaledRows The number of rows of the scaled image.
+     * @param scaledColumns The number of columns of the scaled image.
+     * @param target The image receiving the result. It must not be the source image.
+     * @param interpolation The interpolation method.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void resample(@NotNull Image source, int scaledRows, int scaledColumns, @NotNull Image target,
+                                @NotNull Interpolation interpolation) throws Exception {
+        if(scaledRows <= 0 || scaledColumns <= 0){
+            throw new IllegalArgumentException("The scaled image must have at least one row and one column.");
+        }
+        if(source == target){
+            throw new IllegalArgumentException("The source and target images must be different images.");
+        }
+        if(source.getNumChannels() != target.getNumChannels()){
+            throw new IllegalArgumentException("The source and target images must have the same number of channels.");
+        }
+
+        var numChannels = source.getNumChannels();
+        var outputRows = Math.min(scaledRows, target.getRows());
+        var outputColumns = Math.min(scaledColumns, target.getColumns());
+        var horizontal = computeCoefficients(source.getColumns(), scaledColumns, outputColumns, interpolation);
+        var vertical = computeCoefficients(source.getRows(), scaledRows, outputRows, interpolation);
+
+        //Only the source rows that contribute to the computed output rows are resampled horizontally
+        var firstRow = vertical.starts[0];
+        var lastRow = firstRow;
+        for(int o = 0; o < outputRows; o++){
+            lastRow = Math.max(lastRow, vertical.starts[o] + vertical.counts[o]);
+        }
+        var intermediateStride = outputColumns * numChannels;
+        var intermediate = new int[(lastRow - firstRow) * intermediateStride];
+        var sourceBuffer = source.getReadOnlyBuffer();
+        var intermediateShift = PRECISION_BITS - INTERMEDIATE_BITS;
+        var intermediateMaxValue = source.getMaxValue() << INTERMEDIATE_BITS;
+
+        TileExecutor.forEachRowBand(lastRow - firstRow, (long) intermediateStride * horizontal.taps,
+                (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++){
+                var row = firstRow + i;
+                var offset = i * intermediateStride;
+                for(int o = 0; o < outputColumns; o++){
+                    var start = horizontal.starts[o];
+                    var count = horizontal.counts[o];
+                    var weightOffset = o * horizontal.taps;
+                    for(int k = 0; k < numChannels; k++){
+                        long sum = 1L << (intermediateShift - 1);
+                        for(int t = 0; t < count; t++){
+                            sum += (long) horizontal.weights[weightOffset + t] *
+                                    sourceBuffer.get(source.getIndex(row, start + t, k));
+                        }
+                        intermediate[offset + o * numChannels + k] = clamp(sum >> intermediateShift,
+                                intermediateMaxValue);
+                    }
+                }
+            }
+        });
+
+        var targetBuffer = target.getBuffer();
+        var targetMaxValue = target.getMaxValue();
+        target.forEachRowBand(outputRows, (long) intermediateStride * vertical.taps, (startRow, endRow) -> {
+            for(int o = startRow; o < endRow; o++){
+                var start = vertical.starts[o] - firstRow;
+                var count = vertical.counts[o];
+                var weightOffset = o * vertical.taps;
+                for(int j = 0; j < outputColumns; j++){
+                    for(int k = 0; k < numChannels; k++){
+                        var index = start * intermediateStride + j * numChannels + k;
+                        long sum = 1L << (PRECISION_BITS + INTERMEDIATE_BITS - 1);
+                        for(int t = 0; t < count; t++, index += intermediateStride){
+                            sum += (long) vertical.weights[weightOffset + t] * intermediate[index];
+                        }
+                        targetBuffer.set(target.getIndex(o, j, k), clamp(sum >> (PRECISION_BITS + INTERMEDIATE_BITS),
+                                targetMaxValue));
+                    }
+                }
+            }
+        });
+        target.reportChange(new ImageChange(0, 0, outputRows, outputColumns, (1L << numChannels) - 1));
+    }
+
+    /**
+     * This method computes the fixed-point kernel weights of a one dimensional pass.
+     * @param inputSize The number of source samples.
+     * @param outputSize The number of samples of the scaled image.
+     * @param outputCount The number of output samples to compute, starting from 0.
+     * @param interpolation The interpolation method.
+     * @return The kernel weights of the pass.
+     */
+    private static Coefficients computeCoefficients(int inputSize, int outputSize, int outputCount,
+                                                    Interpolation interpolation) {
+        var scale = (double) inputSize / outputSize;
+        if(interpolation == Interpolation.NEAREST){
+            var coefficients = new Coefficients(outputCount, 1);
+            for(int o = 0; o < outputCount; o++){
+                coefficients.starts[o] = Math.min((int) ((o + 0.5) * scale), inputSize - 1);
+                coefficients.counts[o] = 1;
+                coefficients.weights[o] = ONE;
+            }
+            return coefficients;
+        }
+
+        var support = switch (interpolation) {
+            case BILINEAR -> 1.0;
+            case BICUBIC -> 2.0;
+            case LANCZOS -> 3.0;
+            case AREA -> 0.5;
+            default -> throw new IllegalArgumentException("Unknown interpolation method: " + interpolation);
+        };
+        var filterScale = Math.max(scale, 1.0);
+        var radius = support * filterScale;
+        var taps = (int) Math.ceil(radius) * 2 + 1;
+        var coefficients = new Coefficients(outputCount, taps);
+        var kernel = new double[taps];
+
+        for(int o = 0; o < outputCount; o++){
+            var center = (o + 0.5) * scale;
+            var start = Math.max(0, (int) (center - radius + 0.5));
+            var end = Math.min(inputSize, (int) (center + radius + 0.5));
+            var count = Math.min(end - start, taps);
+
+            var total = 0.0;
+            for(int t = 0; t < count; t++){
+                kernel[t] = evaluate(interpolation, (start + t - center + 0.5) / filterScale);
+                total += kernel[t];
+            }
+
+            var weightOffset = o * taps;
+            if(count <= 0 || total == 0){
+                //No source sample falls in the kernel, fall back to the nearest sample
+                coefficients.starts[o] = Math.min((int) center, inputSize - 1);
+                coefficients.counts[o] = 1;
+                coefficients.weights[weightOffset] = ONE;
+                continue;
+            }
+
+            //Normalise the weights and convert them to fixed-point; the rounding error is given to the largest weight
+            var sum = 0;
+            var largest = 0;
+            for(int t = 0; t < count; t++){
+                var weight = (int) Math.round(kernel[t] / total * ONE);
+                coefficients.weights[weightOffset + t] = weight;
+                sum += weight;
+                if(weight > coefficients.weights[weightOffset + largest]){
+                    largest = t;
+                }
+            }
+            coefficients.weights[weightOffset + largest] += ONE - sum;
+            coefficients.starts[o] = start;
+            coefficients.counts[o] = count;
+        }
+        return coefficients;
+    }
+
+    /**
+     * This method evaluates the kernel of an interpolation method.
+     * @param interpolation The interpolation method.
+     * @param x The distance from the sampled position, in source pixels.
+     * @return The weight of the source pixel.
+     */
+    private static double evaluate(Interpolation interpolation, double x) {
+        return switch (interpolation) {
+            case BILINEAR -> Math.max(0, 1 - Math.abs(x));
+            case BICUBIC -> Rotation.cubicWeight(x);
+            case LANCZOS -> lanczosWeight(x);
+            case AREA -> (x >= -0.5 && x < 0.5) ? 1 : 0;
+            default -> throw new IllegalArgumentException("Unknown interpolation method: " + interpolation);
+        };
+    }
+
+    /**
+     * This method evaluates the Lanczos kernel with 3 lobes.
+     * @param x The distance from the sampled position.
+     * @return The weight of the pixel at the given distance.
+     */
+    private static double lanczosWeight(double x) {
+        if(x == 0){
+            return 1;
+        }
+        if(x <= -3 || x >= 3){
+            return 0;
+        }
+        var piX = Math.PI * x;
+        return 3 * Math.sin(piX) * Math.sin(piX / 3) / (piX * piX);
+    }
+
+    private static int clamp(long value, int maxValue) {
+        return (int) Math.max(0, Math.min(value, maxValue));
+    }
+}
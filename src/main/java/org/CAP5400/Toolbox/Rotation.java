@@ -0,0 +1,257 @@
+package org.CAP5400.Toolbox;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageChange;
+import org.CAP5400.Image.PixelBuffer;
+
+/**
+ * This class contains the rotation engine used by the {@link Toolbox}. Rotations by a multiple of 90 degrees are
+ * performed in place in a single pass: every sample is moved exactly once along the cycle of the four positions it
+ * visits during a rotation, and the cycles are traversed in square blocks so the four blocks involved stay in the cache.
+ * Rotations by any other angle are performed by inverse mapping with nearest, bilinear or bicubic interpolation.
+ * <br><br>
+ * <p><b>NOTE: </b> All rotations are clockwise around the center of the image and keep the dimensions of the image.
+ * The observers of the rotated image are notified once.</p>
+ * @author Reubin George
+ * @see Interpolation
+ */
+public class Rotation {
+    private static final int BLOCK_SIZE = 32; // 4 blocks of 32x32 pixels fit in the L1 cache
+
+    /**
+     * This method rotates an image clockwise in place by a multiple of 90 degrees.
+     * @param image The image to be rotated. Rotations by 90 and 270 degrees require a square image.
+     * @param quarterTurns The number of clockwise quarter turns. Negative values rotate counterclockwise.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void rotateQuarterTurns(@NotNull Image image, int quarterTurns) throws Exception {
+        var turns = Math.floorMod(quarterTurns, 4);
+        if(turns == 0){
+            return;
+        }
+        if(turns == 2){
+            rotateHalfTurn(image);
+        }
+        else {
+            if(image.getRows() != image.getColumns()){
+                throw new IllegalArgumentException("ROI must be square");
+            }
+            rotateQuarterTurn(image, turns == 1);
+        }
+        image.reportChange(ImageChange.ofImage(image));
+    }
+
+    /**
+     * This method rotates a square image in place by 90 degrees. The image is divided in concentric layers, and every
+     * sample of the top side of a layer starts a cycle of four samples that are moved in one step.
+     * @param image The image to be rotated.
+     * @param clockwise True to rotate clockwise, false to rotate counterclockwise.
+     */
+    private static void rotateQuarterTurn(Image image, boolean clockwise) {
+        var n = image.getRows();
+        var numChannels = image.getNumChannels();
+        var buffer = image.getBuffer();
+        image.forEachRowBand(n / 2, (long) n * numChannels * 2, (startLayer, endLayer) -> {
+            for(int blockRow = startLayer; blockRow < endLayer; blockRow += BLOCK_SIZE){
+                var blockRowEnd = Math.min(blockRow + BLOCK_SIZE, endLayer);
+                for(int blockColumn = blockRow; blockColumn < n - 1 - blockRow; blockColumn += BLOCK_SIZE){
+                    for(int i = blockRow; i < blockRowEnd; i++){
+                        var columnEnd = Math.min(n - 1 - i, blockColumn + BLOCK_SIZE);
+                        for(int j = Math.max(i, blockColumn); j < columnEnd; j++){
+                            for(int k = 0; k < numChannels; k++){
+                                var top = image.getIndex(i, j, k);
+                                var right = image.getIndex(j, n - 1 - i, k);
+                                var bottom = image.getIndex(n - 1 - i, n - 1 - j, k);
+                                var left = image.getIndex(n - 1 - j, i, k);
+                                var value = buffer.get(top);
+                                if(clockwise){
+                                    buffer.set(top, buffer.get(left));
+                                    buffer.set(left, buffer.get(bottom));
+                                    buffer.set(bottom, buffer.get(right));
+                                    buffer.set(right, value);
+                                }
+                                else {
+                                    buffer.set(top, buffer.get(right));
+                                    buffer.set(right, buffer.get(bottom));
+                                    buffer.set(bottom, buffer.get(left));
+                                    buffer.set(left, value);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * This method rotates an image in place by 180 degrees by swapping every sample with its point reflection.
+     * @param image The image to be rotated. The image does not need to be square.
+     */
+    private static void rotateHalfTurn(Image image) {
+        var rows = image.getRows();
+        var columns = image.getColumns();
+        var numChannels = image.getNumChannels();
+        var buffer = image.getBuffer();
+        image.forEachRowBand(rows / 2, (long) columns * numChannels * 2, (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++){
+                swapRows(image, buffer, i, 0, columns);
+            }
+        });
+        if(rows % 2 == 1){
+            swapRows(image, buffer, rows / 2, 0, columns / 2);
+        }
+    }
+
+    /**
+     * This method swaps the pixels of a row with the pixels of the point reflected row, in reverse order.
+     * @param image The image to be rotated.
+     * @param buffer The pixel buffer of the image.
+     * @param row The row to be swapped.
+     * @param startColumn The first column to be swapped.
+     * @param endColumn The column after the last column to be swapped.
+     */
+    private static void swapRows(Image image, PixelBuffer buffer, int row, int startColumn, int endColumn) {
+        var rows = image.getRows();
+        var columns = image.getColumns();
+        for(int j = startColumn; j < endColumn; j++){
+            for(int k = 0; k < image.getNumChannels(); k++){
+                var index = image.getIndex(row, j, k);
+                var mirrorIndex = image.getIndex(rows - 1 - row, columns - 1 - j, k);
+                var value = buffer.get(index);
+                buffer.set(index, buffer.get(mirrorIndex));
+                buffer.set(mirrorIndex, value);
+            }
+        }
+    }
+
+    /**
+     * This method rotates an image clockwise by an arbitrary angle. Every pixel of the target image is mapped back onto
+     * the source image and sampled with the given interpolation method. Pixels that are mapped outside the source image
+     * are set to 0.
+     * @param source The image to be rotated.
+     * @param target The image receiving the result. It must have the same dimensions as the source image and must not
+     *               be the source image.
+     * @param degrees The clockwise rotation angle in degrees.
+     * @param interpolation The interpolation method: nearest, bilinear or bicubic.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void rotate(@NotNull Image source, @NotNull Image target, double degrees,
+                              @NotNull Interpolation interpolation) throws Exception {
+        if(source == target){
+            throw new IllegalArgumentException("The source and target images must be different images.");
+        }
+        if(interpolation == Interpolation.LANCZOS || interpolation == Interpolation.AREA){
+            throw new IllegalArgumentException("Interpolation method " + interpolation +
+                    " is not supported for rotations.");
+        }
+        var rows = source.getRows();
+        var columns = source.getColumns();
+        var numChannels = source.getNumChannels();
+        if(target.getRows() != rows || target.getColumns() != columns || target.getNumChannels() != numChannels){
+            throw new IllegalArgumentException("The source and target images must have the same dimensions.");
+        }
+
+        var radians = Math.toRadians(degrees);
+        var cos = Math.cos(radians);
+        var sin = Math.sin(radians);
+        var centerRow = (rows - 1) / 2.0;
+        var centerColumn = (columns - 1) / 2.0;
+        var targetBuffer = target.getBuffer();
+        var maxValue = target.getMaxValue();
+
+        target.forEachRowBand(rows, (long) columns * numChannels, (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++){
+                var dy = i - centerRow;
+                for(int j = 0; j < columns; j++){
+                    var dx = j - centerColumn;
+                    var sourceRow = centerRow - dx * sin + dy * cos;
+                    var sourceColumn = centerColumn + dx * cos + dy * sin;
+                    for(int k = 0; k < numChannels; k++){
+                        var value = sample(source, sourceRow, sourceColumn, k, interpolation);
+                        targetBuffer.set(target.getIndex(i, j, k),
+                                (int) Math.max(0, Math.min(maxValue, Math.round(value))));
+                    }
+                }
+            }
+        });
+        target.reportChange(ImageChange.ofImage(target));
+    }
+
+    /**
+     * This method samples a channel of an image at a non-integer position. Positions outside the pixel area of the
+     * image are sampled as 0; neighbours outside the image are replaced by the nearest edge pixel.
+     * @param image The image to be sampled.
+     * @param row The row of the position.
+     * @param column The column of the position.
+     * @param channel The channel to be sampled.
+     * @param interpolation The interpolation method.
+     * @return The interpolated value.
+     */
+    static double sample(Image image, double row, double column, int channel, Interpolation interpolation) {
+        var rows = image.getRows();
+        var columns = image.getColumns();
+        if(row < -0.5 || row > rows - 0.5 || column < -0.5 || column > columns - 0.5){
+            return 0;
+        }
+        var buffer = image.getReadOnlyBuffer();
+        switch (interpolation) {
+            case LANCZOS, AREA -> throw new IllegalArgumentException("Interpolation method " + interpolation +
+                    " is not supported for rotations.");
+            case NEAREST -> {
+                var i = clamp((int) Math.floor(row + 0.5), rows);
+                var j = clamp((int) Math.floor(column + 0.5), columns);
+                return buffer.get(image.getIndex(i, j, channel));
+            }
+            case BILINEAR -> {
+                var i = (int) Math.floor(row);
+                var j = (int) Math.floor(column);
+                var fy = row - i;
+                var fx = column - j;
+                var topLeft = buffer.get(image.getIndex(clamp(i, rows), clamp(j, columns), channel));
+                var topRight = buffer.get(image.getIndex(clamp(i, rows), clamp(j + 1, columns), channel));
+                var bottomLeft = buffer.get(image.getIndex(clamp(i + 1, rows), clamp(j, columns), channel));
+                var bottomRight = buffer.get(image.getIndex(clamp(i + 1, rows), clamp(j + 1, columns), channel));
+                return (topLeft * (1 - fx) + topRight * fx) * (1 - fy) + (bottomLeft * (1 - fx) + bottomRight * fx) * fy;
+            }
+            case BICUBIC -> {
+                var i = (int) Math.floor(row);
+                var j = (int) Math.floor(column);
+                var fy = row - i;
+                var fx = column - j;
+                var value = 0.0;
+                for(int m = -1; m <= 2; m++){
+                    var rowWeight = cubicWeight(m - fy);
+                    var rowIndex = clamp(i + m, rows);
+                    for(int n = -1; n <= 2; n++){
+                        value += rowWeight * cubicWeight(n - fx) *
+                                buffer.get(image.getIndex(rowIndex, clamp(j + n, columns), channel));
+                    }
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown interpolation method: " + interpolation);
+    }
+
+    /**
+     * This method evaluates the cubic convolution kernel of Keys with a = -0.5.
+     * @param distance The distance from the sampled position.
+     * @return The weight of the pixel at the given distance.
+     */
+    static double cubicWeight(double distance) {
+        var x = Math.abs(distance);
+        if(x <= 1){
+            return (1.5 * x - 2.5) * x * x + 1;
+        }
+        if(x < 2){
+            return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+        }
+        return 0;
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(index, size - 1));
+    }
+}
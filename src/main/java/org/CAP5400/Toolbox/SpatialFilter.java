@@ -0,0 +1,396 @@
+package org.CAP5400.Toolbox;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageChange;
+import org.CAP5400.Misc.TileExecutor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * This class contains the spatial filtering engine, a fast alternative to the {@link Fourier} filters for small
+ * kernels. The filters work on a float copy of every channel:
+ * <ul>
+ *     <li>Separable filters (e.g. Gaussian blurs) are applied as a horizontal and a vertical 1D pass, so a kernel of
+ *     radius {@code r} costs {@code 2 * (2r + 1)} multiply-adds per pixel instead of {@code (2r + 1)^2}.</li>
+ *     <li>Box filters are computed from an integral image, so their cost does not depend on the radius.</li>
+ * </ul>
+ * Pixels outside the image are read according to a {@link BorderMode}. The rows of every pass are processed in
+ * parallel bands, see {@link TileExecutor}.
+ * <br><br>
+ * <p>A Gaussian mask with cutoff {@code D0} on a spectrum of {@code N} samples is the transform of a Gaussian kernel
+ * with {@code sigma = N / (2 pi D0)}, applied with {@link BorderMode#WRAP} like the circular convolution of the DFT.
+ * The Gaussian low-pass and high-pass filters of {@link Fourier} are therefore performed in the spatial domain when the
+ * kernel is small enough to be cheaper than the transforms, see {@link #prefersSpatial(int, int, double, double)}.</p>
+ * <p><b>NOTE: </b> The ideal filters are not converted: their kernels are not compact and would need as many taps as the
+ * region has pixels.</p>
+ * @author Reubin George
+ * @see Fourier
+ */
+public final class SpatialFilter {
+    public static final double MIN_EQUIVALENT_SIGMA = 1.0; // narrower Gaussian masks do not vanish at the highest frequency
+    private static final double TRUNCATION = 4.0; // Gaussian kernels are truncated at 4 sigma
+    private static final double SPATIAL_COST_FACTOR = 4.0; // taps per pixel that cost as much as one log2 of a DFT
+
+    private static volatile boolean automatic = true;
+
+    /**
+     * This enum lists how the pixels outside the image are read.
+     * <ul>
+     *     <li>{@link #ZERO} - the pixels are 0</li>
+     *     <li>{@link #REPLICATE} - the nearest edge pixel is repeated</li>
+     *     <li>{@link #REFLECT} - the image is mirrored around the edge pixel, which is not repeated</li>
+     *     <li>{@link #WRAP} - the image is repeated periodically, like in the DFT</li>
+     * </ul>
+     */
+    public enum BorderMode {
+        ZERO,
+        REPLICATE,
+        REFLECT,
+        WRAP;
+
+        /**
+         * This method returns the border mode with the given name, ignoring the case.
+         * @param name The name of the border mode, e.g. "reflect".
+         * @return The border mode.
+         * @throws IllegalArgumentException If no border mode has the given name.
+         */
+        public static BorderMode fromString(String name) {
+            if(name == null || name.isBlank()) {
+                throw new IllegalArgumentException("The border mode must not be empty.");
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.US));
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown border mode: " + name + ". Expected one of " +
+                        Arrays.toString(values()).toLowerCase(Locale.US));
+            }
+        }
+
+        /**
+         * This method maps a position along a row or a column to the pixel that is read at that position.
+         * @param index The position, which can be outside the image.
+         * @param size The number of pixels along the row or column.
+         * @return The index of the pixel, or -1 if the position reads 0.
+         */
+        int map(int index, int size) {
+            if(index >= 0 && index < size) {
+                return index;
+            }
+            return switch (this) {
+                case ZERO -> -1;
+                case REPLICATE -> Math.max(0, Math.min(index, size - 1));
+                case REFLECT -> {
+                    if(size == 1) {
+                        yield 0;
+                    }
+                    var period = 2 * (size - 1);
+                    var position = Math.floorMod(index, period);
+                    yield position < size ? position : period - position;
+                }
+                case WRAP -> Math.floorMod(index, size);
+            };
+        }
+    }
+
+    private SpatialFilter() { }
+
+    /**
+     * Method to check whether the Gaussian filters of {@link Fourier} are performed in the spatial domain when it is
+     * cheaper.
+     * @return True if the execution domain is selected automatically.
+     */
+    public static boolean isAutomatic() {
+        return automatic;
+    }
+
+    /**
+     * Method to enable or disable the automatic selection of the spatial domain.
+     * @param automatic True to perform the Gaussian filters of {@link Fourier} in the spatial domain when it is
+     *                  cheaper, false to always use the frequency domain.
+     */
+    public static void setAutomatic(boolean automatic) {
+        SpatialFilter.automatic = automatic;
+    }
+
+    /**
+     * This method decides whether a separable Gaussian filter is cheaper than filtering in the frequency domain. The
+     * transforms cost in the order of {@code log2(rows * columns)} operations per pixel, while the kernels cost one
+     * multiply-add per tap and pixel. Kernels narrower than {@value #MIN_EQUIVALENT_SIGMA} pixel are never converted,
+     * since their masks do not correspond to a sampled Gaussian kernel.
+     * @param rows The number of rows of the spectrum.
+     * @param columns The number of columns of the spectrum.
+     * @param rowSigma The standard deviation of the kernel along the rows (vertically).
+     * @param columnSigma The standard deviation of the kernel along the columns (horizontally).
+     * @return True if the filter should be performed in the spatial domain.
+     */
+    public static boolean prefersSpatial(int rows, int columns, double rowSigma, double columnSigma) {
+        if(!(rowSigma >= MIN_EQUIVALENT_SIGMA) || !(columnSigma >= MIN_EQUIVALENT_SIGMA) ||
+                Double.isInfinite(rowSigma) || Double.isInfinite(columnSigma)) {
+            return false;
+        }
+        var taps = 2 * Math.ceil(TRUNCATION * rowSigma) + 2 * Math.ceil(TRUNCATION * columnSigma) + 2;
+        return taps <= SPATIAL_COST_FACTOR * Math.log((double) rows * columns) / Math.log(2);
+    }
+
+    /**
+     * This method computes a normalized Gaussian kernel, truncated at {@value #TRUNCATION} standard deviations.
+     * @param sigma The standard deviation of the kernel, in pixels.
+     * @return The weights of the kernel, from {@code -radius} to {@code radius}.
+     */
+    public static float [] gaussianKernel(double sigma) {
+        if(!(sigma > 0) || Double.isInfinite(sigma)) {
+            throw new IllegalArgumentException("The standard deviation must be positive, but was " + sigma);
+        }
+        var radius = (int) Math.ceil(TRUNCATION * sigma);
+        var weights = new double[2 * radius + 1];
+        var total = 0.0;
+        for(int t = -radius; t <= radius; t++) {
+            weights[t + radius] = Math.exp(-(double) t * t / (2 * sigma * sigma));
+            total += weights[t + radius];
+        }
+        var kernel = new float[weights.length];
+        for(int t = 0; t < kernel.length; t++) {
+            kernel[t] = (float) (weights[t] / total);
+        }
+        return kernel;
+    }
+
+    /**
+     * This method blurs every channel of an image with a box filter, i.e. the average of the {@code (2r + 1)^2}
+     * pixels around every pixel.
+     * @param image The image to be blurred.
+     * @param radius The radius of the box. 0 keeps the image.
+     * @param border The border mode.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void boxBlur(@NotNull Image image, int radius, @NotNull BorderMode border) throws Exception {
+        if(radius < 0) {
+            throw new IllegalArgumentException("The radius must not be negative, but was " + radius);
+        }
+        for(int k = 0; k < image.getNumChannels(); k++) {
+            var plane = readChannel(image, k);
+            writeChannel(image, k, boxFilter(plane, image.getRows(), image.getColumns(), radius, border));
+        }
+        image.reportChange(ImageChange.ofImage(image));
+    }
+
+    /**
+     * This method blurs every channel of an image with a Gaussian kernel.
+     * @param image The image to be blurred.
+     * @param sigma The standard deviation of the kernel, in pixels.
+     * @param border The border mode.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void gaussianBlur(@NotNull Image image, double sigma, @NotNull BorderMode border) throws Exception {
+        var kernel = gaussianKernel(sigma);
+        for(int k = 0; k < image.getNumChannels(); k++) {
+            var plane = readChannel(image, k);
+            writeChannel(image, k, convolveSeparable(plane, image.getRows(), image.getColumns(), kernel, kernel,
+                    border));
+        }
+        image.reportChange(ImageChange.ofImage(image));
+    }
+
+    /**
+     * This method sharpens every channel of an image by unsharp masking: the difference between the image and its
+     * Gaussian blur (the high frequencies) is amplified and added to the image, i.e.
+     * {@code image + amount * (image - blur(image))}. This is the spatial counterpart of
+     * {@link Fourier#sharpenEdges(int, double)} with a smooth instead of an ideal low-pass filter; the results are
+     * clamped instead of normalized.
+     * @param image The image to be sharpened.
+     * @param sigma The standard deviation of the blur, in pixels.
+     * @param amount The sharpening factor.
+     * @param border The border mode.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void unsharpMask(@NotNull Image image, double sigma, double amount,
+                                   @NotNull BorderMode border) throws Exception {
+        var kernel = gaussianKernel(sigma);
+        for(int k = 0; k < image.getNumChannels(); k++) {
+            var plane = readChannel(image, k);
+            var blurred = convolveSeparable(plane, image.getRows(), image.getColumns(), kernel, kernel, border);
+            for(int i = 0; i < plane.length; i++) {
+                blurred[i] = (float) (plane[i] + amount * (plane[i] - blurred[i]));
+            }
+            writeChannel(image, k, blurred);
+        }
+        image.reportChange(ImageChange.ofImage(image));
+    }
+
+    /**
+     * This method convolves a plane with a separable kernel: the rows are convolved with the horizontal kernel into
+     * an intermediate plane, whose columns are then convolved with the vertical kernel. The positions read by every
+     * pass are mapped to the plane once, so the inner loops do not check the borders.
+     * @param plane The samples of the plane, row by row.
+     * @param rows The number of rows of the plane.
+     * @param columns The number of columns of the plane.
+     * @param horizontalKernel The kernel applied along the rows, with an odd number of weights.
+     * @param verticalKernel The kernel applied along the columns, with an odd number of weights.
+     * @param border The border mode.
+     * @return The convolved plane.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    static float [] convolveSeparable(@NotNull float [] plane, int rows, int columns, @NotNull float [] horizontalKernel,
+                                      @NotNull float [] verticalKernel, @NotNull BorderMode border) throws Exception {
+        var horizontalRadius = horizontalKernel.length / 2;
+        var columnIndex = getExtendedIndex(columns, horizontalRadius, border);
+        var intermediate = new float[rows * columns];
+        TileExecutor.forEachRowBand(rows, (long) columns * horizontalKernel.length, (startRow, endRow) -> {
+            var extended = new float[columns + 2 * horizontalRadius];
+            for(int i = startRow; i < endRow; i++) {
+                var offset = i * columns;
+                for(int e = 0; e < extended.length; e++) {
+                    extended[e] = columnIndex[e] < 0 ? 0 : plane[offset + columnIndex[e]];
+                }
+                for(int j = 0; j < columns; j++) {
+                    var sum = 0f;
+                    for(int t = 0; t < horizontalKernel.length; t++) {
+                        sum += horizontalKernel[t] * extended[j + t];
+                    }
+                    intermediate[offset + j] = sum;
+                }
+            }
+        });
+
+        var verticalRadius = verticalKernel.length / 2;
+        var rowIndex = getExtendedIndex(rows, verticalRadius, border);
+        var result = new float[rows * columns];
+        TileExecutor.forEachRowBand(rows, (long) columns * verticalKernel.length, (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++) {
+                var offset = i * columns;
+                for(int t = 0; t < verticalKernel.length; t++) {
+                    if(rowIndex[i + t] < 0) {
+                        continue;
+                    }
+                    var weight = verticalKernel[t];
+                    var sourceOffset = rowIndex[i + t] * columns;
+                    for(int j = 0; j < columns; j++) {
+                        result[offset + j] += weight * intermediate[sourceOffset + j];
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * This method averages the {@code (2r + 1)^2} samples around every sample of a plane. The integral image of the
+     * plane extended by the radius on every side is computed first; every average then takes four lookups.
+     * @param plane The samples of the plane, row by row.
+     * @param rows The number of rows of the plane.
+     * @param columns The number of columns of the plane.
+     * @param radius The radius of the box.
+     * @param border The border mode.
+     * @return The filtered plane.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    static float [] boxFilter(@NotNull float [] plane, int rows, int columns, int radius,
+                              @NotNull BorderMode border) throws Exception {
+        var rowIndex = getExtendedIndex(rows, radius, border);
+        var columnIndex = getExtendedIndex(columns, radius, border);
+        var integralRows = rows + 2 * radius + 1;
+        var integralColumns = columns + 2 * radius + 1;
+        var integral = new double[integralRows * integralColumns]; // first row and column are 0
+
+        //Prefix sums along the rows, then along the columns
+        TileExecutor.forEachRowBand(integralRows - 1, integralColumns, (startRow, endRow) -> {
+            for(int e = startRow; e < endRow; e++) {
+                var offset = (e + 1) * integralColumns;
+                var sum = 0.0;
+                if(rowIndex[e] >= 0) {
+                    var sourceOffset = rowIndex[e] * columns;
+                    for(int f = 0; f < integralColumns - 1; f++) {
+                        sum += columnIndex[f] < 0 ? 0 : plane[sourceOffset + columnIndex[f]];
+                        integral[offset + f + 1] = sum;
+                    }
+                }
+            }
+        });
+        TileExecutor.forEachRowBand(integralColumns, integralRows, (startColumn, endColumn) -> {
+            for(int e = 1; e < integralRows; e++) {
+                var offset = e * integralColumns;
+                for(int f = startColumn; f < endColumn; f++) {
+                    integral[offset + f] += integral[offset - integralColumns + f];
+                }
+            }
+        });
+
+        var size = 2 * radius + 1;
+        var area = (double) size * size;
+        var result = new float[rows * columns];
+        TileExecutor.forEachRowBand(rows, columns, (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++) {
+                var top = i * integralColumns;
+                var bottom = (i + size) * integralColumns;
+                for(int j = 0; j < columns; j++) {
+                    var sum = integral[bottom + j + size] - integral[top + j + size] - integral[bottom + j] +
+                            integral[top + j];
+                    result[i * columns + j] = (float) (sum / area);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * This method maps the positions of a row or column extended by a radius on both sides to the pixels that are
+     * read at these positions.
+     * @param size The number of pixels along the row or column.
+     * @param radius The number of positions added on every side.
+     * @param border The border mode.
+     * @return The index of the pixel read at every extended position, or -1 for 0.
+     */
+    private static int [] getExtendedIndex(int size, int radius, BorderMode border) {
+        var index = new int[size + 2 * radius];
+        for(int e = 0; e < index.length; e++) {
+            index[e] = border.map(e - radius, size);
+        }
+        return index;
+    }
+
+    /**
+     * This method copies a channel of an image to a float plane.
+     * @param image The image.
+     * @param channel The channel to be copied.
+     * @return The samples of the channel, row by row.
+     */
+    static float [] readChannel(Image image, int channel) {
+        var rows = image.getRows();
+        var columns = image.getColumns();
+        var buffer = image.getReadOnlyBuffer();
+        var plane = new float[rows * columns];
+        image.forEachRowBand(rows, columns, (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++) {
+                for(int j = 0; j < columns; j++) {
+                    plane[i * columns + j] = buffer.get(image.getIndex(i, j, channel));
+                }
+            }
+        });
+        return plane;
+    }
+
+    /**
+     * This method rounds a float plane to the samples of a channel of an image, clamped to the range of the image.
+     * The observers of the image are not notified.
+     * @param image The image.
+     * @param channel The channel to be written.
+     * @param plane The samples of the channel, row by row.
+     */
+    static void writeChannel(Image image, int channel, float [] plane) {
+        var rows = image.getRows();
+        var columns = image.getColumns();
+        var buffer = image.getBuffer();
+        var maxValue = image.getMaxValue();
+        image.forEachRowBand(rows, columns, (startRow, endRow) -> {
+            for(int i = startRow; i < endRow; i++) {
+                for(int j = 0; j < columns; j++) {
+                    var value = Math.round(plane[i * columns + j]);
+                    buffer.set(image.getIndex(i, j, channel), Math.max(0, Math.min(value, maxValue)));
+                }
+            }
+        });
+    }
+}
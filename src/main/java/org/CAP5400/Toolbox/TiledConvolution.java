@@ -0,0 +1,344 @@
+package org.CAP5400.Toolbox;
+
+import jakarta.validation.constraints.NotNull;
+import org.CAP5400.Misc.TileExecutor;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+import java.util.concurrent.atomic.DoubleAccumulator;
+
+/**
+ * This class filters large regions of interest in the frequency domain without transforming the whole region. The
+ * region is cut in fixed-size tiles that are filtered independently with the overlap-save method, so the memory used
+ * by the transforms is bounded by the tile size instead of the region size, and the tiles are processed in parallel
+ * (see {@link TileExecutor}).
+ * <br><br>
+ * <p>The mask of the filter is sampled on the spectrum of a tile, with its frequencies scaled to the spectrum of the
+ * whole region (see {@link FrequencyMask}), and converted to a spatial kernel of at most {@code tileSize / 2 + 1}
+ * pixels per side, tapered by a Hann window. Every tile of {@code tileSize x tileSize} pixels is read with a margin of
+ * {@code tileSize / 4} pixels on every side, multiplied with the spectrum of the kernel, and only the centre of the
+ * inverse transform, which is not affected by the circular wrap-around, is kept. Like the untiled filters, the region
+ * is padded with zeros to the optimal DFT size and wraps around at its borders.</p>
+ * <p>The kernel must fit in the margin of the tiles. If more than {@value #MAX_TRUNCATED_ENERGY} of its energy lies
+ * outside the margin, the tile size is doubled until the kernel fits; if only a tile as large as the region would do,
+ * the region is not tiled (see {@link #createKernelSpectrum(MaskSource, int, int)}). Wide kernels, e.g. ideal
+ * filters with a small radius, are therefore never truncated.</p>
+ * <p>The filtered region is normalized to the range of the channel like the untiled filters. The minimum and maximum
+ * of the whole region are only known after every tile is filtered, so the tiles are filtered twice: once to find the
+ * range and once to write the result.</p>
+ * <p>Tiling is opt-in: no region is tiled unless the {@value #TILING_THRESHOLD_PROPERTY} system property or
+ * {@link #setTilingThreshold(long)} sets the number of pixels above which regions are tiled. The tile size can be
+ * configured with the {@value #TILE_SIZE_PROPERTY} system property or at runtime.</p>
+ * <p><b>NOTE: </b> The kernel is tapered and truncated to the margin of the tiles, so the result can differ slightly
+ * from the untiled filter, mostly for filters with sharp cutoffs. No magnitude spectra are saved.</p>
+ * @author Reubin George
+ * @see Fourier
+ */
+public final class TiledConvolution {
+    public static final String TILE_SIZE_PROPERTY = "cap5400.fourier.tileSize";
+    public static final String TILING_THRESHOLD_PROPERTY = "cap5400.fourier.tilingThreshold";
+    public static final int DEFAULT_TILE_SIZE = 1024; // a 1024x1024 float tile takes 4 MB
+    public static final long DEFAULT_TILING_THRESHOLD = Long.MAX_VALUE; // no region is tiled by default
+    public static final double MAX_TRUNCATED_ENERGY = 0.01; // fraction of the energy of the kernel outside the margin
+    public static final int MIN_TILE_SIZE = 16;
+
+    private static int tileSize = readProperty(TILE_SIZE_PROPERTY, DEFAULT_TILE_SIZE, MIN_TILE_SIZE);
+    private static long tilingThreshold = readProperty(TILING_THRESHOLD_PROPERTY, DEFAULT_TILING_THRESHOLD, 0);
+
+    private TiledConvolution() { }
+
+    /**
+     * This interface returns the mask of a filter sampled on a spectrum, see {@link FrequencyMask}.
+     */
+    @FunctionalInterface
+    interface MaskSource {
+        /**
+         * This method returns the mask of a filter.
+         * @param rows The number of rows of the packed DFT.
+         * @param columns The number of columns of the packed DFT.
+         * @param rowScale The ratio between the number of rows of the spectrum of the whole region and {@code rows}.
+         * @param columnScale The ratio between the number of columns of the spectrum of the whole region and
+         *                    {@code columns}.
+         * @return The mask, a leased mask of {@link FrequencyMask} or a new mask. The caller hands it back with
+         * {@link FrequencyMask#release(Mat)}.
+         */
+        Mat get(int rows, int columns, double rowScale, double columnScale);
+    }
+
+    /**
+     * This method checks whether a region is large enough to be tiled.
+     * @param rows The number of rows of the region.
+     * @param columns The number of columns of the region.
+     * @return True if the region has more pixels than the tiling threshold.
+     */
+    public static boolean shouldTile(int rows, int columns) {
+        return (long) rows * columns > getTilingThreshold();
+    }
+
+    /**
+     * This method computes the spectrum of the spatial kernel of a filter on the smallest tile that holds the kernel.
+     * The tile size starts at {@link #getTileSize()} and is doubled until at most {@value #MAX_TRUNCATED_ENERGY} of the
+     * energy of the kernel lies outside the margin of the tiles.
+     * @param maskSource The source of the mask of the filter. The masks are handed back with
+     *                   {@link FrequencyMask#release(Mat)}.
+     * @param rows The number of rows of the packed DFT of the region.
+     * @param columns The number of columns of the packed DFT of the region.
+     * @return The packed spectrum of the windowed kernel, whose size is the tile size, or null if the kernel only fits
+     * in a tile that is at least as large as the region, in which case the region should not be tiled.
+     */
+    static Mat createKernelSpectrum(@NotNull MaskSource maskSource, int rows, int columns) {
+        for(long size = getTileSize(); size < Math.max(rows, columns); size *= 2){
+            var tileSize = (int) size;
+            var mask = maskSource.get(tileSize, tileSize, (double) rows / tileSize, (double) columns / tileSize);
+            try {
+                var kernelSpectrum = createKernelSpectrum(mask);
+                if(kernelSpectrum != null){
+                    return kernelSpectrum;
+                }
+            }
+            finally {
+                FrequencyMask.release(mask);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method computes the spectrum of the spatial kernel of a filter.
+     * @param mask The mask of the filter, sampled on the spectrum of a tile.
+     * @return The packed spectrum of the windowed kernel, with the size of the mask, or null if more than
+     * {@value #MAX_TRUNCATED_ENERGY} of the energy of the kernel lies outside the margin of the tile.
+     */
+    static Mat createKernelSpectrum(@NotNull Mat mask) {
+        var size = mask.rows();
+        var margin = size / 4;
+
+        //The mask multiplies the real and the imaginary part of every frequency by the same weight. As a spectrum, the
+        //weights are real: the imaginary parts are set to 0, i.e. the even columns, and the even rows of the first
+        //column and (for an even size) the last column
+        var data = new float[size * size];
+        mask.get(0, 0, data);
+        for(int i = 0; i < size; i++){
+            for(int j = 2; j < size; j += 2){
+                data[i * size + j] = 0;
+            }
+        }
+        for(int i = 2; i < size; i += 2){
+            data[i * size] = 0;
+            if(size % 2 == 0){
+                data[i * size + size - 1] = 0;
+            }
+        }
+        var kernel = new Mat(size, size, CvType.CV_32F);
+        kernel.put(0, 0, data);
+        Core.idft(kernel, kernel, Core.DFT_REAL_OUTPUT | Core.DFT_SCALE);
+        kernel.get(0, 0, data);
+
+        //The kernel is centred on the first pixel and wraps around, so the distance of a pixel to the centre is the
+        //shorter distance to the first or the last row (column)
+        var window = new double[size];
+        for(int i = 0; i < size; i++){
+            var distance = Math.min(i, size - i);
+            window[i] = distance > margin ? 0 : 0.5 * (1 + Math.cos(Math.PI * distance / (margin + 1)));
+        }
+
+        //The centre is left out, since the identity part of a high-pass kernel would hide the truncated low-pass part
+        var truncatedEnergy = 0.0;
+        var totalEnergy = 0.0;
+        for(int i = 0; i < size; i++){
+            for(int j = 0; j < size; j++){
+                var energy = (double) data[i * size + j] * data[i * size + j];
+                if(i + j > 0){
+                    totalEnergy += energy;
+                }
+                if(window[i] == 0 || window[j] == 0){
+                    truncatedEnergy += energy;
+                }
+            }
+        }
+        if(truncatedEnergy > MAX_TRUNCATED_ENERGY * totalEnergy){
+            kernel.release();
+            return null;
+        }
+        for(int i = 0; i < size; i++){
+            for(int j = 0; j < size; j++){
+                data[i * size + j] *= (float) (window[i] * window[j]);
+            }
+        }
+        kernel.put(0, 0, data);
+        Core.dft(kernel, kernel);
+        return kernel;
+    }
+
+    /**
+     * This method filters a channel tile by tile and normalizes the result.
+     * @param plane The channel to be filtered, a single channel 8-bit Mat.
+     * @param kernelSpectrum The packed spectrum of the kernel, see {@link #createKernelSpectrum(Mat)}.
+     * @param maxValue The maximum value of the channel.
+     * @param rows The number of rows of the packed DFT of the region, i.e. the period of the wrap-around.
+     * @param columns The number of columns of the packed DFT of the region.
+     * @return The filtered channel, a single channel 8-bit Mat with the size of the plane.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    static Mat filter(@NotNull Mat plane, @NotNull Mat kernelSpectrum, int maxValue, int rows, int columns)
+            throws Exception {
+        //The region padded like the untiled DFT and wrapped around by the margin of the tiles on every side, so every
+        //tile is a plain sub-matrix
+        var size = kernelSpectrum.rows();
+        var margin = size / 4;
+        var padded = new Mat();
+        var extended = new Mat();
+        Core.copyMakeBorder(plane, padded, 0, rows - plane.rows(), 0, columns - plane.cols(), Core.BORDER_CONSTANT,
+                Scalar.all(0));
+        Core.copyMakeBorder(padded, extended, margin, size, margin, size, Core.BORDER_WRAP);
+        padded.release();
+        try {
+            return filterExtended(extended, plane.rows(), plane.cols(), kernelSpectrum, maxValue);
+        }
+        finally {
+            extended.release();
+        }
+    }
+
+    private static Mat filterExtended(Mat extended, int rows, int columns, Mat kernelSpectrum, int maxValue)
+            throws Exception {
+        var minimum = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        var maximum = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        forEachTile(extended, rows, columns, kernelSpectrum, (tile, row, column) -> {
+            var range = Core.minMaxLoc(tile);
+            minimum.accumulate(range.minVal);
+            maximum.accumulate(range.maxVal);
+        });
+
+        //Same scaling as Core.normalize with NORM_MINMAX
+        var range = maximum.get() - minimum.get();
+        var scale = range > Double.MIN_NORMAL ? maxValue / range : 0;
+        var shift = -minimum.get() * scale;
+        var result = new Mat(rows, columns, CvType.CV_8U);
+        forEachTile(extended, rows, columns, kernelSpectrum, (tile, row, column) -> {
+            var target = result.submat(row, row + tile.rows(), column, column + tile.cols());
+            tile.convertTo(target, CvType.CV_8U, scale, shift);
+            target.release();
+        });
+        return result;
+    }
+
+    /**
+     * This interface receives the filtered pixels of a tile.
+     */
+    @FunctionalInterface
+    private interface TileConsumer {
+        void accept(Mat tile, int row, int column) throws Exception;
+    }
+
+    /**
+     * This method filters every tile of a channel with the overlap-save method. The rows of tiles are processed in
+     * parallel, and every band of rows reuses its own buffers.
+     * @param extended The channel to be filtered, extended by the margin of the tiles on the top and left sides and by
+     *                 a tile on the bottom and right sides.
+     * @param rows The number of rows of the channel.
+     * @param columns The number of columns of the channel.
+     * @param kernelSpectrum The packed spectrum of the kernel.
+     * @param consumer The consumer of the filtered pixels of every tile, which are only valid during the call.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    private static void forEachTile(Mat extended, int rows, int columns, Mat kernelSpectrum, TileConsumer consumer)
+            throws Exception {
+        var size = kernelSpectrum.rows();
+        var margin = size / 4;
+        var step = size - 2 * margin;
+        var tileRows = (rows + step - 1) / step;
+        var tileColumns = (columns + step - 1) / step;
+
+        TileExecutor.forEachRowBand(tileRows, (long) tileColumns * size * size, (startTile, endTile) -> {
+            var input = new Mat();
+            var spectrum = new Mat();
+            var output = new Mat();
+            try {
+                for(int t = startTile; t < endTile; t++){
+                    var row = t * step;
+                    for(int column = 0; column < columns; column += step){
+                        //The tile and its margins, which start at (row - margin, column - margin) in the channel
+                        var source = extended.submat(new Rect(column, row, size, size));
+                        source.convertTo(input, CvType.CV_32F);
+                        source.release();
+
+                        Core.dft(input, spectrum);
+                        Core.mulSpectrums(spectrum, kernelSpectrum, spectrum, 0);
+                        Core.idft(spectrum, output, Core.DFT_REAL_OUTPUT | Core.DFT_SCALE);
+
+                        var valid = output.submat(margin, margin + Math.min(step, rows - row),
+                                margin, margin + Math.min(step, columns - column));
+                        consumer.accept(valid, row, column);
+                        valid.release();
+                    }
+                }
+            }
+            finally {
+                input.release();
+                spectrum.release();
+                output.release();
+            }
+        });
+    }
+
+    /**
+     * Method to get the tile size.
+     * @return The number of rows and columns of the transformed tiles, including the margins.
+     */
+    public static synchronized int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Method to set the tile size.
+     * @param tileSize The number of rows and columns of the transformed tiles, including the margins. Sizes that are
+     *                 products of 2, 3 and 5 are the fastest.
+     */
+    public static synchronized void setTileSize(int tileSize) {
+        if(tileSize < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("The tile size must be at least " + MIN_TILE_SIZE + ", but was " +
+                    tileSize);
+        }
+        TiledConvolution.tileSize = tileSize;
+    }
+
+    /**
+     * Method to get the tiling threshold.
+     * @return The number of pixels above which regions are filtered tile by tile.
+     */
+    public static synchronized long getTilingThreshold() {
+        return tilingThreshold;
+    }
+
+    /**
+     * Method to set the tiling threshold.
+     * @param tilingThreshold The number of pixels above which regions are filtered tile by tile. 0 tiles every region.
+     */
+    public static synchronized void setTilingThreshold(long tilingThreshold) {
+        if(tilingThreshold < 0) {
+            throw new IllegalArgumentException("The tiling threshold must not be negative, but was " + tilingThreshold);
+        }
+        TiledConvolution.tilingThreshold = tilingThreshold;
+    }
+
+    private static int readProperty(String name, int defaultValue, int minimum) {
+        return (int) Math.min(Integer.MAX_VALUE, readProperty(name, (long) defaultValue, minimum));
+    }
+
+    private static long readProperty(String name, long defaultValue, long minimum) {
+        var property = System.getProperty(name);
+        if(property == null || property.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(minimum, Long.parseLong(property.trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + property, e);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import org.CAP5400.Image.Image;
-import org.CAP5400.Misc.FloatRange;
+import org.CAP5400.Misc.TileExecutor;
 import org.CAP5400.RegionOfInterest.ROI;
 import org.checkerframework.common.value.qual.IntRange;
 
@@ -13,7 +13,7 @@ import static org.CAP5400.Image.Image.MAX_RGB;
 
 /**
  * This class contains a set of static methods that can be used to perform operations on a region of interest (ROI)
- * within an image.
+ * within an image. The pixel-local operations process the region in parallel bands of rows, see {@link TileExecutor}.
  * @see ROI
  * @author Reubin George
  * @version 1.0
@@ -27,17 +27,7 @@ public class Toolbox {
      * @throws Exception Thrown error if any problems are detected!
      */
     public static void addGrey(ROI region, int value) throws Exception {
-        if(region.getSourceImage().isColor()){
-            throw new IllegalArgumentException("This filter only works on greyscale images.");
-        }
-        for(int i = 0; i < region.getTotalX(); i++) {
-            for(int j = 0; j < region.getTotalY(); j++) {
-                var newX = region.getStartX() + i;
-                var newY = region.getStartY() + j;
-                var pixel = region.getSourceImage().getPixel(newX, newY) + value;
-                region.getRegionImage().setPixel(i, j, pixel);
-            }
-        }
+        PointOperations.addGrey(region, value).apply(region);
     }
 
     /**
@@ -47,19 +37,7 @@ public class Toolbox {
      * @throws Exception Thrown error if any problems are detected!
      */
     public static void addBrightness(@NotNull ROI region, @IntRange(from = -50, to = 50) int value) throws Exception {
-        if(value > -50 && value < 50) {
-            for(int i = 0; i < region.getTotalX(); i++) {
-                for(int j = 0; j < region.getTotalY(); j++) {
-                    for(int k = 0; k < region.getNumChannels(); k++){
-                        var sourceX = i + region.getStartX();
-                        var sourceY = j + region.getStartY();
-                        var oldValue = region.getSourceImage().getPixel(sourceX, sourceY, k);
-                        var newValue = oldValue + value;
-                        region.getRegionImage().setPixel(i, j, k, newValue);
-                    }
-                }
-            }
-        }
+        PointOperations.addBrightness(region, value).apply(region);
     }
 
     /**
@@ -75,24 +53,7 @@ public class Toolbox {
             @NotNull ROI region,
             @IntRange(from = 0, to = MAX_RGB) int threshold,
             @IntRange(from = 0, to = MAX_RGB) int value) throws Exception {
-
-        if(threshold < 0 || threshold > MAX_RGB){
-            throw new IllegalArgumentException("Threshold needs to be capped between 0 to 255");
-        }
-
-        for(int i = 0; i < region.getTotalX(); i++) {
-            for (int j = 0; j < region.getTotalY(); j++) {
-                for (int k = 0; k < region.getNumChannels(); k++) {
-                    var sourceX = i + region.getStartX();
-                    var sourceY = j + region.getStartY();
-                    var intensity = region.getSourceImage().getPixel(sourceX, sourceY, k);
-                    if (intensity < threshold) {
-                        var newValue = intensity - value;
-                        region.getRegionImage().setPixel(i, j, k, newValue);
-                    }
-                }
-            }
-        }
+        PointOperations.decreaseBrightness(region, threshold, value).apply(region);
     }
 
 
@@ -105,84 +66,76 @@ public class Toolbox {
     public static void binarize(
             @NotNull ROI region,
             @IntRange(from = 0, to = MAX_RGB) int threshold) throws Exception {
-        if(region.getSourceImage().isColor()){
-            throw new IllegalArgumentException("This filter only works on greyscale images.");
-        }
-        if(threshold < 0 || threshold > MAX_RGB){
-            throw new IllegalArgumentException("Threshold needs to be capped between 0 to 255");
-        }
-        for(int i = 0; i < region.getTotalX(); i++) {
-            for (int j = 0; j < region.getTotalY(); j++) {
-                var sourceX = i + region.getStartX();
-                var sourceY = j + region.getStartY();
-                var originalIntensity = region.getSourceImage().getPixel(sourceX, sourceY);
-                var newIntensity = originalIntensity < threshold ? 0 : MAX_RGB;
-                region.getRegionImage().setPixel(i, j, newIntensity);
-            }
-        }
+        PointOperations.binarize(region, threshold).apply(region);
     }
 
     /**
-     * This method scales a region of interest (ROI) within an image by a specified ratio.
+     * This method scales a region of interest (ROI) within an image by a specified ratio, with nearest-neighbour
+     * interpolation. When upscaling, the top left part of the scaled region that fits in the region is kept. When
+     * downscaling, the scaled region is placed in the top left corner and the rest of the region is set to 0.
      * @param region Region of interest on which this filter will be applied.
-     * @param ratio The scaling ratio (1.0 to 2.0).
+     * @param ratio The scaling ratio. Values below 1 shrink the region, values above 1 enlarge it.
      * @throws Exception Thrown error if any problems are detected!
+     * @see #resample(ROI, float, String)
      */
-    public static void scale(
-            @NotNull ROI region,
-            @FloatRange(from = 1.0f, to = 2.0f) float ratio) throws Exception {
-        if(ratio < 1.0 || ratio > 2.0){
-            throw new IllegalArgumentException("The scaling factor needs to be between 1 - 2");
-        }
-        var col = region.getTotalY();
-        var row = region.getTotalX();
-
-        var scaledRow = (int)((float)row * ratio);
-        var scaledCol = (int)((float)col * ratio);
-        var scaledImage = new Image(scaledRow, scaledCol, region.getNumChannels());
-
-        for(int i = 0; i < scaledRow; i++){
-            for(int j = 0; j < scaledCol; j++){
-                for(int k = 0; k < region.getNumChannels(); k++){
-                    var newX = (int)((float)i / ratio);
-                    var newY = (int)((float)j / ratio);
-                    var intensity = region.getRegionImage().getPixel(newX, newY, k);
-                    scaledImage.setPixel(i, j, k, intensity);
-                }
-            }
-        }
-        var croppedScaledImage = new ROI(scaledImage, 0, 0, row, col);
-        region.getRegionImage().deepCopy(croppedScaledImage.getRegionImage());
+    public static void scale(@NotNull ROI region, float ratio) throws Exception {
+        resample(region, ratio, Interpolation.NEAREST);
+    }
 
+    /**
+     * This method scales a region of interest (ROI) within an image by any positive factor with the given interpolation
+     * method. When upscaling, the top left part of the scaled region that fits in the region is kept. When
+     * downscaling, the scaled region is placed in the top left corner and the rest of the region is set to 0.
+     * @param region Region of interest on which this filter will be applied.
+     * @param ratio The scaling factor. Values below 1 shrink the region, values above 1 enlarge it.
+     * @param interpolation The interpolation method: "nearest", "bilinear", "bicubic", "lanczos" or "area".
+     * @throws Exception Thrown error if any problems are detected!
+     * @see Resampler
+     */
+    public static void resample(
+            @NotNull ROI region,
+            float ratio,
+            @NotNull @NotBlank @NotEmpty String interpolation) throws Exception {
+        resample(region, ratio, Interpolation.fromString(interpolation));
     }
 
     /**
-     * This method rotates a region of interest (ROI) within an image clockwise by 90 degrees.
+     * This method scales a region of interest (ROI) in place. The samples of the region are read from a snapshot of the
+     * region image, which shares its pixel buffer, and the scaled samples are written straight into the region image.
      * @param region Region of interest on which this filter will be applied.
+     * @param ratio The scaling factor.
+     * @param interpolation The interpolation method.
      * @throws Exception Thrown error if any problems are detected!
      */
-    protected static void rotateClockwise90(@NotNull ROI region) throws Exception{
-        region.enforceSquareDimensions(true);
-        var rotatedImage = new Image(region.getTotalX(), region.getTotalY(), region.getNumChannels());
-
-        for(int i = 0; i < region.getTotalX(); i++){
-            for(int j = 0; j < region.getTotalY(); j++){
-                for(int k = 0; k < region.getNumChannels(); k++){
-                    var newY =  region.getTotalX() - i - 1;
-                    var intensity = region.getRegionImage().getPixel(i, j, k);
-                    rotatedImage.setPixel(j, newY, k, intensity);
-                }
-            }
+    private static void resample(ROI region, float ratio, Interpolation interpolation) throws Exception {
+        if(!(ratio > 0) || Float.isInfinite(ratio)){
+            throw new IllegalArgumentException("The scaling factor needs to be positive");
+        }
+        var regionImage = region.getRegionImage();
+        var scaledRows = Math.max(1, Math.round(region.getTotalX() * ratio));
+        var scaledColumns = Math.max(1, Math.round(region.getTotalY() * ratio));
+        var sourceImage = regionImage.snapshot();
+
+        regionImage.beginUpdate();
+        try {
+            //The region image shares its buffer with the snapshot, so it gets a new zero filled buffer instead of a
+            //copy of the samples that are about to be overwritten
+            regionImage.clear();
+            Resampler.resample(sourceImage, scaledRows, scaledColumns, regionImage, interpolation);
+        }
+        finally {
+            regionImage.endUpdate();
         }
-
-        region.getRegionImage().deepCopy(rotatedImage);
     }
 
     /**
-     * This method rotates a region of interest (ROI) within an image by a specified angle.
-     * @param region Region of interest on which this filter will be applied.
+     * This method rotates a region of interest (ROI) within an image clockwise by a specified angle. The angle is
+     * normalised to the range 0 - 359, and the region is rotated in place in a single pass.
+     * @param region Region of interest on which this filter will be applied. Rotations by 90 and 270 degrees require a
+     *               square region.
      * @param angle The angle by which to rotate the region (must be a positive multiple of 90 degrees).
      * @throws Exception Thrown error if any problems are detected!
+     * @see Rotation
      */
     public static void rotate(@NotNull ROI region, int angle) throws Exception {
         var baseAngle = 90;
@@ -194,10 +147,36 @@ public class Toolbox {
             throw new IllegalArgumentException("Angle must be a multiple of 90.");
         }
 
-        var numRotations = angle / baseAngle;
-        for(int i = 0; i < numRotations; i++){
-            rotateClockwise90(region);
+        var numRotations = (angle % 360) / baseAngle;
+        if(numRotations % 2 == 1){
+            region.enforceSquareDimensions(true);
+        }
+        Rotation.rotateQuarterTurns(region.getRegionImage(), numRotations);
+    }
+
+    /**
+     * This method rotates a region of interest (ROI) within an image clockwise by an arbitrary angle around the center
+     * of the region. Pixels that are rotated in from outside the region are set to 0.
+     * @param region Region of interest on which this filter will be applied.
+     * @param angle The clockwise angle in degrees. Negative angles rotate counterclockwise.
+     * @param interpolation The interpolation method: "nearest", "bilinear" or "bicubic".
+     * @throws Exception Thrown error if any problems are detected!
+     * @see Rotation
+     */
+    public static void rotateByAngle(
+            @NotNull ROI region,
+            float angle,
+            @NotNull @NotBlank @NotEmpty String interpolation) throws Exception {
+        var method = Interpolation.fromString(interpolation);
+        var normalizedAngle = ((angle % 360) + 360) % 360;
+        var isSquare = region.getTotalX() == region.getTotalY();
+        if(normalizedAngle % 90 == 0 && (isSquare || normalizedAngle % 180 == 0)){
+            //Multiples of 90 degrees are exact, so they do not need to be interpolated
+            Rotation.rotateQuarterTurns(region.getRegionImage(), (int) (normalizedAngle / 90));
+            return;
         }
+        var sourceImage = new Image(region.getRegionImage());
+        Rotation.rotate(sourceImage, region.getRegionImage(), normalizedAngle, method);
     }
 
     /**
@@ -306,6 +285,23 @@ public class Toolbox {
         }
     }
 
+    /**
+     * This method applies a low-pass filter to all channels of a region of interest (ROI) within an image. The region
+     * is converted to the color space and written back once, and the channels are transformed in parallel.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the low-pass filter. It can be either "RGB" or "HSV".
+     * @param filterRadius The radius of the low-pass filter.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void lowPassFilterAll(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @Positive int filterRadius) throws Exception {
+        try(var fourier = new Fourier(region, colorspace)){
+            fourier.applyFilter(filterRadius, 0, "Low Pass");
+        }
+    }
+
     /**
      * This method applies a high-pass filter to a region of interest (ROI) within an image. The filter is applied to
      * each channel independently for color images.
@@ -325,6 +321,23 @@ public class Toolbox {
         }
     }
 
+    /**
+     * This method applies a high-pass filter to all channels of a region of interest (ROI) within an image. The region
+     * is converted to the color space and written back once, and the channels are transformed in parallel.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the high-pass filter. It can be either "RGB" or "HSV".
+     * @param filterRadius The radius of the high-pass filter.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void highPassFilterAll(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @Positive int filterRadius) throws Exception {
+        try(var fourier = new Fourier(region, colorspace)){
+            fourier.applyFilter(filterRadius, 0, "High Pass");
+        }
+    }
+
     /**
      * This method applies a band-pass filter to a region of interest (ROI) within an image. The filter is applied to
      * each channel independently for color images.
@@ -350,6 +363,129 @@ public class Toolbox {
         }
     }
 
+    /**
+     * This method applies a band-pass filter to all channels of a region of interest (ROI) within an image. The region
+     * is converted to the color space and written back once, and the channels are transformed in parallel.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the band-pass filter. It can be either "RGB" or "HSV".
+     * @param innerFilterRadius The radius of the inner band-pass filter.
+     * @param outerFilterRadius The radius of the outer band-pass filter.
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void bandStopFilterAll(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @Positive int innerFilterRadius, @Positive int outerFilterRadius) throws Exception {
+        if(outerFilterRadius <= innerFilterRadius){
+            throw new Exception("The outer filter (" + outerFilterRadius +
+                    ") must be greater than the inner filter (" + innerFilterRadius + ")");
+        }
+        try(var fourier = new Fourier(region, colorspace))
+        {
+            fourier.applyFilter(innerFilterRadius, outerFilterRadius, "Band Stop");
+        }
+    }
+
+    /**
+     * This method applies a Gaussian filter to a region of interest (ROI) within an image. The Gaussian filters fall off
+     * smoothly, so they do not cause the ringing of the ideal filters.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the filter. It can be either "RGB" or "HSV".
+     * @param channel The index of the channel to which the filter is applied.
+     * @param mode The mode of the filter: "lowpass", "highpass", "bandpass" or "bandstop".
+     * @param cutoff The cutoff frequency of the low-pass and high-pass filters, or the center of the band of the band
+     *               filters.
+     * @param bandWidth The width of the band. It is ignored by the low-pass and high-pass filters.
+     * @throws Exception Thrown error if any problems are detected!
+     * @see FrequencyMask
+     */
+    public static void gaussianFilter(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @IntRange(from = 0, to = 2) int channel,
+            @NotNull @NotBlank String mode,
+            float cutoff,
+            float bandWidth) throws Exception {
+        try(var fourier = new Fourier(region, colorspace, channel)){
+            fourier.applyGaussianFilter(mode, cutoff, bandWidth);
+        }
+    }
+
+    /**
+     * This method applies a Gaussian filter to all channels of a region of interest (ROI) within an image. The region
+     * is converted to the color space and written back once, and the channels are transformed in parallel.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the filter. It can be either "RGB" or "HSV".
+     * @param mode The mode of the filter: "lowpass", "highpass", "bandpass" or "bandstop".
+     * @param cutoff The cutoff frequency of the low-pass and high-pass filters, or the center of the band of the band
+     *               filters.
+     * @param bandWidth The width of the band. It is ignored by the low-pass and high-pass filters.
+     * @throws Exception Thrown error if any problems are detected!
+     * @see FrequencyMask
+     */
+    public static void gaussianFilterAll(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @NotNull @NotBlank String mode,
+            float cutoff,
+            float bandWidth) throws Exception {
+        try(var fourier = new Fourier(region, colorspace)){
+            fourier.applyGaussianFilter(mode, cutoff, bandWidth);
+        }
+    }
+
+    /**
+     * This method applies a Butterworth filter to a region of interest (ROI) within an image. Low orders fall off
+     * smoothly like a Gaussian filter, high orders approach the ideal filters.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the filter. It can be either "RGB" or "HSV".
+     * @param channel The index of the channel to which the filter is applied.
+     * @param mode The mode of the filter: "lowpass", "highpass", "bandpass" or "bandstop".
+     * @param cutoff The cutoff frequency of the low-pass and high-pass filters, or the center of the band of the band
+     *               filters.
+     * @param bandWidth The width of the band. It is ignored by the low-pass and high-pass filters.
+     * @param order The order of the filter (at least 1).
+     * @throws Exception Thrown error if any problems are detected!
+     * @see FrequencyMask
+     */
+    public static void butterworthFilter(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @IntRange(from = 0, to = 2) int channel,
+            @NotNull @NotBlank String mode,
+            float cutoff,
+            float bandWidth,
+            @Positive int order) throws Exception {
+        try(var fourier = new Fourier(region, colorspace, channel)){
+            fourier.applyButterworthFilter(mode, cutoff, bandWidth, order);
+        }
+    }
+
+    /**
+     * This method applies a Butterworth filter to all channels of a region of interest (ROI) within an image. The region
+     * is converted to the color space and written back once, and the channels are transformed in parallel.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the filter. It can be either "RGB" or "HSV".
+     * @param mode The mode of the filter: "lowpass", "highpass", "bandpass" or "bandstop".
+     * @param cutoff The cutoff frequency of the low-pass and high-pass filters, or the center of the band of the band
+     *               filters.
+     * @param bandWidth The width of the band. It is ignored by the low-pass and high-pass filters.
+     * @param order The order of the filter (at least 1).
+     * @throws Exception Thrown error if any problems are detected!
+     * @see FrequencyMask
+     */
+    public static void butterworthFilterAll(
+            @NotNull ROI region,
+            @NotNull @NotBlank String colorspace,
+            @NotNull @NotBlank String mode,
+            float cutoff,
+            float bandWidth,
+            @Positive int order) throws Exception {
+        try(var fourier = new Fourier(region, colorspace)){
+            fourier.applyButterworthFilter(mode, cutoff, bandWidth, order);
+        }
+    }
+
     /**
      * This method sharpens the edges of a region of interest (ROI) within an image. The sharpening is performed
      * independently on each channel for color images using an unsharp mask.
@@ -369,6 +505,75 @@ public class Toolbox {
         }
     }
 
+    /**
+     * This method sharpens the edges of all channels of a region of interest (ROI) within an image using an unsharp
+     * mask. The region is converted to the color space and written back once, and the channels are transformed in
+     * parallel.
+     * @param region Region of interest on which this filter will be applied.
+     * @param colorspace The color space in which to perform the sharpening. It can be either "RGB" or "HSV".
+     * @param filterRadius The size of the filter used to perform the sharpening.
+     * @param sharpeningFactor The sharpening factor (0.0 to 1.0).
+     * @throws Exception Thrown error if any problems are detected!
+     */
+    public static void sharpenEdgeAll(@NotNull ROI region,
+                                      @NotNull @NotBlank String colorspace,
+                                      @Positive int filterRadius, double sharpeningFactor) throws Exception {
+        try(var fourier = new Fourier(region, colorspace)){
+            fourier.sharpenEdges(filterRadius, sharpeningFactor);
+        }
+    }
+
+    /**
+     * This method blurs all channels of a region of interest (ROI) within an image with a box filter, i.e. every pixel
+     * is replaced by the average of the (2 * radius + 1)^2 pixels around it. The cost does not depend on the radius.
+     * @param region Region of interest on which this filter will be applied.
+     * @param radius The radius of the box.
+     * @param border How the pixels outside the region are read: "zero", "replicate", "reflect" or "wrap".
+     * @throws Exception Thrown error if any problems are detected!
+     * @see SpatialFilter
+     */
+    public static void boxBlur(
+            @NotNull ROI region,
+            @IntRange(from = 0, to = Integer.MAX_VALUE) int radius,
+            @NotNull @NotBlank String border) throws Exception {
+        SpatialFilter.boxBlur(region.getRegionImage(), radius, SpatialFilter.BorderMode.fromString(border));
+    }
+
+    /**
+     * This method blurs all channels of a region of interest (ROI) within an image with a Gaussian kernel in the spatial
+     * domain. It is much cheaper than a low-pass filter in the frequency domain for small kernels.
+     * @param region Region of interest on which this filter will be applied.
+     * @param sigma The standard deviation of the kernel, in pixels.
+     * @param border How the pixels outside the region are read: "zero", "replicate", "reflect" or "wrap".
+     * @throws Exception Thrown error if any problems are detected!
+     * @see SpatialFilter
+     */
+    public static void gaussianBlur(
+            @NotNull ROI region,
+            float sigma,
+            @NotNull @NotBlank String border) throws Exception {
+        SpatialFilter.gaussianBlur(region.getRegionImage(), sigma, SpatialFilter.BorderMode.fromString(border));
+    }
+
+    /**
+     * This method sharpens all channels of a region of interest (ROI) within an image by unsharp masking in the spatial
+     * domain: the difference between the region and its Gaussian blur is amplified and added to the region.
+     * @param region Region of interest on which this filter will be applied.
+     * @param sigma The standard deviation of the blur, in pixels.
+     * @param sharpeningFactor The sharpening factor.
+     * @param border How the pixels outside the region are read: "zero", "replicate", "reflect" or "wrap".
+     * @throws Exception Thrown error if any problems are detected!
+     * @see SpatialFilter
+     */
+    public static void unsharpMask(
+            @NotNull ROI region,
+            float sigma,
+            float sharpeningFactor,
+            @NotNull @NotBlank String border) throws Exception {
+        SpatialFilter.unsharpMask(region.getRegionImage(), sigma, sharpeningFactor,
+                SpatialFilter.BorderMode.fromString(border));
+    }
+
 }
 
 
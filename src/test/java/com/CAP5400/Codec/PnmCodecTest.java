@@ -0,0 +1,109 @@
+package com.CAP5400.Codec;
+
+import nu.pattern.OpenCV;
+import org.CAP5400.Codec.PnmReader;
+import org.CAP5400.Codec.PnmWriter;
+import org.CAP5400.Image.Image;
+import org.CAP5400.Image.PixelBuffer;
+import org.junit.jupiter.api.Test;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.CAP5400.Misc.Misc.delete;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PnmCodecTest {
+
+    @Test
+    public void testDecodingMatchesOpenCv(){
+        try {
+            OpenCV.loadLocally();
+            for(var fileName : new String[]{"baboon.pgm", "baboon.ppm", "mountain.pgm", "slope.pgm"}){
+                var image = new Image(fileName);
+                var flag = image.isColor() ? Imgcodecs.IMREAD_COLOR : Imgcodecs.IMREAD_GRAYSCALE;
+                var cvImage = Imgcodecs.imread(fileName, flag);
+                assertThat(image.getRows()).isEqualTo(cvImage.rows());
+                assertThat(image.getColumns()).isEqualTo(cvImage.cols());
+                for(int i = 0; i < image.getRows(); i++){
+                    for(int j = 0; j < image.getColumns(); j++){
+                        var cvPixel = cvImage.get(i, j);
+                        for(int k = 0; k < image.getNumChannels(); k++){
+                            assertThat(image.getPixel(i, j, k)).isEqualTo((int) cvPixel[k]);
+                        }
+                    }
+                }
+                cvImage.release();
+            }
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testDeepImageRoundTrip(){
+        try {
+            var image = new Image(3, 5, 3, 4095);
+            for(int i = 0; i < image.getRows(); i++){
+                for(int j = 0; j < image.getColumns(); j++){
+                    for(int k = 0; k < image.getNumChannels(); k++){
+                        image.setPixel(i, j, k, (i * 1000 + j * 200 + k * 7) % 4096);
+                    }
+                }
+            }
+            image.save("deep_saved.ppm");
+            var savedImage = new Image("deep_saved.ppm");
+            assertThat(savedImage.getMaxValue()).isEqualTo(4095);
+            assertThat(savedImage).isEqualTo(image);
+            delete("deep_saved.ppm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testAsciiRoundTrip(){
+        try {
+            var image = new Image("baboon.ppm");
+            PnmWriter.write(Paths.get("baboon_ascii.ppm"), image, false);
+            assertThat(Files.readString(Paths.get("baboon_ascii.ppm")).startsWith("P3")).isTrue();
+            assertThat(new Image("baboon_ascii.ppm")).isEqualTo(image);
+
+            Files.writeString(Paths.get("comment.pgm"), "P2\n# comment\n3 2 # width height\n15\n0 1 2\n3 4 15\n");
+            try (var reader = new PnmReader(Paths.get("comment.pgm"))) {
+                assertThat(reader.getHeader().getRows()).isEqualTo(2);
+                assertThat(reader.getHeader().getColumns()).isEqualTo(3);
+                var pixels = PixelBuffer.allocate(6, reader.getDecodedMaxValue());
+                reader.read(pixels, 1);
+                assertThat(pixels.get(0)).isEqualTo(0);
+                assertThat(pixels.get(5)).isEqualTo(Image.MAX_RGB);
+            }
+            delete("baboon_ascii.ppm");
+            delete("comment.pgm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testInPlaceSave(){
+        try {
+            OpenCV.loadLocally();
+            Files.copy(Paths.get("baboon.pgm"), Paths.get("baboon_in_place.pgm"));
+            var expected = new Image("baboon.pgm");
+            expected.setPixel(10, 20, Image.MAX_RGB - expected.getPixel(10, 20));
+
+            // the pixels are still mapped from the file when it is replaced
+            var mappedImage = Image.map("baboon_in_place.pgm");
+            mappedImage.setPixel(10, 20, expected.getPixel(10, 20));
+            mappedImage.save("baboon_in_place.pgm");
+            assertThat(mappedImage).isEqualTo(expected);
+            assertThat(new Image("baboon_in_place.pgm")).isEqualTo(expected);
+            assertThat(Files.size(Paths.get("baboon_in_place.pgm"))).isEqualTo(Files.size(Paths.get("baboon.pgm")));
+            try (var files = Files.list(Paths.get("."))) {
+                assertThat(files.filter(path -> path.getFileName().toString().endsWith(".tmp"))).isEmpty();
+            }
+            delete("baboon_in_place.pgm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+}
@@ -2,9 +2,14 @@ package com.CAP5400.Image;
 
 import nu.pattern.OpenCV;
 import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageCache;
+import org.CAP5400.Image.ImageChange;
 import org.CAP5400.Exceptions.ImageOutOfBoundsException;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+
+import static org.CAP5400.Image.Image.MAX_RGB;
 import static org.CAP5400.Misc.Misc.delete;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
@@ -88,7 +93,18 @@ public class ImageTest {
                 "channel out of bound");
         assertTrue(thrownGrayscaleImageCol.getMessage().contains("out of bounds"));
 
+        // the first row and column past the image must not alias the next row of the pixel buffer
+        var smallImage = new Image(2, 3);
+        assertThrows(ImageOutOfBoundsException.class, () -> smallImage.getPixel(0, 3));
+        assertThrows(ImageOutOfBoundsException.class, () -> smallImage.getPixel(2, 0));
+        assertThrows(ImageOutOfBoundsException.class, () -> smallImage.setPixel(0, 3, 1));
+        assertThat(smallImage.isInBounds(1, 2)).isTrue();
 
+        // a view must not read or write the source image outside its window
+        var sourceImage = new Image(4, 4);
+        var view = sourceImage.view(1, 1, 2, 2);
+        assertThrows(ImageOutOfBoundsException.class, () -> view.getPixel(0, 2));
+        assertThrows(ImageOutOfBoundsException.class, () -> view.setPixel(2, 0, 1));
     }
 
     @Test
@@ -134,6 +150,154 @@ public class ImageTest {
         catch (Exception e){ fail(e.getMessage()); }
     }
 
+    @Test
+    public void testPixelDepth(){
+        try {
+            var image = new Image(4, 4, 3);
+            image.setPixel(1, 2, 1, 300);
+            assertThat(image.getPixel(1, 2, 1)).isEqualTo(Image.MAX_RGB);
+            image.setPixel(1, 2, 1, -5);
+            assertThat(image.getPixel(1, 2, 1)).isEqualTo(0);
+
+            var deepImage = new Image(4, 4, 3, 65535);
+            deepImage.setPixel(3, 3, 2, 40000);
+            assertThat(deepImage.getPixel(3, 3, 2)).isEqualTo(40000);
+            assertThat(deepImage.getPixel(3, 3, 1)).isEqualTo(0);
+            deepImage.setPixel(0, 0, 0, 70000);
+            assertThat(deepImage.getPixel(0, 0, 0)).isEqualTo(65535);
+
+            var copiedDeepImage = new Image(deepImage);
+            assertThat(copiedDeepImage).isEqualTo(deepImage);
+            image.deepCopy(deepImage);
+            assertThat(image.getPixel(3, 3, 2)).isEqualTo(Image.MAX_RGB);
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testBatchedNotifications(){
+        try {
+            var image = new Image(8, 8, 3);
+            var changes = new ArrayList<ImageChange>();
+            var notifications = new int[1];
+            image.addObserver(o -> notifications[0]++);
+            image.addChangeObserver((o, change) -> changes.add(change));
+
+            image.setPixel(2, 3, 1, 10);
+            assertThat(changes).containsExactly(ImageChange.ofPixel(2, 3, 1));
+
+            image.beginUpdate();
+            image.setPixel(1, 5, 0, 20);
+            image.beginUpdate();
+            image.setPixel(4, 2, 2, 30);
+            image.endUpdate();
+            assertThat(changes).hasSize(1);
+            image.endUpdate();
+            assertThat(notifications[0]).isEqualTo(2);
+            assertThat(changes.get(1)).isEqualTo(new ImageChange(1, 2, 5, 6, 0b101));
+
+            image.beginUpdate();
+            image.endUpdate();
+            assertThat(changes).hasSize(2);
+            assertThrows(IllegalStateException.class, image::endUpdate);
+
+            image.deepCopy(new Image(8, 8, 3));
+            assertThat(changes.get(2).coversImage(image)).isTrue();
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testMappedImage(){
+        try {
+            OpenCV.loadLocally();
+            var grayscaleImage = new Image("baboon.pgm");
+            var mappedGrayscaleImage = Image.map("baboon.pgm");
+            assertThat(areSameImages(grayscaleImage, mappedGrayscaleImage)).isTrue();
+
+            var colorImage = new Image("baboon.ppm");
+            var mappedColorImage = Image.map("baboon.ppm");
+            assertThat(areSameImages(colorImage, mappedColorImage)).isTrue();
+
+            mappedColorImage.setPixel(0, 0, 0, 0);
+            mappedColorImage.setPixel(0, 0, 0, MAX_RGB);
+            assertThat(mappedColorImage.getPixel(0, 0, 0)).isEqualTo(MAX_RGB);
+            assertThat(areSameImages(colorImage, Image.map("baboon.ppm"))).isTrue(); // file is left untouched
+            assertThat(areSameImages(mappedColorImage, new Image(mappedColorImage))).isTrue();
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testImageCache(){
+        try {
+            OpenCV.loadLocally();
+            new Image("baboon.pgm").save("baboon_cached.pgm");
+            var cache = new ImageCache(512 * 512);
+            var firstImage = cache.open("baboon_cached.pgm");
+            var secondImage = cache.open("./baboon_cached.pgm");
+            assertThat(cache.getMissCount()).isEqualTo(1);
+            assertThat(cache.getHitCount()).isEqualTo(1);
+            assertThat(cache.getSize()).isEqualTo(512 * 512);
+            assertThat(secondImage.getFileName()).isEqualTo("./baboon_cached.pgm");
+
+            // reading or saving a snapshot does not copy its pixels
+            var thirdImage = cache.open("baboon_cached.pgm");
+            thirdImage.save("baboon_cached_copy.pgm");
+            assertThat(thirdImage.getReadOnlyBuffer()).isSameAs(secondImage.getReadOnlyBuffer());
+            var view = thirdImage.view(10, 10, 20, 20);
+            assertThat(view.getReadOnlyBuffer()).isSameAs(secondImage.getReadOnlyBuffer());
+            assertThat(view.getBuffer()).isNotSameAs(secondImage.getReadOnlyBuffer());
+            delete("baboon_cached_copy.pgm");
+
+            // snapshots are copied on write, so the cached image is left untouched
+            var original = firstImage.getPixel(0, 0);
+            firstImage.setPixel(0, 0, original == MAX_RGB ? 0 : MAX_RGB);
+            assertThat(secondImage.getPixel(0, 0)).isEqualTo(original);
+            assertThat(cache.open("baboon_cached.pgm").getPixel(0, 0)).isEqualTo(original);
+            var snapshot = firstImage.snapshot();
+            firstImage.getBuffer().set(0, original);
+            assertThat(snapshot.getPixel(0, 0)).isNotEqualTo(original);
+
+            // a file that is invalidated is decoded again
+            snapshot.save("baboon_cached.pgm");
+            cache.invalidate("baboon_cached.pgm");
+            assertThat(cache.open("baboon_cached.pgm").getPixel(0, 0)).isNotEqualTo(original);
+            assertThat(cache.getMissCount()).isEqualTo(2);
+
+            // images larger than the capacity are not kept
+            assertThat(areSameImages(cache.open("baboon.ppm"), new Image("baboon.ppm"))).isTrue();
+            assertThat(cache.getSize()).isEqualTo(512 * 512);
+            cache.clear();
+            assertThat(cache.getSize()).isZero();
+            assertThrows(IllegalArgumentException.class, () -> new ImageCache(-1));
+            delete("baboon_cached.pgm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testOpenCvMatConversion(){
+        try {
+            OpenCV.loadLocally();
+            var grayscaleImage = new Image("baboon.pgm");
+            var grayscaleMat = grayscaleImage.getOpenCvMat();
+            assertThat(grayscaleMat.get(10, 20)[0]).isEqualTo(grayscaleImage.getPixel(10, 20));
+            assertThat(areSameImages(grayscaleImage, Image.fromMat(grayscaleMat))).isTrue();
+
+            var colorImage = new Image("baboon.ppm");
+            var colorMat = colorImage.getOpenCvMat();
+            assertThat(colorMat.get(10, 20)[2]).isEqualTo(colorImage.getPixel(10, 20, 2));
+            assertThat(areSameImages(colorImage, Image.fromMat(colorMat))).isTrue();
+            assertThat(areSameImages(colorImage, Image.fromMat(Image.map("baboon.ppm").getOpenCvMat()))).isTrue();
+
+            var deepImage = new Image(4, 4, 3, 65535);
+            deepImage.setPixel(2, 3, 1, 40000);
+            assertThat(Image.fromMat(deepImage.getOpenCvMat())).isEqualTo(deepImage);
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
     private boolean areSameImages(Image leftImage, Image rightImage){
         OpenCV.loadLocally();
         if(leftImage.getRows() != rightImage.getRows()){ return false; }
@@ -0,0 +1,234 @@
+package com.CAP5400.Parser;
+
+import nu.pattern.OpenCV;
+import org.CAP5400.Image.Image;
+import org.CAP5400.Parser.BatchExecutor;
+import org.CAP5400.Parser.ExecutionPlan;
+import org.CAP5400.Misc.Misc;
+import org.CAP5400.Parser.OperationRegistry;
+import org.CAP5400.Parser.Parser;
+import org.CAP5400.RegionOfInterest.ROI;
+import org.CAP5400.Toolbox.Toolbox;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParserTest {
+    @Test
+    public void testOperationRegistry() {
+        try{
+            OpenCV.loadLocally();
+            var registry = OperationRegistry.getDefault();
+            var addGrey = registry.getOperation("addGrey");
+            assertThat(addGrey.getParameterTypes()).containsExactly(int.class);
+            assertThat(addGrey.isPointOperation()).isTrue();
+            var sharpenEdge = registry.getOperation("sharpenEdge");
+            assertThat(sharpenEdge.getParameterTypes()).containsExactly(String.class, int.class, int.class,
+                    double.class);
+            assertThat(sharpenEdge.isPointOperation()).isFalse();
+            assertThat(registry.getOperationNames()).contains("rotate", "resample", "histogramStretchAll");
+            var thrown = assertThrows(NoSuchMethodException.class, () -> registry.getOperation("noSuchOperation"));
+            assertTrue(thrown.getMessage().contains("noSuchOperation"));
+
+            // the registered operation gives the same result as the Toolbox method
+            var image = new Image("baboon.pgm");
+            var region = new ROI(image, 10, 10, 50, 60);
+            var rotate = registry.getOperation("rotate");
+            rotate.apply(region, rotate.convertArguments(new String[]{"180"}));
+            var expected = new ROI(new Image("baboon.pgm"), 10, 10, 50, 60);
+            Toolbox.rotate(expected, 180);
+            assertEquals(expected.getRegionImage(), region.getRegionImage());
+
+            var table = addGrey.compile(region, addGrey.convertArguments(new String[]{"20"}));
+            assertNotNull(table);
+            assertThrows(IllegalArgumentException.class, () -> addGrey.convertArguments(new String[]{"1", "2"}));
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testExecutionPlan() {
+        var plan = ExecutionPlan.parse(List.of(
+                "baboon.pgm out.pgm 3 0 0 10 10 addGrey 5 0 0 x 10 addGrey 5 0 0 10 10 rotate 90",
+                "baboon.pgm out.pgm 2 0 0 10 10 noSuchOperation 0 0 20 20 binarize abc",
+                "baboon.pgm out.pgm x"), OperationRegistry.getDefault());
+        assertThat(plan.getJobs()).hasSize(3);
+
+        var steps = plan.getJobs().get(0).steps();
+        assertThat(steps).hasSize(3);
+        assertThat(steps.get(0).methodName()).isEqualTo("addGrey");
+        assertThat(steps.get(0).arguments()).containsExactly(5);
+        assertThat(steps.get(0).isPointOperation()).isTrue();
+        // an invalid coordinate consumes the tokens read until the error
+        assertThat(steps.get(1).hasRegion()).isFalse();
+        assertThat(steps.get(1).error()).isInstanceOf(NumberFormatException.class);
+        assertThat(steps.get(2).hasRegion()).isFalse();
+        assertThat(steps.get(2).error().getMessage()).contains("addGrey");
+
+        steps = plan.getJobs().get(1).steps();
+        assertThat(steps.get(0).error()).isInstanceOf(NoSuchMethodException.class);
+        assertThat(steps.get(0).methodName()).isEqualTo("noSuchOperation");
+        assertThat(steps.get(1).hasRegion(0, 0, 20, 20)).isTrue();
+        assertThat(steps.get(1).error()).isInstanceOf(NumberFormatException.class);
+        assertThat(plan.getJobs().get(2).error()).isInstanceOf(NumberFormatException.class);
+        assertThrows(UnsupportedOperationException.class, () -> plan.getJobs().add(null));
+    }
+
+    @Test
+    public void testBatchExecutor() {
+        try{
+            var plan = ExecutionPlan.parse(List.of(
+                    "a.pgm b.pgm 0",
+                    "c.pgm d.pgm 0",
+                    "./b.pgm e.pgm 0",   // reads the image written by the first line
+                    "f.pgm c.pgm 0",     // writes the image read by the second line
+                    "g.pgm e.pgm 0"), OperationRegistry.getDefault()); // writes the image written by the third line
+            var finished = ConcurrentHashMap.<String>newKeySet();
+            var violations = ConcurrentHashMap.<String>newKeySet();
+            var buffer = new ByteArrayOutputStream();
+            new BatchExecutor(4).execute(plan.getJobs(), (job, out) -> {
+                var expected = switch (job.targetImageName()) {
+                    case "e.pgm" -> job.sourceImageName().equals("g.pgm") ? "e.pgm" : "b.pgm";
+                    case "c.pgm" -> "d.pgm";
+                    default -> null;
+                };
+                if(expected != null && !finished.contains(expected)){
+                    violations.add(job.sourceImageName());
+                }
+                try {
+                    // the first lines are the slowest, so they finish last unless the jobs are ordered
+                    Thread.sleep(job.sourceImageName().equals("a.pgm") ? 200 : 20);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                out.println(job.sourceImageName() + " " + job.targetImageName());
+                finished.add(job.targetImageName());
+            }, new PrintStream(buffer, true));
+
+            assertThat(violations).isEmpty();
+            assertThat(buffer.toString().lines().toList()).containsExactly(
+                    "a.pgm b.pgm", "c.pgm d.pgm", "./b.pgm e.pgm", "f.pgm c.pgm", "g.pgm e.pgm");
+            assertThrows(IllegalArgumentException.class, () -> new BatchExecutor(0));
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testStreamingParameterFile() {
+        try{
+            var registry = OperationRegistry.getDefault();
+            var jobs = ExecutionPlan.read(new BufferedReader(new StringReader(
+                    "a.pgm b.pgm 1 +1 -2 3 4 addGrey 5  \n" +
+                    "a.pgm  b.pgm 0\n" +
+                    "\n" +
+                    "a.pgm b.pgm 1 0 0 3000000000 4 addGrey 5")), registry);
+            var job = jobs.next();
+            assertThat(job.steps()).hasSize(1);
+            assertThat(job.steps().get(0).hasRegion(1, -2, 3, 4)).isTrue();
+            assertThat(job.steps().get(0).arguments()).containsExactly(5);
+            // consecutive spaces separate empty tokens, like String.split
+            job = jobs.next();
+            assertThat(job.targetImageName()).isEmpty();
+            assertThat(job.error()).isInstanceOf(NumberFormatException.class);
+            job = jobs.next();
+            assertThat(job.sourceImageName()).isEmpty();
+            assertThat(job.targetImageName()).isNull();
+            assertThat(job.error()).isInstanceOf(NullPointerException.class);
+            job = jobs.next();
+            assertThat(job.steps().get(0).error()).isInstanceOf(NumberFormatException.class);
+            assertThat(jobs.hasNext()).isFalse();
+
+            // the lines are only read a few jobs ahead of the reports that are printed
+            var executor = new BatchExecutor(2);
+            var linesRead = new AtomicInteger();
+            var linesReadWhenFirstDone = new AtomicInteger();
+            Iterator<ExecutionPlan.Job> lines = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return linesRead.get() < 100;
+                }
+
+                @Override
+                public ExecutionPlan.Job next() {
+                    var index = linesRead.getAndIncrement();
+                    return ExecutionPlan.parseLine("in" + index + ".pgm out" + index + ".pgm 0", registry);
+                }
+            };
+            var buffer = new ByteArrayOutputStream();
+            executor.execute(lines, (line, out) -> {
+                if(line.sourceImageName().equals("in0.pgm")){
+                    try {
+                        Thread.sleep(200);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    linesReadWhenFirstDone.set(linesRead.get());
+                }
+                out.println(line.sourceImageName());
+            }, new PrintStream(buffer, true));
+
+            assertThat(linesReadWhenFirstDone.get()).isBetween(1, executor.getMaxJobsInFlight());
+            var printed = buffer.toString().lines().toList();
+            assertThat(printed).hasSize(100);
+            assertThat(printed.get(0)).isEqualTo("in0.pgm");
+            assertThat(printed.get(99)).isEqualTo("in99.pgm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testFusedPointOperationReports() {
+        var standardOut = System.out;
+        try{
+            OpenCV.loadLocally();
+            var parameterFile = Files.createTempFile("fused", ".txt");
+            Files.writeString(parameterFile, "baboon.pgm baboon_fused.pgm 4 " +
+                    "10 10 100 100 addGrey 20 " +
+                    "10 10 100 100 decreaseBrightness 300 10 " +
+                    "10 10 100 100 binarize 128 " +
+                    "10 10 100 100 rotate 90\n");
+            var buffer = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(buffer, true));
+            Parser.performOperations(parameterFile.toString());
+            System.setOut(standardOut);
+            Files.delete(parameterFile);
+
+            // the fused operations are reported in order, after their table is applied, and before the next operation
+            var reports = buffer.toString().lines()
+                    .filter(line -> line.contains("Perform Operation: "))
+                    .map(line -> line.replaceAll("\033\\[[0-9;]*m", "").replaceAll(" +", " "))
+                    .toList();
+            assertThat(reports).containsExactly(
+                    "Perform Operation: addGrey [SUCCESS]",
+                    "Perform Operation: decreaseBrightness [FAILED]",
+                    "Perform Operation: binarize [SUCCESS]",
+                    "Perform Operation: rotate [SUCCESS]");
+
+            var expected = new Image("baboon.pgm");
+            var region = new ROI(expected, 10, 10, 100, 100);
+            Toolbox.addGrey(region, 20);
+            Toolbox.binarize(region, 128);
+            Toolbox.rotate(region, 90);
+            region.applyModifications();
+            assertEquals(expected, new Image("baboon_fused.pgm"));
+            Misc.delete("baboon_fused.pgm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            System.setOut(standardOut);
+        }
+    }
+}
@@ -2,9 +2,17 @@ package com.CAP5400.RegionOfInterest;
 
 import nu.pattern.OpenCV;
 import org.CAP5400.Image.Image;
+import org.CAP5400.Image.ImageChange;
+import org.CAP5400.Misc.Misc;
 import org.CAP5400.RegionOfInterest.ROI;
+import org.CAP5400.Toolbox.PointOperations;
+import org.CAP5400.Toolbox.Toolbox;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class RoiTest {
@@ -84,5 +92,157 @@ public class RoiTest {
         catch (Exception e){ fail(e.getMessage()); }
     }
 
+    @Test
+    public void testCopyOnWriteRegion() {
+        try{
+            OpenCV.loadLocally();
+            var colorImage = new Image("baboon.ppm");
+            var original = new Image(colorImage);
+            var changes = new ArrayList<ImageChange>();
+            colorImage.addChangeObserver((image, change) -> changes.add(change));
+
+            var colorRegion = new ROI(colorImage, 100, 50, 200, 300);
+            var regionImage = colorRegion.getRegionImage();
+            assertThat(regionImage.getRows()).isEqualTo(200);
+            assertThat(regionImage.getColumns()).isEqualTo(300);
+            assertEquals(colorImage.getPixel(110, 70, 2), regionImage.getPixel(10, 20, 2));
+            colorRegion.applyModifications();
+            assertThat(changes).isEmpty(); // nothing was written to the region
+
+            // the source image is only changed when the modifications are applied
+            var value = regionImage.getPixel(10, 20, 1) == 0 ? 1 : 0;
+            regionImage.setPixel(10, 20, 1, value);
+            assertEquals(original, colorImage);
+            colorRegion.applyModifications();
+            assertThat(colorImage.getPixel(110, 70, 1)).isEqualTo(value);
+            assertThat(changes).containsExactly(ImageChange.ofPixel(110, 70, 1));
+            original.setPixel(110, 70, 1, value);
+            assertEquals(original, colorImage);
+
+            // a view that is written to no longer reads the source image
+            var view = colorImage.view(0, 0, 4, 4);
+            view.setPixel(0, 0, 0, colorImage.getPixel(0, 0, 0) == 0 ? 1 : 0);
+            assertNotEquals(colorImage.getPixel(0, 0, 0), view.getPixel(0, 0, 0));
+            assertEquals(new Image(view), view);
+            assertThrows(IllegalArgumentException.class, () -> colorImage.view(500, 0, 20, 20));
+            assertThrows(IllegalArgumentException.class, () -> new ROI(colorImage, 10, 10, 0, 10));
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
 
+    @Test
+    public void testOverlappingRegions() {
+        try{
+            OpenCV.loadLocally();
+            for(var writeSourceFirst : new boolean[]{false, true}){
+                var image = new Image("baboon.pgm");
+                if(writeSourceFirst){
+                    image.setPixel(0, 0, image.getPixel(0, 0));
+                }
+                var first = new ROI(image, 10, 10, 100, 100);
+                var second = new ROI(image, 50, 50, 100, 100);
+                var expected = new Image(second.getRegionImage());
+                var subView = second.getRegionImage().view(0, 0, 20, 20);
+                var expectedSubView = new Image(subView);
+
+                // applying the first region must not change the second region, whatever the history of the source
+                Toolbox.binarize(first, 128);
+                first.applyModifications();
+                assertThat(image.getPixel(60, 60)).isIn(0, Image.MAX_RGB);
+                assertEquals(expected, second.getRegionImage());
+                assertEquals(expectedSubView, subView);
+
+                Toolbox.addGrey(second, 10);
+                second.applyModifications();
+                assertThat(image.getPixel(60, 60)).isEqualTo(Math.min(expected.getPixel(10, 10) + 10, Image.MAX_RGB));
+            }
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testDeepRegion() {
+        try{
+            OpenCV.loadLocally();
+            var deepImage = new Image(40, 50, 1, 65535);
+            for(int i = 0; i < deepImage.getRows(); i++){
+                for(int j = 0; j < deepImage.getColumns(); j++){
+                    deepImage.setPixel(i, j, 1000 + (i * 50 + j) * 7000 / 2000);
+                }
+            }
+            deepImage.save("deep_region.pgm");
+            var image = new Image("deep_region.pgm");
+            var original = new Image(image);
+            assertThat(image.getMaxValue()).isEqualTo(65535);
+
+            // the region image holds the samples rescaled to 8 bits
+            var region = new ROI(image, 5, 5, 30, 40);
+            assertThat(region.isDeep()).isTrue();
+            assertThat(region.getRegionImage().getMaxValue()).isEqualTo(Image.MAX_RGB);
+            assertThat(region.getRegionImage().getPixel(0, 0)).isEqualTo(Image.rescale(image.getPixel(5, 5), 65535,
+                    Image.MAX_RGB));
+
+            // the samples that are not changed keep their precision
+            Toolbox.addGrey(region, 0);
+            region.applyModifications();
+            assertEquals(original, image);
+            PointOperations.addGrey(region, 0).applyToSource(region);
+            assertEquals(original, image);
+            image.save("deep_region.pgm");
+            assertEquals(original, new Image("deep_region.pgm"));
+
+            // the changed samples are rescaled back to the depth of the source image
+            region = new ROI(image, 5, 5, 30, 40);
+            Toolbox.addGrey(region, 10);
+            region.applyModifications();
+            var expected = Image.rescale(Image.rescale(original.getPixel(20, 20), 65535, Image.MAX_RGB) + 10,
+                    Image.MAX_RGB, 65535);
+            assertThat(image.getPixel(20, 20)).isEqualTo(expected);
+            assertThat(image.getPixel(0, 0)).isEqualTo(original.getPixel(0, 0));
+
+            var fusedImage = new Image(original);
+            var fusedRegion = new ROI(fusedImage, 5, 5, 30, 40);
+            PointOperations.addGrey(fusedRegion, 10).applyToSource(fusedRegion);
+            assertEquals(image, fusedImage);
+            Misc.delete("deep_region.pgm");
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testFusedDeepRegion() {
+        try{
+            OpenCV.loadLocally();
+            var stepImage = new Image(20, 30, 1, 65535);
+            for(int i = 0; i < stepImage.getRows(); i++){
+                for(int j = 0; j < stepImage.getColumns(); j++){
+                    stepImage.setPixel(i, j, 30000);
+                }
+            }
+            var fusedImage = new Image(stepImage);
+
+            // one region of interest per step, like the parser does for operations that are not fused
+            for(int step = 0; step < 2; step++){
+                var region = new ROI(stepImage, 2, 3, 10, 20);
+                Toolbox.addBrightness(region, 10);
+                region.applyModifications();
+            }
+            assertThat(stepImage.getPixel(5, 5)).isEqualTo(35209);
+
+            // the fused tables map region samples, so the samples are rescaled only once
+            var fusedRegion = new ROI(fusedImage, 2, 3, 10, 20);
+            PointOperations.addBrightness(fusedRegion, 10)
+                    .andThen(PointOperations.addBrightness(fusedRegion, 10))
+                    .applyToSource(fusedRegion);
+            assertEquals(stepImage, fusedImage);
+
+            var region = new ROI(new Image(stepImage), 2, 3, 10, 20);
+            PointOperations.addBrightness(region, 10)
+                    .andThen(PointOperations.addBrightness(region, 10))
+                    .apply(region);
+            assertThat(region.getRegionImage().getPixel(0, 0))
+                    .isEqualTo(Image.rescale(35209, 65535, Image.MAX_RGB) + 20);
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
 }
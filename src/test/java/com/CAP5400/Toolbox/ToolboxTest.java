@@ -2,14 +2,36 @@ package com.CAP5400.Toolbox;
 
 import nu.pattern.OpenCV;
 import org.CAP5400.Image.Image;
+import org.CAP5400.Misc.Diagnostics;
+import org.CAP5400.Misc.Misc;
+import org.CAP5400.Misc.TileExecutor;
+import org.CAP5400.Parser.OperationRegistry;
 import static org.CAP5400.Image.Image.MAX_RGB;
 import static org.CAP5400.Toolbox.Toolbox.*;
 import org.CAP5400.RegionOfInterest.ROI;
 
+import org.CAP5400.Toolbox.Fourier;
+import org.CAP5400.Toolbox.FrequencyMask;
+import org.CAP5400.Toolbox.Histogram;
+import org.CAP5400.Toolbox.Interpolation;
+import org.CAP5400.Toolbox.PointOperations;
+import org.CAP5400.Toolbox.Resampler;
+import org.CAP5400.Toolbox.SpatialFilter;
+import org.CAP5400.Toolbox.TiledConvolution;
 import org.CAP5400.Toolbox.Toolbox;
 import org.junit.jupiter.api.Test;
-
-
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntUnaryOperator;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -17,6 +39,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 
 public class ToolboxTest {
@@ -265,6 +288,16 @@ public class ToolboxTest {
                     assertThat(regionPixel).isEqualTo(sourcePixel);
                 }
             }
+
+            var enlarged = Resampler.resize(grayscaleImage.view(0, 0, 200, 200), 500, 500, Interpolation.NEAREST);
+            scale(grayscaleRegion, 2.5f);
+            assertThat(grayscaleRegion.getRegionImage()).isEqualTo(enlarged.view(0, 0, 200, 200));
+            var shrunkRegion = new ROI(grayscaleImage, 0, 0, 200, 200);
+            var shrunk = Resampler.resize(grayscaleImage.view(0, 0, 200, 200), 50, 50, Interpolation.NEAREST);
+            scale(shrunkRegion, 0.25f);
+            assertThat(shrunkRegion.getRegionImage().getPixel(49, 49)).isEqualTo(shrunk.getPixel(49, 49));
+            assertThat(shrunkRegion.getRegionImage().getPixel(50, 10)).isEqualTo(0);
+            assertThat(grayscaleImage.getPixel(50, 10)).isNotEqualTo(0);
         }
         catch (Exception e){ fail(e.getMessage()); }
     }
@@ -300,12 +333,50 @@ public class ToolboxTest {
             OpenCV.loadLocally();
             var grayscaleImage = new Image("baboon.pgm");
             var grayscaleRegion = new ROI(grayscaleImage, 0, 0, 200, 200);
-            float grayscaleRatio = 0.5f;
+            float grayscaleRatio = 0.0f;
             var thrown = assertThrows(
                     IllegalArgumentException.class,
                     ()->scale(grayscaleRegion, grayscaleRatio));
-            assertThat(thrown.getMessage().contains("The scaling factor needs to be between 1 - 2"));
+            assertThat(thrown.getMessage()).contains("The scaling factor needs to be positive");
+
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testResample(){
+        try {
+            OpenCV.loadLocally();
+            var constant = new Image(20, 30, 3);
+            for(int i = 0; i < 20; i++){
+                for(int j = 0; j < 30; j++){
+                    for(int k = 0; k < 3; k++){
+                        constant.setPixel(i, j, k, 40 * k + 17);
+                    }
+                }
+            }
+            for(var interpolation : Interpolation.values()){
+                for(var size : new int[]{7, 20, 45}){
+                    var resized = Resampler.resize(constant, size, size + 3, interpolation);
+                    assertThat(resized.getPixel(size / 2, size / 2, 2)).isEqualTo(97);
+                    assertThat(resized.getPixel(size - 1, size + 2, 0)).isEqualTo(17);
+                }
+            }
 
+            var image = new Image("baboon.pgm");
+            var enlarged = Resampler.resize(image, image.getRows() * 2, image.getColumns() * 2, Interpolation.NEAREST);
+            assertThat(enlarged.getPixel(101, 37)).isEqualTo(image.getPixel(50, 18));
+            var shrunk = Resampler.resize(image, image.getRows() / 2, image.getColumns() / 2, Interpolation.AREA);
+            var sum = image.getPixel(20, 30) + image.getPixel(20, 31) + image.getPixel(21, 30) + image.getPixel(21, 31);
+            assertThat(shrunk.getPixel(10, 15)).isEqualTo((sum + 2) / 4);
+
+            var region = new ROI(image, 100, 100, 80, 60);
+            resample(region, 0.5f, "area");
+            assertThat(region.getRegionImage().getPixel(10, 15)).isEqualTo(shrunk.getPixel(60, 65));
+            assertThat(region.getRegionImage().getPixel(40, 10)).isEqualTo(0);
+            assertThat(region.getRegionImage().getPixel(10, 30)).isEqualTo(0);
+            assertThrows(IllegalArgumentException.class, () -> resample(region, 0.0f, "area"));
+            assertThrows(IllegalArgumentException.class, () -> resample(region, 2.0f, "sinc"));
         }
         catch (Exception e){ fail(e.getMessage()); }
     }
@@ -332,6 +403,62 @@ public class ToolboxTest {
         catch (Exception e){ fail(e.getMessage()); }
     }
 
+    @Test
+    public void testRotateQuarterTurns(){
+        try {
+            OpenCV.loadLocally();
+            var image = new Image("baboon.ppm");
+            var n = 101;
+            for(var angle : new int[]{90, 180, 270, 450}){
+                var region = new ROI(image, 10, 20, n, n);
+                rotate(region, angle);
+                var turns = (angle % 360) / 90;
+                for(int i = 0; i < n; i++){
+                    for(int j = 0; j < n; j++){
+                        int sourceX = i, sourceY = j;
+                        for(int t = 0; t < turns; t++){
+                            // inverse of one clockwise quarter turn
+                            var previousX = n - 1 - sourceY;
+                            sourceY = sourceX;
+                            sourceX = previousX;
+                        }
+                        for(int k = 0; k < region.getNumChannels(); k++){
+                            assertThat(region.getRegionImage().getPixel(i, j, k))
+                                    .isEqualTo(image.getPixel(sourceX + 10, sourceY + 20, k));
+                        }
+                    }
+                }
+
+                var angleRegion = new ROI(image, 10, 20, n, n);
+                rotateByAngle(angleRegion, angle, "bicubic");
+                assertThat(angleRegion.getRegionImage()).isEqualTo(region.getRegionImage());
+            }
+
+            var rectangle = new ROI(image, 0, 0, 40, 70);
+            rotate(rectangle, 180);
+            assertThat(rectangle.getRegionImage().getPixel(0, 0, 1)).isEqualTo(image.getPixel(39, 69, 1));
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testRotateByArbitraryAngle(){
+        try {
+            OpenCV.loadLocally();
+            var image = new Image("baboon.pgm");
+            for(var interpolation : new String[]{"nearest", "bilinear", "BICUBIC"}){
+                var region = new ROI(image, 100, 100, 101, 101);
+                rotateByAngle(region, 30.0f, interpolation);
+                // the center is fixed and the corners are rotated in from outside the region
+                assertThat(region.getRegionImage().getPixel(50, 50)).isEqualTo(image.getPixel(150, 150));
+                assertThat(region.getRegionImage().getPixel(0, 0)).isEqualTo(0);
+            }
+            var region = new ROI(image, 100, 100, 101, 101);
+            assertThrows(IllegalArgumentException.class, () -> rotateByAngle(region, 30.0f, "cubic"));
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
     @Test
     public void testRotateFailure(){
         try {
@@ -377,4 +504,436 @@ public class ToolboxTest {
         }
     }
 
+    @Test
+    public void testFrequencyMasks(){
+        try {
+            OpenCV.loadLocally();
+            FrequencyMask.clearCache();
+            var rows = 32;
+            var cols = 16;
+            var lowPass = FrequencyMask.getPassMask(rows, cols, FrequencyMask.Type.LOW_PASS, 5);
+            var highPass = FrequencyMask.getPassMask(rows, cols, FrequencyMask.Type.HIGH_PASS, 5);
+            var band = FrequencyMask.getBandMask(rows, cols, 3, 7);
+
+            // filtering the packed spectrum must match filtering the full complex spectrum
+            var image = new Mat(rows, cols, CvType.CV_32F);
+            Core.randu(image, 0, 255);
+            var spectrum = new Mat();
+            Core.dft(image, spectrum, Core.DFT_COMPLEX_OUTPUT);
+            var packedSpectrum = new Mat();
+            Core.dft(image, packedSpectrum);
+            var masks = new Mat[]{lowPass, highPass, band};
+            for(int m = 0; m < masks.length; m++){
+                var filtered = spectrum.clone();
+                for(int u = 0; u < rows; u++){
+                    for(int v = 0; v < cols; v++){
+                        var radius = Math.hypot(Math.min(u, rows - u), Math.min(v, cols - v));
+                        var weight = switch (m) {
+                            case 0 -> radius > 5 ? 0 : 1;
+                            case 1 -> radius > 5 ? 1 : 0;
+                            default -> radius < 3 || radius > 7 ? 0 : 1;
+                        };
+                        var value = filtered.get(u, v);
+                        filtered.put(u, v, value[0] * weight, value[1] * weight);
+                    }
+                }
+                var expected = new Mat();
+                Core.idft(filtered, expected, Core.DFT_REAL_OUTPUT | Core.DFT_SCALE);
+                var packedFiltered = new Mat();
+                Core.multiply(packedSpectrum, masks[m], packedFiltered);
+                var actual = new Mat();
+                Core.idft(packedFiltered, actual, Core.DFT_REAL_OUTPUT | Core.DFT_SCALE);
+                assertThat(Core.norm(expected, actual, Core.NORM_INF)).isLessThan(1e-2);
+            }
+            assertThat(FrequencyMask.getPassMask(rows, cols, FrequencyMask.Type.LOW_PASS, 5)).isSameAs(lowPass);
+            assertThat(FrequencyMask.getCacheSize()).isEqualTo(3);
+            assertThat(FrequencyMask.getCacheBytes()).isEqualTo(3L * rows * cols * Float.BYTES);
+
+            // the cache is bounded by the bytes of the masks, not by their number
+            var capacity = FrequencyMask.getCacheCapacity();
+            try {
+                FrequencyMask.setCacheCapacity(4L * 64 * 64 * Float.BYTES);
+                for(int radius = 0; radius < 10; radius++){
+                    FrequencyMask.getPassMask(64, 64, FrequencyMask.Type.HIGH_PASS, radius);
+                }
+                assertThat(FrequencyMask.getCacheSize()).isEqualTo(4);
+                assertThat(FrequencyMask.getCacheBytes()).isEqualTo(FrequencyMask.getCacheCapacity());
+                var largeMask = FrequencyMask.getPassMask(256, 256, FrequencyMask.Type.LOW_PASS, 5);
+                assertThat(FrequencyMask.getCacheSize()).isEqualTo(4); // larger than the cache, so it is not kept
+                assertThat(FrequencyMask.getPassMask(256, 256, FrequencyMask.Type.LOW_PASS, 5)).isNotSameAs(largeMask);
+            }
+            finally {
+                FrequencyMask.setCacheCapacity(capacity);
+            }
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testSmoothFrequencyFilters(){
+        try {
+            OpenCV.loadLocally();
+            var size = 64;
+            var gaussianLowPass = FrequencyMask.getGaussianMask(size, size, FrequencyMask.Type.LOW_PASS, 10, 0);
+            var gaussianHighPass = FrequencyMask.getGaussianMask(size, size,
+                    FrequencyMask.Type.fromString("high_pass"), 10, 0);
+            var butterworthLowPass = FrequencyMask.getButterworthMask(size, size, FrequencyMask.Type.LOW_PASS, 10, 0, 2);
+            var bandStop = FrequencyMask.getButterworthMask(size, size, FrequencyMask.Type.BAND_STOP, 20, 6, 2);
+            var bandPass = FrequencyMask.getGaussianMask(size, size, FrequencyMask.Type.fromString("BandPass"), 20, 6);
+            // packed layout: (0, 0) is the zero frequency, (0, 2v - 1) and (0, 2v) hold the frequency (0, v),
+            // (2u - 1, 0) and (2u, 0) hold the frequency (u, 0) and (size - 1, size - 1) holds (size / 2, size / 2)
+            assertThat(gaussianLowPass.get(0, 0)[0]).isEqualTo(1.0);
+            assertThat(gaussianLowPass.get(0, 19)[0]).isCloseTo(Math.exp(-0.5), within(1e-6));
+            assertThat(gaussianHighPass.get(0, 20)[0]).isCloseTo(1 - Math.exp(-0.5), within(1e-6));
+            assertThat(butterworthLowPass.get(19, 0)[0]).isCloseTo(0.5, within(1e-6));
+            assertThat(bandStop.get(0, 39)[0]).isEqualTo(0.0);
+            assertThat(bandStop.get(0, 0)[0]).isEqualTo(1.0);
+            assertThat(bandPass.get(40, 0)[0]).isEqualTo(1.0);
+            assertThat(bandPass.get(size - 1, size - 1)[0]).isLessThan(0.1);
+            assertThrows(IllegalArgumentException.class, () -> FrequencyMask.Type.fromString("notch"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> FrequencyMask.getButterworthMask(size, size, FrequencyMask.Type.LOW_PASS, 10, 0, 0));
+
+            var image = new Image("baboon.pgm");
+            var region = new ROI(image, 128, 128, 128, 128);
+            gaussianFilter(region, "rgb", 0, "lowpass", 20, 0);
+            assertThat(region.getRegionImage()).isNotEqualTo(new ROI(image, 128, 128, 128, 128).getRegionImage());
+            var bandRegion = new ROI(image, 128, 128, 128, 128);
+            assertThrows(IllegalArgumentException.class,
+                    () -> butterworthFilter(bandRegion, "rgb", 0, "bandstop", 20, 0, 2));
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testMultiChannelFourier(){
+        var defaultParallelism = TileExecutor.getParallelism();
+        try {
+            OpenCV.loadLocally();
+            TileExecutor.setParallelism(4);
+            var image = new Image("baboon.ppm");
+            var sequentialRegion = new ROI(image, 64, 128, 128, 128);
+            for(int k = 0; k < sequentialRegion.getNumChannels(); k++){
+                sharpenEdge(sequentialRegion, "rgb", k, 20, 0.5);
+            }
+            var batchedRegion = new ROI(image, 64, 128, 128, 128);
+            sharpenEdgeAll(batchedRegion, "RGB", 20, 0.5);
+            assertThat(batchedRegion.getRegionImage()).isEqualTo(sequentialRegion.getRegionImage());
+
+            var hsvRegion = new ROI(image, 64, 128, 128, 128);
+            lowPassFilterAll(hsvRegion, "hsv", 15);
+            assertThat(hsvRegion.getRegionImage()).isNotEqualTo(new ROI(image, 64, 128, 128, 128).getRegionImage());
+
+            // every channel of an RGB region is normalized to the full 8-bit range, the hue range is only used for HSV
+            var rgbRegion = new ROI(image, 64, 128, 128, 128);
+            lowPassFilterAll(rgbRegion, "rgb", 30);
+            for(int k = 0; k < rgbRegion.getNumChannels(); k++){
+                assertThat(Core.minMaxLoc(rgbRegion.getRegionImage().getOpenCvMat(k)).maxVal).isEqualTo(MAX_RGB);
+            }
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            TileExecutor.setParallelism(defaultParallelism);
+        }
+    }
+
+    @Test
+    public void testRectangularFourierRegion(){
+        try {
+            OpenCV.loadLocally();
+            var image = new Image("baboon.ppm");
+            var region = new ROI(image, 30, 50, 97, 150);
+            var original = region.getRegionImage().getOpenCvMat(1);
+            var expected = new Mat();
+            Core.normalize(original, expected, 0, MAX_RGB, Core.NORM_MINMAX, CvType.CV_8U);
+
+            // a radius beyond the largest frequency keeps the whole spectrum, so only the padding must be cropped
+            lowPassFilter(region, "rgb", 1, 1000);
+            var filtered = region.getRegionImage().getOpenCvMat(1);
+            assertThat(filtered.rows()).isEqualTo(97);
+            assertThat(filtered.cols()).isEqualTo(150);
+            assertThat(Core.norm(expected, filtered, Core.NORM_INF)).isLessThanOrEqualTo(1.0);
+
+            var smoothRegion = new ROI(image, 0, 0, 123, 45);
+            butterworthFilterAll(smoothRegion, "hsv", "lowpass", 10, 0, 2);
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testTiledFourierFilter(){
+        var tileSize = TiledConvolution.getTileSize();
+        var tilingThreshold = TiledConvolution.getTilingThreshold();
+        try {
+            OpenCV.loadLocally();
+            var image = new Image("baboon.ppm");
+            var region = new ROI(image, 30, 50, 150, 97);
+            var expected = new ArrayList<Mat>();
+            for(int k = 0; k < region.getNumChannels(); k++){
+                var normalized = new Mat();
+                Core.normalize(region.getRegionImage().getOpenCvMat(k), normalized, 0, MAX_RGB, Core.NORM_MINMAX,
+                        CvType.CV_8U);
+                expected.add(normalized);
+            }
+
+            // the tiles must be stitched without seams: an all-pass filter keeps every channel
+            TiledConvolution.setTileSize(32);
+            TiledConvolution.setTilingThreshold(0);
+            lowPassFilterAll(region, "rgb", 1000);
+            for(int k = 0; k < region.getNumChannels(); k++){
+                assertThat(Core.norm(expected.get(k), region.getRegionImage().getOpenCvMat(k), Core.NORM_INF))
+                        .isLessThanOrEqualTo(1.0);
+            }
+
+            // a compact kernel gives the untiled result, including the borders that wrap around
+            var tiledRegion = new ROI(new Image("baboon.pgm"), 20, 40, 180, 140);
+            TiledConvolution.setTileSize(64);
+            gaussianFilter(tiledRegion, "rgb", 0, "lowpass", 40, 0);
+            var tiledIdealRegion = new ROI(new Image("baboon.pgm"), 20, 40, 180, 140);
+            lowPassFilter(tiledIdealRegion, "rgb", 0, 5);
+            TiledConvolution.setTilingThreshold(tilingThreshold);
+            var untiledRegion = new ROI(new Image("baboon.pgm"), 20, 40, 180, 140);
+            gaussianFilter(untiledRegion, "rgb", 0, "lowpass", 40, 0);
+            assertThat(Core.norm(tiledRegion.getRegionImage().getOpenCvMat(0),
+                    untiledRegion.getRegionImage().getOpenCvMat(0), Core.NORM_INF)).isLessThanOrEqualTo(1.0);
+
+            // a wide kernel does not fit in the tiles, so the region is not tiled
+            var untiledIdealRegion = new ROI(new Image("baboon.pgm"), 20, 40, 180, 140);
+            lowPassFilter(untiledIdealRegion, "rgb", 0, 5);
+            assertThat(tiledIdealRegion.getRegionImage()).isEqualTo(untiledIdealRegion.getRegionImage());
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            TiledConvolution.setTileSize(tileSize);
+            TiledConvolution.setTilingThreshold(tilingThreshold);
+        }
+    }
+
+    @Test
+    public void testSpatialFilter(){
+        try {
+            OpenCV.loadLocally();
+            // the Gaussian filters run in the spatial domain and match the frequency domain
+            for(var mode : new String[]{"lowpass", "highpass"}){
+                SpatialFilter.setAutomatic(true);
+                var spatialRegion = new ROI(new Image("baboon.pgm"), 20, 40, 180, 140);
+                gaussianFilter(spatialRegion, "rgb", 0, mode, 20, 0);
+                SpatialFilter.setAutomatic(false);
+                var frequencyRegion = new ROI(new Image("baboon.pgm"), 20, 40, 180, 140);
+                gaussianFilter(frequencyRegion, "rgb", 0, mode, 20, 0);
+                assertThat(Core.norm(spatialRegion.getRegionImage().getOpenCvMat(0),
+                        frequencyRegion.getRegionImage().getOpenCvMat(0), Core.NORM_INF)).isLessThanOrEqualTo(1.0);
+            }
+            SpatialFilter.setAutomatic(true);
+            assertThat(SpatialFilter.prefersSpatial(512, 512, 2, 2)).isTrue();
+            assertThat(SpatialFilter.prefersSpatial(512, 512, 50, 50)).isFalse();
+            assertThat(SpatialFilter.prefersSpatial(512, 512, 0.5, 0.5)).isFalse();
+
+            // the box and Gaussian blurs match OpenCV with the same border
+            var image = new Image("baboon.ppm");
+            var original = new ROI(image, 10, 20, 90, 70).getRegionImage().getOpenCvMat();
+            var expected = new Mat();
+            var region = new ROI(image, 10, 20, 90, 70);
+            boxBlur(region, 3, "reflect");
+            Imgproc.blur(original, expected, new Size(7, 7), new Point(-1, -1), Core.BORDER_REFLECT_101);
+            assertThat(Core.norm(expected, region.getRegionImage().getOpenCvMat(), Core.NORM_INF))
+                    .isLessThanOrEqualTo(1.0);
+
+            region = new ROI(image, 10, 20, 90, 70);
+            gaussianBlur(region, 1.5f, "replicate");
+            Imgproc.GaussianBlur(original, expected, new Size(13, 13), 1.5, 1.5, Core.BORDER_REPLICATE);
+            assertThat(Core.norm(expected, region.getRegionImage().getOpenCvMat(), Core.NORM_INF))
+                    .isLessThanOrEqualTo(1.0);
+
+            // a flat region is not changed by any border that repeats the region
+            var flatImage = new Image(20, 30, 3);
+            for(int k = 0; k < 3; k++){
+                var channel = new int[20 * 30];
+                Arrays.fill(channel, 50);
+                flatImage.setChannel(channel, k);
+            }
+            var flat = new ROI(flatImage, 0, 0, 20, 30);
+            for(var border : new String[]{"replicate", "reflect", "wrap"}){
+                boxBlur(flat, 5, border);
+                unsharpMask(flat, 2, 1.5f, border);
+                assertThat(flat.getRegionImage().getPixel(0, 0, 1)).isEqualTo(50);
+                assertThat(flat.getRegionImage().getPixel(19, 29, 2)).isEqualTo(50);
+            }
+            boxBlur(flat, 1, "zero");
+            assertThat(flat.getRegionImage().getPixel(0, 0, 0)).isEqualTo(Math.round(50 * 4 / 9f));
+            assertThat(flat.getRegionImage().getPixel(10, 10, 0)).isEqualTo(50);
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            SpatialFilter.setAutomatic(true);
+        }
+    }
+
+    @Test
+    public void testDiagnosticsAreOptIn(){
+        var enabled = Diagnostics.isEnabled();
+        try {
+            OpenCV.loadLocally();
+            var image = new Image("baboon.ppm");
+            Misc.popContentsOfTrackerFile();
+
+            Diagnostics.setEnabled(false);
+            lowPassFilter(new ROI(image, 0, 0, 64, 64), "rgb", 1, 20);
+            histogramEqualization(new ROI(image, 0, 0, 64, 64), "rgb", 2);
+            assertThat(Misc.popContentsOfTrackerFile()).isEmpty();
+
+            // the magnitude spectra before and after filtering, and the histograms before and after equalization
+            Diagnostics.setEnabled(true);
+            lowPassFilter(new ROI(image, 0, 0, 64, 64), "rgb", 1, 20);
+            histogramEqualization(new ROI(image, 0, 0, 64, 64), "rgb", 2);
+            var files = Misc.popContentsOfTrackerFile();
+            assertThat(files).hasSize(4);
+            assertThat(files.get(0)).startsWith("mag_");
+            assertThat(files.get(2)).startsWith("hist_");
+            for(var file : files){
+                Misc.delete(file);
+            }
+
+            // an operation can override the setting of the run
+            var fourier = new Fourier(new ROI(image, 0, 0, 64, 64), "rgb", 1);
+            fourier.setDiagnostics(false);
+            fourier.applyFilter(20, 0, "Low Pass");
+            fourier.close();
+            assertThat(Misc.popContentsOfTrackerFile()).isEmpty();
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            Diagnostics.setEnabled(enabled);
+        }
+    }
+
+    @Test
+    public void testIncrementalHistogram(){
+        try {
+            OpenCV.loadLocally();
+            for(var colorSpace : new String[]{"rgb", "hsv"}){
+                var image = new Image("baboon.ppm");
+                var region = new ROI(image, 10, 20, 64, 48);
+                var histogram = new Histogram(region, colorSpace);
+                region.getRegionImage().setPixel(3, 4, 1, 0);
+                region.getRegionImage().setPixel(3, 5, 2, MAX_RGB);
+                region.getRegionImage().beginUpdate();
+                for(int i = 10; i < 30; i++){
+                    for(int j = 5; j < 25; j++){
+                        region.getRegionImage().setPixel(i, j, 0, i * j);
+                    }
+                }
+                region.getRegionImage().endUpdate();
+
+                var freshHistogram = new Histogram(region, colorSpace);
+                for(int k = 0; k < region.getNumChannels(); k++){
+                    for(int intensity = 0; intensity <= MAX_RGB; intensity++){
+                        assertThat(histogram.getBinSize(k, intensity))
+                                .isEqualTo(freshHistogram.getBinSize(k, intensity));
+                    }
+                }
+                histogram.close();
+                freshHistogram.close();
+            }
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testFusedPointOperations(){
+        try {
+            OpenCV.loadLocally();
+            var sequentialImage = new Image("baboon.pgm");
+            var region = new ROI(sequentialImage, 20, 30, 150, 120);
+            addGrey(region, 40);
+            region.applyModifications();
+            region = new ROI(sequentialImage, 20, 30, 150, 120);
+            decreaseBrightness(region, 120, 30);
+            region.applyModifications();
+            region = new ROI(sequentialImage, 20, 30, 150, 120);
+            binarize(region, 100);
+            region.applyModifications();
+
+            var fusedImage = new Image("baboon.pgm");
+            var fusedRegion = new ROI(fusedImage, 20, 30, 150, 120);
+            PointOperations.addGrey(fusedRegion, 40)
+                    .andThen(PointOperations.decreaseBrightness(fusedRegion, 120, 30))
+                    .andThen(PointOperations.binarize(fusedRegion, 100))
+                    .applyToSource(fusedRegion);
+            assertThat(fusedImage).isEqualTo(sequentialImage);
+
+            // an operation applied to a region that was already changed starts from the changed samples
+            var chainedRegion = new ROI(new Image("baboon.pgm"), 20, 30, 150, 120);
+            binarize(chainedRegion, 100);
+            addGrey(chainedRegion, -10);
+            assertThat(chainedRegion.getRegionImage().getPixel(40, 40)).isIn(0, MAX_RGB - 10);
+
+            assertTrue(OperationRegistry.getDefault().getOperation("binarize").isPointOperation());
+            assertFalse(OperationRegistry.getDefault().getOperation("rotate").isPointOperation());
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+    }
+
+    @Test
+    public void testParallelMatchesSequential(){
+        var defaultParallelism = TileExecutor.getParallelism();
+        try {
+            OpenCV.loadLocally();
+            Image[] results = new Image[2];
+            int[] parallelism = {1, 4};
+            for(int run = 0; run < 2; run++){
+                TileExecutor.setParallelism(parallelism[run]);
+                var image = new Image("baboon.ppm");
+                var region = new ROI(image, 50, 40, 400, 400);
+                addBrightness(region, 30);
+                region.applyModifications();
+                region = new ROI(image, 50, 40, 400, 400);
+                decreaseBrightness(region, 150, 20);
+                region.applyModifications();
+                region = new ROI(image, 50, 40, 400, 400);
+                scale(region, 1.7f);
+                region.applyModifications();
+                region = new ROI(image, 50, 40, 400, 400);
+                rotate(region, 270);
+                region.applyModifications();
+                results[run] = image;
+            }
+            assertThat(results[1]).isEqualTo(results[0]);
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            TileExecutor.setParallelism(defaultParallelism);
+        }
+    }
+
+    @Test
+    public void testSetParallelismWhileRunning(){
+        var defaultParallelism = TileExecutor.getParallelism();
+        try {
+            TileExecutor.setParallelism(2);
+            var running = new AtomicBoolean(true);
+            var resizer = new Thread(() -> {
+                for(int i = 0; running.get(); i++){
+                    TileExecutor.setParallelism(2 + i % 3);
+                }
+            });
+            resizer.start();
+            try {
+                for(int run = 0; run < 2000; run++){
+                    var processed = new AtomicInteger();
+                    TileExecutor.forEachRowBand(64, TileExecutor.MIN_SAMPLES_PER_BAND,
+                            (startRow, endRow) -> processed.addAndGet(endRow - startRow));
+                    assertThat(processed.get()).isEqualTo(64);
+                }
+            }
+            finally {
+                running.set(false);
+                resizer.join();
+            }
+        }
+        catch (Exception e){ fail(e.getMessage()); }
+        finally {
+            TileExecutor.setParallelism(defaultParallelism);
+        }
+    }
 }